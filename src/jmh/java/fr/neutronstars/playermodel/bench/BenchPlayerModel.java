@@ -0,0 +1,72 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import fr.neutronstars.playermodel.Player;
+import fr.neutronstars.playermodel.PlayerModel;
+
+/**
+ * Un model simple utilisé par les benchmarks, semblable à celui d'un plugin qui compte les blocs cassés.
+ */
+public class BenchPlayerModel extends PlayerModel
+{
+    private int blockBreak;
+    private int blockPlace;
+
+    public BenchPlayerModel(Player entityModel)
+    {
+        super(entityModel);
+    }
+
+    public int getBlockBreak()
+    {
+        return this.blockBreak;
+    }
+
+    public void addBlockBreak(int blockBreak)
+    {
+        this.blockBreak += blockBreak;
+        this.changed();
+    }
+
+    public int getBlockPlace()
+    {
+        return this.blockPlace;
+    }
+
+    public void addBlockPlace(int blockPlace)
+    {
+        this.blockPlace += blockPlace;
+    }
+
+    /**
+     * Un second model, enregistré et supprimé pendant les benchmarks.
+     */
+    public static class Other extends PlayerModel
+    {
+        private long value;
+
+        public Other(Player entityModel)
+        {
+            super(entityModel);
+        }
+
+        public long getValue()
+        {
+            return this.value;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import fr.neutronstars.playermodel.Players;
+import fr.neutronstars.playermodel.listener.PlayerHostListener;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure une connexion suivie d'une déconnexion, avec tous les évènements de Bukkit passant par le
+ * {@link PlayerHostListener}, pendant que d'autres joueurs sont connectés.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChurnBenchmark
+{
+    private static final int POOL = 1024;
+
+    @Param({"1000"})
+    public int online;
+
+    @Param({"false", "true"})
+    public boolean preparePlayer;
+
+    @Param({"0", "30000"})
+    public long reconnectGrace;
+
+    private FakeServer server;
+
+    private Players<Plugin> players;
+
+    private org.bukkit.entity.Player[] pool;
+
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        this.server = FakeServer.install();
+        this.players = Players.create(this.server.getPlugin());
+        this.players.registerModel(BenchPlayerModel.class);
+        this.players.setPreparePlayer(this.preparePlayer);
+        this.players.setReconnectGrace(this.reconnectGrace, TimeUnit.MILLISECONDS);
+        this.players.load();
+
+        for (int i = 0; i < this.online; i++) {
+            this.server.connect(this.server.createPlayer(new UUID(0L, i), "Player" + i));
+        }
+        this.pool = new org.bukkit.entity.Player[POOL];
+        for (int i = 0; i < POOL; i++) {
+            this.pool[i] = this.server.createPlayer(new UUID(1L, i), "Churn" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.players.unload();
+    }
+
+    @Benchmark
+    public boolean joinQuit()
+    {
+        org.bukkit.entity.Player player = this.pool[this.index];
+        this.index = (this.index + 1) & (POOL - 1);
+        boolean joined = this.server.connect(player);
+        this.server.disconnect(player);
+        return joined;
+    }
+}
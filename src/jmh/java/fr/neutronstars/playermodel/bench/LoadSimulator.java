@@ -0,0 +1,377 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import fr.neutronstars.playermodel.Leaderboard;
+import fr.neutronstars.playermodel.MappedPlayerStorage;
+import fr.neutronstars.playermodel.Players;
+import fr.neutronstars.playermodel.PlayersMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un simulateur de charge sans serveur : des milliers de joueurs synthétiques se connectent et se déconnectent sur le
+ * {@link FakeServer}, en passant par le {@link fr.neutronstars.playermodel.listener.PlayerHostListener}, pendant
+ * qu'ils cassent et posent des blocs comme avec le BlockListener de l'exemple.
+ *
+ * Les options sont passées sous la forme {@code --nom=valeur} :
+ * <ul>
+ *     <li>{@code players} : le nombre de joueurs synthétiques (5000).</li>
+ *     <li>{@code ticks} : la durée de la simulation en ticks (12000).</li>
+ *     <li>{@code joinRate} : le nombre moyen de connexions par tick (2).</li>
+ *     <li>{@code stormAt}, {@code stormTicks}, {@code stormRate} : une vague de connexions de {@code stormRate}
+ *     joueurs par tick pendant {@code stormTicks} ticks, à partir du tick {@code stormAt} (désactivée).</li>
+ *     <li>{@code sessionTicks} : la durée moyenne d'une session en ticks (6000).</li>
+ *     <li>{@code reconnectRatio} : la part des joueurs qui se reconnectent après {@code reconnectTicks} ticks (0.2, 100).</li>
+ *     <li>{@code breakRate}, {@code placeRate} : le nombre moyen de blocs cassés et posés par joueur et par tick (0.05).</li>
+ *     <li>{@code prepare}, {@code grace} : active la préparation des joueurs et la reconnexion sans nouvel enregistrement,
+ *     en millisecondes (false, 0).</li>
+ *     <li>{@code leaderboard} : classe les joueurs selon leurs blocs cassés (false).</li>
+ *     <li>{@code storage} : le dossier d'un {@link MappedPlayerStorage} où sauvegarder les joueurs (aucun).</li>
+ *     <li>{@code autosave}, {@code autosaveBudget} : l'intervalle de la sauvegarde automatique en ticks, et son budget
+ *     par tick en microsecondes (0, 2000).</li>
+ *     <li>{@code realtime} : attend la fin de chaque tick de 50 ms, pour que les délais en millisecondes correspondent
+ *     aux ticks (false).</li>
+ *     <li>{@code reportEvery}, {@code seed} : l'intervalle des rapports en ticks et la graine du hasard (1200, 42).</li>
+ * </ul>
+ */
+public final class LoadSimulator
+{
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Map<String, String> options;
+
+    private final Random random;
+
+    private final FakeServer server;
+
+    private final Players<Plugin> players;
+
+    private final Block block = FakeServer.proxy(Block.class, (method, args) -> null);
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private org.bukkit.entity.Player[] pool;
+
+    /**
+     * Les joueurs connectés, et la position de chaque joueur dans ce tableau ou -1.
+     */
+    private int[] online;
+    private int[] onlinePosition;
+    private int onlineCount;
+
+    private final ArrayDeque<Integer> idle = new ArrayDeque<>();
+
+    /**
+     * Les déconnexions prévues, sous la forme {tick, joueur}.
+     */
+    private final PriorityQueue<long[]> leaving = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+    /**
+     * Les reconnexions prévues, dans l'ordre de leur tick car le délai est fixe.
+     */
+    private final ArrayDeque<long[]> reconnecting = new ArrayDeque<>();
+
+    private double joinCredit;
+    private long joins;
+    private long rejected;
+    private long quits;
+    private long reconnects;
+    private long events;
+
+    private LoadSimulator(Map<String, String> options)
+    {
+        this.options = options;
+        this.random = new Random(this.getLong("seed", 42L));
+        this.server = FakeServer.install();
+        this.players = Players.create(this.server.getPlugin());
+    }
+
+    public static void main(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value.");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadSimulator(options).run();
+    }
+
+    private void run()
+    {
+        int size = (int) this.getLong("players", 5000L);
+        long ticks = this.getLong("ticks", 12000L);
+        long reportEvery = this.getLong("reportEvery", 1200L);
+        boolean realtime = Boolean.parseBoolean(this.options.getOrDefault("realtime", "false"));
+
+        String storage = this.options.get("storage");
+        if (storage != null) {
+            try {
+                this.players.setStorage(MappedPlayerStorage.open(Paths.get(storage)));
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        this.players.registerModel(BenchPlayerModel.class)
+                .setPreparePlayer(Boolean.parseBoolean(this.options.getOrDefault("prepare", "false")))
+                .setReconnectGrace(this.getLong("grace", 0L), TimeUnit.MILLISECONDS)
+                .setAutosave(this.getLong("autosave", 0L) * 50L, TimeUnit.MILLISECONDS)
+                .setAutosaveBudget(this.getLong("autosaveBudget", 2000L), TimeUnit.MICROSECONDS)
+                .load();
+        Leaderboard<BenchPlayerModel> leaderboard = null;
+        if (Boolean.parseBoolean(this.options.getOrDefault("leaderboard", "false"))) {
+            leaderboard = this.players.registerLeaderboard(BenchPlayerModel.class, BenchPlayerModel::getBlockBreak);
+        }
+        Bukkit.getPluginManager().registerEvents(new SimulatedListener(this.players), this.server.getPlugin());
+
+        this.pool = new org.bukkit.entity.Player[size];
+        this.online = new int[size];
+        this.onlinePosition = new int[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            this.pool[i] = this.server.createPlayer(new UUID(0L, i), "Sim" + i);
+            this.onlinePosition[i] = -1;
+            order[i] = i;
+        }
+        Collections.shuffle(Arrays.asList(order), this.random);
+        this.idle.addAll(Arrays.asList(order));
+
+        long heapStart = this.usedHeapAfterGc();
+        long[] durations = new long[(int) ticks];
+        System.out.println(String.format(Locale.ROOT, "%8s %7s %8s %8s %7s %9s %9s %9s %9s %9s",
+                "tick", "online", "registry", "prepared", "offline", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "heap(MB)"));
+
+        int windowStart = 0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            long start = System.nanoTime();
+            this.tick(tick);
+            long duration = System.nanoTime() - start;
+            durations[tick - 1] = duration;
+
+            if (tick % reportEvery == 0 || tick == ticks) {
+                long[] window = Arrays.copyOfRange(durations, windowStart, tick);
+                windowStart = tick;
+                Arrays.sort(window);
+                System.out.println(String.format(Locale.ROOT, "%8d %7d %8d %8d %7d %9.3f %9.3f %9.3f %9.3f %9.1f",
+                        tick, this.onlineCount, this.players.getPlayerCount(), this.players.getPreparedPlayerCount(),
+                        this.players.getOfflinePlayerCount(), LoadSimulator.millis(window, 0.50),
+                        LoadSimulator.millis(window, 0.95), LoadSimulator.millis(window, 0.99),
+                        LoadSimulator.millis(window, 1.0), this.memory.getHeapMemoryUsage().getUsed() / 1048576.0));
+            }
+            if (realtime && duration < TICK_NANOS) {
+                LoadSimulator.sleep(TICK_NANOS - duration);
+            }
+        }
+
+        long heapEnd = this.usedHeapAfterGc();
+        Arrays.sort(durations);
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "ticks=%d joins=%d rejected=%d quits=%d reconnects=%d events=%d",
+                ticks, this.joins, this.rejected, this.quits, this.reconnects, this.events));
+        System.out.println(String.format(Locale.ROOT, "tick p50=%.3fms p95=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                LoadSimulator.millis(durations, 0.50), LoadSimulator.millis(durations, 0.95),
+                LoadSimulator.millis(durations, 0.99), LoadSimulator.millis(durations, 0.999),
+                LoadSimulator.millis(durations, 1.0)));
+        System.out.println(String.format(Locale.ROOT, "heap after gc: start=%.1fMB end=%.1fMB growth=%.1fMB",
+                heapStart / 1048576.0, heapEnd / 1048576.0, (heapEnd - heapStart) / 1048576.0));
+        PlayersMetrics metrics = this.players.getMetrics();
+        System.out.println("register " + metrics.getRegisterTime() + " lookups hit=" + metrics.getLookupHits()
+                + " miss=" + metrics.getLookupMisses());
+        if (storage != null) {
+            System.out.println("autosave " + metrics.getAutosaveTime() + " players=" + metrics.getAutosavedPlayers()
+                    + String.format(Locale.ROOT, " budget=%.0fus", metrics.getAutosaveBudgetMicros()));
+        }
+        if (leaderboard != null) {
+            System.out.println("leaderboard size=" + leaderboard.size() + " top=" + leaderboard.top(3));
+        }
+
+        for (int i = this.onlineCount - 1; i >= 0; i--) {
+            this.server.disconnect(this.pool[this.online[i]]);
+        }
+        this.players.unload();
+        System.out.println("registry after unload=" + this.players.getPlayerCount()
+                + " prepared=" + this.players.getPreparedPlayerCount());
+    }
+
+    private void tick(long tick)
+    {
+        while (!this.leaving.isEmpty() && this.leaving.peek()[0] <= tick) {
+            int index = (int) this.leaving.poll()[1];
+            this.server.disconnect(this.pool[index]);
+            this.removeOnline(index);
+            this.quits++;
+            if (this.random.nextDouble() < this.getDouble("reconnectRatio", 0.2)) {
+                this.reconnecting.add(new long[]{tick + this.getLong("reconnectTicks", 100L), index});
+            } else {
+                this.idle.add(index);
+            }
+        }
+
+        while (!this.reconnecting.isEmpty() && this.reconnecting.peek()[0] <= tick) {
+            this.join((int) this.reconnecting.poll()[1], tick);
+            this.reconnects++;
+        }
+
+        double rate = this.getDouble("joinRate", 2.0);
+        long stormAt = this.getLong("stormAt", -1L);
+        if (stormAt >= 0 && tick >= stormAt && tick < stormAt + this.getLong("stormTicks", 200L)) {
+            rate = this.getDouble("stormRate", 50.0);
+        }
+        this.joinCredit += rate;
+        while (this.joinCredit >= 1.0 && !this.idle.isEmpty()) {
+            this.joinCredit -= 1.0;
+            this.join(this.idle.poll(), tick);
+        }
+        this.joinCredit = Math.min(this.joinCredit, rate);
+
+        this.fireEvents(this.getDouble("breakRate", 0.05), true);
+        this.fireEvents(this.getDouble("placeRate", 0.05), false);
+
+        this.server.tick();
+    }
+
+    private void join(int index, long tick)
+    {
+        if (!this.server.connect(this.pool[index])) {
+            this.rejected++;
+            this.idle.add(index);
+            return;
+        }
+        this.joins++;
+        this.onlinePosition[index] = this.onlineCount;
+        this.online[this.onlineCount++] = index;
+        double mean = this.getDouble("sessionTicks", 6000.0);
+        long session = 1L + (long) (-Math.log(1.0 - this.random.nextDouble()) * mean);
+        this.leaving.add(new long[]{tick + session, index});
+    }
+
+    private void removeOnline(int index)
+    {
+        int position = this.onlinePosition[index];
+        int last = this.online[--this.onlineCount];
+        this.online[position] = last;
+        this.onlinePosition[last] = position;
+        this.onlinePosition[index] = -1;
+    }
+
+    private void fireEvents(double perPlayer, boolean breaks)
+    {
+        if (this.onlineCount == 0) {
+            return;
+        }
+        double expected = this.onlineCount * perPlayer;
+        long count = (long) expected + (this.random.nextDouble() < expected - (long) expected ? 1 : 0);
+        for (long i = 0; i < count; i++) {
+            org.bukkit.entity.Player player = this.pool[this.online[this.random.nextInt(this.onlineCount)]];
+            if (breaks) {
+                this.server.callEvent(new BlockBreakEvent(this.block, player));
+            } else {
+                this.server.callEvent(new BlockPlaceEvent(this.block, null, this.block, null, player, true));
+            }
+            this.events++;
+        }
+    }
+
+    private long usedHeapAfterGc()
+    {
+        System.gc();
+        return this.memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private long getLong(String name, long defaultValue)
+    {
+        String value = this.options.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private double getDouble(String name, double defaultValue)
+    {
+        String value = this.options.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    private static double millis(long[] sorted, double percentile)
+    {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static void sleep(long nanos)
+    {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Le même traitement que le BlockListener de l'exemple.
+     */
+    public static class SimulatedListener implements Listener
+    {
+        private final Players<?> players;
+
+        public SimulatedListener(Players<?> players)
+        {
+            this.players = players;
+        }
+
+        @EventHandler
+        private void onBreak(BlockBreakEvent event)
+        {
+            BenchPlayerModel model = this.players.getModelOrNull(event.getPlayer(), BenchPlayerModel.class);
+            if (model != null) {
+                model.addBlockBreak(1);
+            }
+        }
+
+        @EventHandler
+        private void onPlace(BlockPlaceEvent event)
+        {
+            BenchPlayerModel model = this.players.getModelOrNull(event.getPlayer(), BenchPlayerModel.class);
+            if (model != null) {
+                model.addBlockPlace(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import fr.neutronstars.playermodel.Players;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure l'enregistrement puis la suppression d'un model avec N joueurs connectés, ce qui instancie puis retire
+ * le model de chaque joueur.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelRegistrationBenchmark
+{
+    @Param({"100", "1000", "10000"})
+    public int online;
+
+    private Players<Plugin> players;
+
+    @Setup
+    public void setup()
+    {
+        FakeServer server = FakeServer.install();
+        this.players = Players.create(server.getPlugin());
+        this.players.registerModel(BenchPlayerModel.class);
+        this.players.load();
+        for (int i = 0; i < this.online; i++) {
+            server.connect(server.createPlayer(new UUID(0L, i), "Player" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.players.unload();
+    }
+
+    @Benchmark
+    public Players<Plugin> registerUnregister()
+    {
+        return this.players.registerModel(BenchPlayerModel.Other.class).unRegisterModel(BenchPlayerModel.Other.class);
+    }
+}
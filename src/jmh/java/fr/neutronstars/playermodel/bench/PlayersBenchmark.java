@@ -0,0 +1,151 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import fr.neutronstars.playermodel.ModelKey;
+import fr.neutronstars.playermodel.Player;
+import fr.neutronstars.playermodel.Players;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure les lectures du gestionnaire {@link Players} avec des joueurs connectés : recherche d'un joueur enregistré
+ * ou inconnu, récupération d'un model par sa class ou par sa {@link ModelKey}, puis parcours de tous les joueurs
+ * enregistrés avec {@link Players#getSnapshot()} ou recherche de ceux qui possèdent un model avec
+ * {@link Players#query()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlayersBenchmark
+{
+    @Param({"100", "1000", "10000"})
+    public int online;
+
+    private Players<Plugin> players;
+
+    private ModelKey<BenchPlayerModel> key;
+
+    private org.bukkit.entity.Player[] bukkitPlayers;
+
+    private Player[] registered;
+
+    private UUID[] strangers;
+
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        FakeServer server = FakeServer.install();
+        this.players = Players.create(server.getPlugin());
+        this.players.registerModel(BenchPlayerModel.class);
+        this.key = this.players.getModelKey(BenchPlayerModel.class).orElseThrow(IllegalStateException::new);
+        this.players.load();
+
+        this.bukkitPlayers = new org.bukkit.entity.Player[this.online];
+        this.registered = new Player[this.online];
+        this.strangers = new UUID[this.online];
+        for (int i = 0; i < this.online; i++) {
+            this.bukkitPlayers[i] = server.createPlayer(new UUID(0L, i), "Player" + i);
+            server.connect(this.bukkitPlayers[i]);
+            this.registered[i] = this.players.getIfPresent(this.bukkitPlayers[i]);
+            this.strangers[i] = new UUID(1L, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.players.unload();
+    }
+
+    private int next()
+    {
+        int next = this.index + 1;
+        this.index = next == this.online ? 0 : next;
+        return this.index;
+    }
+
+    @Benchmark
+    public Optional<Player> getHit()
+    {
+        return this.players.get(this.bukkitPlayers[this.next()]);
+    }
+
+    @Benchmark
+    public Player getIfPresentHit()
+    {
+        return this.players.getIfPresent(this.bukkitPlayers[this.next()]);
+    }
+
+    @Benchmark
+    public Optional<Player> getMiss()
+    {
+        return this.players.get(this.strangers[this.next()]);
+    }
+
+    @Benchmark
+    public Optional<BenchPlayerModel> getModel()
+    {
+        return this.registered[this.next()].getModel(BenchPlayerModel.class);
+    }
+
+    @Benchmark
+    public BenchPlayerModel getModelOrNull()
+    {
+        return this.registered[this.next()].getModelOrNull(BenchPlayerModel.class);
+    }
+
+    @Benchmark
+    public BenchPlayerModel getByKey()
+    {
+        return this.registered[this.next()].get(this.key);
+    }
+
+    @Benchmark
+    public void iterateSnapshot(Blackhole blackhole)
+    {
+        for (Player player : this.players.getSnapshot()) {
+            blackhole.consume(player);
+        }
+    }
+
+    @Benchmark
+    public long queryModel()
+    {
+        return this.players.query().with(this.key).count();
+    }
+
+    @Benchmark
+    public long queryWhere()
+    {
+        return this.players.query().where(this.key, model -> model.getBlockBreak() == 0).count();
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La sauvegarde automatique d'un gestionnaire {@link Players}, activée par
+ * {@link Players#setAutosave(long, TimeUnit)}.
+ *
+ * Au lieu de sauvegarder tous les joueurs en une fois, la tâche est appelée à chaque tick par le thread principal et
+ * sauvegarde une part des joueurs enregistrés, pour que chacun soit sauvegardé une fois par intervalle. Chaque tick
+ * s'arrête dès que son budget de temps est dépassé, le retard est rattrapé par les ticks suivants.
+ *
+ * Le budget s'adapte à la marge mesurée entre deux ticks : il est divisé par deux lorsqu'un tick dure plus de
+ * {@link Autosave#TICK}, puis remonte progressivement jusqu'au budget maximum tant que le serveur suit.
+ *
+ * Seule la copie des valeurs des joueurs est faite par le thread principal. Leur encodage est fait par les threads
+ * d'encodage du gestionnaire et l'écriture par le thread du {@link PlayerStorage}, voir {@link Players#save(Player)}.
+ */
+final class Autosave implements Runnable
+{
+    /**
+     * La durée normale d'un tick.
+     */
+    static final long TICK = TimeUnit.MILLISECONDS.toNanos(50L);
+
+    /**
+     * Le retard d'un tick toléré avant de réduire le budget.
+     */
+    private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(2L);
+
+    /**
+     * Le plus petit budget, pour que la sauvegarde avance toujours un peu.
+     */
+    private static final long MIN_BUDGET = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    private final Players<?> players;
+
+    /**
+     * L'intervalle de sauvegarde de chaque joueur, en ticks, 0 si la sauvegarde automatique est désactivée.
+     */
+    private volatile long interval;
+
+    private volatile long maxBudget = TimeUnit.MILLISECONDS.toNanos(2L);
+
+    private volatile long budget = this.maxBudget;
+
+    /**
+     * Les joueurs du tour en cours, le nombre de joueurs déjà sauvegardés et le nombre de ticks écoulés depuis le début
+     * du tour. Utilisés uniquement par le thread principal.
+     */
+    private PlayersSnapshot round = PlayersSnapshot.EMPTY;
+    private int saved;
+    private long ticks;
+
+    private long lastTick;
+
+    Autosave(Players<?> players)
+    {
+        this.players = players;
+    }
+
+    void setInterval(long ticks)
+    {
+        this.interval = Math.max(0L, ticks);
+    }
+
+    long getInterval()
+    {
+        return this.interval;
+    }
+
+    void setMaxBudget(long nanos)
+    {
+        this.maxBudget = Math.max(MIN_BUDGET, nanos);
+        this.budget = Math.min(this.budget, this.maxBudget);
+    }
+
+    long getMaxBudget()
+    {
+        return this.maxBudget;
+    }
+
+    long getBudget()
+    {
+        return this.budget;
+    }
+
+    @Override
+    public void run()
+    {
+        long now = System.nanoTime();
+        long gap = this.lastTick != 0L ? now - this.lastTick : TICK;
+        this.lastTick = now;
+        long interval = this.interval;
+        if (interval <= 0L || !this.players.getStorage().isPresent()) {
+            this.round = PlayersSnapshot.EMPTY;
+            this.saved = 0;
+            this.ticks = 0L;
+            return;
+        }
+        this.adapt(gap);
+
+        if (this.saved >= this.round.size() && this.ticks >= interval || this.ticks == 0L) {
+            this.round = this.players.getSnapshot();
+            this.saved = 0;
+            this.ticks = 0L;
+        }
+        this.ticks++;
+        int size = this.round.size();
+        // Le nombre de joueurs qui devraient être sauvegardés à la fin de ce tick pour finir le tour à temps.
+        long target = Math.min(size, (this.ticks * size + interval - 1) / interval);
+        if (this.saved >= target) {
+            return;
+        }
+        long start = this.players.metrics.start();
+        long deadline = now + this.budget;
+        int count = 0;
+        while (this.saved < target) {
+            Player player = this.round.get(this.saved++);
+            if (this.players.playerMap.get(player.getUniqueId()) == player) {
+                this.players.save(player);
+                count++;
+            }
+            if (System.nanoTime() - deadline >= 0L) {
+                break;
+            }
+        }
+        this.players.metrics.recordAutosave(start, count);
+    }
+
+    /**
+     * Réduit le budget lorsque le tick précédent a pris du retard, l'augmente sinon.
+     */
+    private void adapt(long gap)
+    {
+        long budget = this.budget;
+        long maxBudget = this.maxBudget;
+        if (gap > TICK + TOLERANCE) {
+            budget = Math.max(MIN_BUDGET, budget >> 1);
+        } else if (budget < maxBudget) {
+            budget = Math.min(maxBudget, budget + (maxBudget >> 4));
+        }
+        this.budget = budget;
+    }
+}
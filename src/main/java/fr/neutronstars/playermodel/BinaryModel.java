@@ -0,0 +1,39 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Un {@link PlayerModel} qui écrit et relit lui-même ses données, à la place des champs lus par le {@link ModelCodec}.
+ * Les méthodes statiques de {@link ModelCodec} permettent d'écrire les chaînes de caractères.
+ */
+public interface BinaryModel
+{
+    /**
+     * Permet d'écrire les données du model.
+     * @param buffer le buffer où écrire.
+     * @throws java.nio.BufferOverflowException si le buffer est trop petit.
+     */
+    void writeTo(ByteBuffer buffer);
+
+    /**
+     * Permet de relire les données du model. Le buffer se termine à la fin des données du model.
+     * @param buffer  le buffer à lire.
+     * @param version la version {@link ModelVersion} avec laquelle les données ont été écrites.
+     */
+    void readFrom(ByteBuffer buffer, int version);
+}
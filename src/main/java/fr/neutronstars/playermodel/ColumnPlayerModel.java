@@ -0,0 +1,264 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Un {@link PlayerModel} dont les valeurs numériques sont stockées dans les {@link StatColumn} de la {@link StatTable}
+ * du gestionnaire {@link Players}, plutôt que dans des champs.
+ *
+ * Les colonnes sont récupérées dans le constructeur, puis les accesseurs du model lisent et écrivent directement dedans :
+ * <pre>
+ * private final StatColumn blockBreak = this.column("blockBreak");
+ *
+ * public long getBlockBreak()
+ * {
+ *     return this.get(this.blockBreak);
+ * }
+ * </pre>
+ *
+ * Les colonnes sont propres à la class du model, voir {@link StatTable#column(Class, String)}. Les modifications faites
+ * par {@link ColumnPlayerModel#set(StatColumn, long)} et {@link ColumnPlayerModel#add(StatColumn, long)} marquent le
+ * model avec {@link PlayerModel#markDirty()}.
+ *
+ * Le joueur ne reçoit une ligne dans la {@link StatTable} que lorsque le model devient celui d'un joueur enregistré :
+ * avant, par exemple pour un joueur préparé, les valeurs sont gardées par le model puis copiées dans sa ligne.
+ *
+ * Lorsque le model est retiré de son joueur, après {@link PlayerModel#onUnload()}, ses valeurs sont remises à zéro et
+ * ne sont plus comptées par les agrégations de la {@link StatTable}. Les modifications suivantes sont ignorées et les
+ * lectures renvoient zéro.
+ *
+ * Ce model ne peut être utilisé que par un {@link Player} créé par un gestionnaire {@link Players}.
+ */
+public abstract class ColumnPlayerModel extends PlayerModel implements BinaryModel
+{
+    /**
+     * Les colonnes récupérées par ce model, écrites par le {@link ModelCodec} avec leur nom.
+     */
+    private StatColumn[] columns = new StatColumn[0];
+
+    /**
+     * Le nom de chaque colonne dans ce model, dans l'ordre de {@link ColumnPlayerModel#columns}.
+     */
+    private String[] names = new String[0];
+
+    /**
+     * La valeur de chaque colonne tant que le joueur n'a pas de ligne, dans l'ordre de {@link ColumnPlayerModel#columns}.
+     */
+    private long[] values = new long[0];
+
+    /**
+     * La ligne du joueur utilisée par ce model, -1 tant que le model n'est pas celui d'un joueur enregistré.
+     */
+    private volatile int row = -1;
+
+    /**
+     * Si ce model a été retiré de son joueur.
+     */
+    private volatile boolean retired;
+
+    protected ColumnPlayerModel(Player entityModel)
+    {
+        super(entityModel);
+        if (entityModel.players == null) {
+            throw new IllegalStateException("The player " + entityModel.getUniqueId() + " does not belong to a Players.");
+        }
+    }
+
+    /**
+     * Permet de récupérer une colonne de la {@link StatTable} du gestionnaire du joueur, propre à la class de ce model.
+     * La ligne du joueur est comptée dans les agrégations de la colonne jusqu'à ce que le model soit retiré.
+     * @param name le nom de la colonne.
+     * @return la colonne.
+     */
+    protected synchronized StatColumn column(String name)
+    {
+        StatColumn column = this.player.players.getStats().column(this.getClass(), name);
+        if (this.indexOf(column) >= 0) {
+            return column;
+        }
+        this.columns = Arrays.copyOf(this.columns, this.columns.length + 1);
+        this.columns[this.columns.length - 1] = column;
+        this.names = Arrays.copyOf(this.names, this.names.length + 1);
+        this.names[this.names.length - 1] = name;
+        this.values = Arrays.copyOf(this.values, this.values.length + 1);
+        if (this.row >= 0) {
+            column.attach(this.row);
+        }
+        return column;
+    }
+
+    private int indexOf(StatColumn column)
+    {
+        for (int i = 0; i < this.columns.length; i++) {
+            if (this.columns[i] == column) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Permet de récupérer la valeur du joueur dans une colonne.
+     * @param column la colonne.
+     * @return la valeur du joueur, zéro si le model a été retiré.
+     */
+    protected long get(StatColumn column)
+    {
+        if (this.retired) {
+            return 0L;
+        }
+        int row = this.row;
+        if (row >= 0) {
+            return column.get(row);
+        }
+        synchronized (this) {
+            if (this.row >= 0) {
+                return column.get(this.row);
+            }
+            int index = this.indexOf(column);
+            return index >= 0 ? this.values[index] : 0L;
+        }
+    }
+
+    /**
+     * Permet de changer la valeur du joueur dans une colonne.
+     * @param column la colonne.
+     * @param value  la nouvelle valeur.
+     */
+    protected void set(StatColumn column, long value)
+    {
+        if (this.retired) {
+            return;
+        }
+        int row = this.row;
+        if (row < 0) {
+            synchronized (this) {
+                row = this.row;
+                int index = this.indexOf(column);
+                if (row < 0 && index >= 0) {
+                    this.values[index] = value;
+                }
+            }
+        }
+        if (row >= 0) {
+            column.set(row, value);
+        }
+        this.markDirty();
+    }
+
+    /**
+     * Permet d'ajouter une valeur à celle du joueur dans une colonne.
+     * @param column la colonne.
+     * @param delta  la valeur à ajouter, négative pour retirer.
+     */
+    protected void add(StatColumn column, long delta)
+    {
+        if (this.retired) {
+            return;
+        }
+        int row = this.row;
+        if (row < 0) {
+            synchronized (this) {
+                row = this.row;
+                int index = this.indexOf(column);
+                if (row < 0 && index >= 0) {
+                    this.values[index] += delta;
+                }
+            }
+        }
+        if (row >= 0) {
+            column.add(row, delta);
+        }
+        this.markDirty();
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer)
+    {
+        StatColumn[] columns;
+        String[] names;
+        synchronized (this) {
+            columns = this.columns;
+            names = this.names;
+        }
+        buffer.putShort((short) columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            ModelCodec.writeString(buffer, names[i]);
+            buffer.putLong(this.get(columns[i]));
+        }
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer, int version)
+    {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            String name = ModelCodec.readString(buffer);
+            long value = buffer.getLong();
+            for (int c = 0; c < this.names.length; c++) {
+                if (this.names[c].equals(name)) {
+                    this.set(this.columns[c], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Réserve la ligne du joueur et y copie les valeurs gardées par ce model.
+     */
+    @Override
+    void attach()
+    {
+        if (this.retired || this.row >= 0) {
+            return;
+        }
+        int row = this.player.getStatRow();
+        if (row < 0) {
+            return;
+        }
+        synchronized (this) {
+            if (this.retired || this.row >= 0) {
+                return;
+            }
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i].set(row, this.values[i]);
+                this.columns[i].attach(row);
+            }
+            this.values = new long[this.values.length];
+            this.row = row;
+        }
+    }
+
+    /**
+     * Remet les valeurs de ce model à zéro et les retire des agrégations de la {@link StatTable}.
+     */
+    @Override
+    void detach()
+    {
+        this.retired = true;
+        synchronized (this) {
+            if (this.row >= 0) {
+                for (StatColumn column : this.columns) {
+                    column.detach(this.row);
+                }
+            }
+            Arrays.fill(this.values, 0L);
+        }
+    }
+}
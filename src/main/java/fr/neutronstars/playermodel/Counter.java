@@ -0,0 +1,117 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Un compteur déclaré par un {@link CounterPlayerModel}.
+ *
+ * Les compteurs se déclarent dans des champs statiques de la class du model :
+ * <pre>
+ * public static final Counter BLOCK_BREAK = Counter.declare(StatsModel.class, "blockBreak");
+ * </pre>
+ *
+ * Le total d'un compteur pour tous les joueurs enregistrés dans un gestionnaire est donné par
+ * {@link Players#getTotal(Counter)}.
+ */
+public final class Counter
+{
+    /**
+     * Les compteurs déclarés par class de model, dans l'ordre de leur déclaration. Gardés par la class elle-même, ils
+     * ne retiennent pas le class loader d'un plugin déchargé.
+     */
+    private static final ClassValue<List<Counter>> DECLARED = new ClassValue<List<Counter>>()
+    {
+        @Override
+        protected List<Counter> computeValue(Class<?> classModel)
+        {
+            return new CopyOnWriteArrayList<>();
+        }
+    };
+
+    /**
+     * Permet de déclarer un nouveau compteur pour une class de model.
+     * @param classModel la class du model qui déclare le compteur.
+     * @param name       le nom du compteur.
+     * @return le nouveau compteur.
+     */
+    public static Counter declare(Class<? extends CounterPlayerModel> classModel, String name)
+    {
+        List<Counter> counters = Counter.DECLARED.get(classModel);
+        synchronized (counters) {
+            Counter counter = new Counter(classModel, name, counters.size());
+            counters.add(counter);
+            return counter;
+        }
+    }
+
+    /**
+     * Permet de récupérer les compteurs déclarés par une class de model.
+     * @param classModel la class du model.
+     * @return les compteurs déclarés, dans l'ordre de leur déclaration.
+     */
+    public static List<Counter> declared(Class<?> classModel)
+    {
+        return Collections.unmodifiableList(Counter.DECLARED.get(classModel));
+    }
+
+    private final Class<? extends CounterPlayerModel> classModel;
+    private final String name;
+    private final int index;
+
+    private Counter(Class<? extends CounterPlayerModel> classModel, String name, int index)
+    {
+        this.classModel = classModel;
+        this.name = name;
+        this.index = index;
+    }
+
+    /**
+     * Permet de récupérer la class du model qui a déclaré le compteur.
+     * @return la class du model.
+     */
+    public Class<? extends CounterPlayerModel> getModelClass()
+    {
+        return this.classModel;
+    }
+
+    /**
+     * Permet de récupérer le nom du compteur.
+     * @return le nom du compteur.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Permet de récupérer l'index du compteur dans son model.
+     * @return l'index du compteur.
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Counter{" + this.classModel.getSimpleName() + "." + this.name + "}";
+    }
+}
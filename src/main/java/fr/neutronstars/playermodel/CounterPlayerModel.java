@@ -0,0 +1,241 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un {@link PlayerModel} composé de compteurs numériques déclarés avec {@link Counter#declare(Class, String)}.
+ *
+ * Les compteurs peuvent être modifiés depuis n'importe quel thread sans verrou et sans perdre de valeur, même lorsque
+ * plusieurs listeners les modifient en même temps. Seules les modifications faites avant l'enregistrement du joueur,
+ * par exemple à la lecture de ses données, passent par le moniteur du model. Le total de chaque compteur pour les joueurs enregistrés dans un
+ * gestionnaire est disponible avec {@link Players#getTotal(Counter)} : les valeurs d'un model n'y sont ajoutées que
+ * lorsque son joueur est enregistré, et en sont retirées lorsque le model est retiré de son joueur. Un model retiré
+ * ignore ensuite les modifications.
+ *
+ * Les compteurs doivent être déclarés par la class concrète du model. Ils sont écrits par le {@link ModelCodec} avec
+ * leur nom, et chaque modification marque le model avec {@link PlayerModel#markDirty()}.
+ */
+public abstract class CounterPlayerModel extends PlayerModel implements BinaryModel
+{
+    /**
+     * Le nombre de modifications en cours par groupe de threads, chaque groupe sur sa propre ligne de cache. Permet au
+     * model retiré d'attendre les modifications commencées avant son retrait sans qu'elles partagent un verrou.
+     */
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    private static final int STRIPE_PADDING = 16;
+    private static final AtomicLongArray IN_FLIGHT = new AtomicLongArray(STRIPES * STRIPE_PADDING);
+
+    private final LongAdder[] counters;
+
+    /**
+     * Les totaux du gestionnaire auxquels participe ce model, null tant que son joueur n'est pas enregistré. Ajoutés ou
+     * retirés en tenant le moniteur du model, comme les modifications faites avant l'ajout.
+     */
+    private volatile LongAdder[] totals;
+
+    /**
+     * Si ce model a été retiré de son joueur.
+     */
+    private volatile boolean retired;
+
+    protected CounterPlayerModel(Player entityModel)
+    {
+        super(entityModel);
+        this.counters = new LongAdder[Counter.declared(this.getClass()).size()];
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Permet de récupérer le stockage d'un compteur de ce model.
+     * @param counter le compteur.
+     * @return le stockage du compteur.
+     */
+    private LongAdder adder(Counter counter)
+    {
+        if (counter.getModelClass() != this.getClass()) {
+            throw new IllegalArgumentException(counter + " is not declared by " + this.getClass().getName());
+        }
+        return this.counters[counter.getIndex()];
+    }
+
+    private static int stripe()
+    {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_PADDING;
+    }
+
+    /**
+     * Ajoute une valeur à un compteur et aux totaux. Sans verrou une fois le joueur enregistré : le model retiré
+     * attend seulement les modifications en cours, voir {@link CounterPlayerModel#detach()}.
+     * @return si la valeur a été ajoutée.
+     */
+    private boolean apply(LongAdder adder, int index, long delta, boolean absolute)
+    {
+        if (this.totals == null) {
+            synchronized (this) {
+                if (this.retired) {
+                    return false;
+                }
+                if (this.totals == null) {
+                    adder.add(absolute ? delta - adder.sum() : delta);
+                    return true;
+                }
+            }
+        }
+        int stripe = CounterPlayerModel.stripe();
+        IN_FLIGHT.incrementAndGet(stripe);
+        try {
+            if (this.retired) {
+                return false;
+            }
+            if (absolute) {
+                delta -= adder.sum();
+            }
+            adder.add(delta);
+            this.totals[index].add(delta);
+            return true;
+        } finally {
+            IN_FLIGHT.decrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * Permet d'ajouter une valeur à un compteur.
+     * @param counter le compteur.
+     * @param delta   la valeur à ajouter, négative pour retirer.
+     */
+    public void add(Counter counter, long delta)
+    {
+        if (this.apply(this.adder(counter), counter.getIndex(), delta, false)) {
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Permet d'ajouter 1 à un compteur.
+     * @param counter le compteur.
+     */
+    public void increment(Counter counter)
+    {
+        this.add(counter, 1L);
+    }
+
+    /**
+     * Permet de récupérer la valeur d'un compteur.
+     * @param counter le compteur.
+     * @return la valeur du compteur.
+     */
+    public long get(Counter counter)
+    {
+        return this.adder(counter).sum();
+    }
+
+    /**
+     * Permet de changer la valeur d'un compteur. Une modification faite en même temps par un autre thread peut être
+     * écrasée, cette méthode est faite pour initialiser le compteur.
+     * @param counter le compteur.
+     * @param value   la nouvelle valeur.
+     */
+    public void set(Counter counter, long value)
+    {
+        if (this.apply(this.adder(counter), counter.getIndex(), value, true)) {
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Permet de récupérer la valeur de tous les compteurs, dans l'ordre de leur déclaration.
+     * @return la valeur de tous les compteurs.
+     */
+    public long[] snapshot()
+    {
+        long[] values = new long[this.counters.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.counters[i].sum();
+        }
+        return values;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer)
+    {
+        List<Counter> declared = Counter.declared(this.getClass());
+        buffer.putShort((short) this.counters.length);
+        for (int i = 0; i < this.counters.length; i++) {
+            ModelCodec.writeString(buffer, declared.get(i).getName());
+            buffer.putLong(this.counters[i].sum());
+        }
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer, int version)
+    {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            String name = ModelCodec.readString(buffer);
+            long value = buffer.getLong();
+            for (Counter counter : Counter.declared(this.getClass())) {
+                if (counter.getName().equals(name) && counter.getIndex() < this.counters.length) {
+                    this.set(counter, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajoute les valeurs de ce model aux totaux de son gestionnaire.
+     */
+    @Override
+    synchronized void attach()
+    {
+        if (this.retired || this.totals != null) {
+            return;
+        }
+        LongAdder[] totals = this.player.players.getCounterTotals(this.getClass(), this.counters.length);
+        for (int i = 0; i < this.counters.length; i++) {
+            totals[i].add(this.counters[i].sum());
+        }
+        this.totals = totals;
+    }
+
+    /**
+     * Retire les valeurs de ce model des totaux de son gestionnaire, les modifications suivantes sont ignorées. Les
+     * modifications qui n'ont pas encore vu le retrait sont attendues avant de lire les valeurs à retirer.
+     */
+    @Override
+    synchronized void detach()
+    {
+        this.retired = true;
+        LongAdder[] totals = this.totals;
+        if (totals == null) {
+            return;
+        }
+        for (int stripe = 0; stripe < IN_FLIGHT.length(); stripe += STRIPE_PADDING) {
+            while (IN_FLIGHT.get(stripe) != 0L) {
+                Thread.yield();
+            }
+        }
+        for (int i = 0; i < this.counters.length; i++) {
+            totals[i].add(-this.counters[i].sum());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Permet d'indiquer les autres {@link PlayerModel} dont un model a besoin dans son constructeur, par exemple
+ * {@code @DependsOn(RankPlayerModel.class)}.
+ *
+ * Les dépendances doivent être enregistrées dans le gestionnaire {@link Players} avant le model, ou en même temps.
+ * Elles sont alors toujours instanciées et ajoutées au {@link Player} avant lui. Des dépendances qui forment un cycle
+ * empêchent l'enregistrement du model.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DependsOn
+{
+    Class<? extends PlayerModel>[] value();
+}
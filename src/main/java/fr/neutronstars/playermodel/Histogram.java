@@ -0,0 +1,152 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un histogramme de durées en nanosecondes, par puissance de deux. L'enregistrement d'une valeur ne prend aucun verrou
+ * et n'alloue rien, la lecture est approximative si des valeurs sont enregistrées en même temps.
+ *
+ * L'emplacement {@code i} compte les valeurs comprises entre {@code 2^(i-1)} et {@code 2^i - 1}, l'emplacement 0 compte
+ * les valeurs nulles.
+ */
+public final class Histogram
+{
+    private final LongAdder[] buckets = new LongAdder[64];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    Histogram()
+    {
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Permet d'enregistrer une durée.
+     * @param nanos la durée en nanosecondes, une valeur négative compte comme nulle.
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0L, nanos);
+        this.buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Permet de récupérer le nombre de durées enregistrées.
+     * @return le nombre de durées.
+     */
+    public long getCount()
+    {
+        long count = 0L;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Permet de récupérer la durée moyenne.
+     * @param unit l'unité du résultat.
+     * @return la durée moyenne, 0 si aucune durée n'a été enregistrée.
+     */
+    public double getMean(TimeUnit unit)
+    {
+        long count = this.getCount();
+        return count == 0L ? 0.0 : (double) this.sum.sum() / count / unit.toNanos(1L);
+    }
+
+    /**
+     * Permet de récupérer la plus grande durée.
+     * @param unit l'unité du résultat.
+     * @return la plus grande durée.
+     */
+    public double getMax(TimeUnit unit)
+    {
+        return (double) this.max.get() / unit.toNanos(1L);
+    }
+
+    /**
+     * Permet de récupérer un percentile. Le résultat est la borne haute de l'emplacement qui le contient, il est donc
+     * surestimé d'au plus un facteur deux.
+     * @param percentile le percentile entre 0 et 1, par exemple 0.99.
+     * @param unit       l'unité du résultat.
+     * @return le percentile, 0 si aucune durée n'a été enregistrée.
+     */
+    public double getPercentile(double percentile, TimeUnit unit)
+    {
+        long[] counts = this.getBuckets();
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0L) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile * total));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = (1L << i) - 1L;
+                return (double) Math.min(upper, this.max.get()) / unit.toNanos(1L);
+            }
+        }
+        return this.getMax(unit);
+    }
+
+    /**
+     * Permet de récupérer le nombre de durées de chaque emplacement.
+     * @return une copie des compteurs des emplacements.
+     */
+    public long[] getBuckets()
+    {
+        long[] counts = new long[this.buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Permet de remettre l'histogramme à zéro.
+     */
+    public void reset()
+    {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.sum.reset();
+        this.max.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT, "Histogram{count=%d, mean=%.1fus, p99=%.1fus, max=%.1fus}",
+                this.getCount(), this.getMean(TimeUnit.MICROSECONDS), this.getPercentile(0.99, TimeUnit.MICROSECONDS),
+                this.getMax(TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,475 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * Un classement des joueurs enregistrés selon une valeur d'un {@link PlayerModel}, du plus grand au plus petit.
+ * A égalité, les joueurs sont départagés par leur identifiant.
+ *
+ * Le classement est créé par {@link Players#registerLeaderboard(Class, ToLongFunction)} puis tenu à jour par le
+ * gestionnaire lorsque les joueurs sont enregistrés ou supprimés, et lorsqu'un model appelle {@link PlayerModel#changed()}.
+ * La lecture des K premiers joueurs se fait en O(K + log n) et celle du rang d'un joueur en O(log n).
+ *
+ * {@link PlayerModel#changed()} ne fait que noter le joueur, sans verrou ni allocation lorsqu'il est déjà noté. Les
+ * joueurs notés sont reclassés une seule fois par tick par le thread principal, ou dès qu'une lecture est faite depuis
+ * le thread principal. Une lecture depuis un autre thread peut donc avoir jusqu'à un tick de retard. Un joueur dont le
+ * rang ne change pas est reclassé sur place.
+ *
+ * @param <M> le type du model classé.
+ */
+public final class Leaderboard<M extends PlayerModel>
+{
+    private final Players<?> players;
+
+    private final Class<M> classModel;
+
+    private final ToLongFunction<? super M> score;
+
+    /**
+     * Les noeuds du classement par joueur, protégés par le verrou du classement.
+     */
+    private final Map<UUID, Node> nodes = new HashMap<>();
+
+    /**
+     * Le dernier model modifié de chaque joueur qui n'a pas encore été reclassé.
+     */
+    private final Map<UUID, PlayerModel> changed = new ConcurrentHashMap<>();
+
+    /**
+     * La racine de l'arbre, un treap dont chaque noeud connaît la taille de son sous-arbre.
+     */
+    private Node root;
+
+    Leaderboard(Players<?> players, Class<M> classModel, ToLongFunction<? super M> score)
+    {
+        this.players = players;
+        this.classModel = classModel;
+        this.score = score;
+    }
+
+    /**
+     * Permet de récupérer la class du model classé.
+     * @return la class du model.
+     */
+    public Class<M> getModelClass()
+    {
+        return this.classModel;
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs classés.
+     * @return le nombre de joueurs classés.
+     */
+    public synchronized int size()
+    {
+        this.flushIfPrimary();
+        return this.nodes.size();
+    }
+
+    /**
+     * Permet de récupérer les premiers joueurs du classement.
+     * @param limit le nombre maximum de joueurs.
+     * @return les joueurs dans l'ordre du classement.
+     */
+    public synchronized List<Entry> top(int limit)
+    {
+        this.flushIfPrimary();
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, this.nodes.size())));
+        this.collect(this.root, limit, entries);
+        return entries;
+    }
+
+    private void collect(Node node, int limit, List<Entry> entries)
+    {
+        if (node == null || entries.size() >= limit) {
+            return;
+        }
+        this.collect(node.left, limit, entries);
+        if (entries.size() < limit) {
+            entries.add(new Entry(node.player, node.score, entries.size() + 1));
+            this.collect(node.right, limit, entries);
+        }
+    }
+
+    /**
+     * Permet de récupérer le joueur à un rang du classement.
+     * @param rank le rang, à partir de 1.
+     * @return un {@link Optional} avec le joueur s'il existe.
+     */
+    public synchronized Optional<Entry> get(int rank)
+    {
+        this.flushIfPrimary();
+        if (rank < 1 || rank > Leaderboard.size(this.root)) {
+            return Optional.empty();
+        }
+        Node node = this.root;
+        int index = rank - 1;
+        while (true) {
+            int left = Leaderboard.size(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index > left) {
+                index -= left + 1;
+                node = node.right;
+            } else {
+                return Optional.of(new Entry(node.player, node.score, rank));
+            }
+        }
+    }
+
+    /**
+     * Permet de récupérer le rang d'un joueur.
+     * @param player le joueur.
+     * @return un {@link OptionalInt} avec le rang du joueur, à partir de 1, s'il est classé.
+     */
+    public synchronized OptionalInt getRank(Player player)
+    {
+        this.flushIfPrimary();
+        Node target = this.nodes.get(player.getUniqueId());
+        if (target == null) {
+            return OptionalInt.empty();
+        }
+        int rank = 1;
+        Node node = this.root;
+        while (node != target) {
+            if (Leaderboard.compare(target, node) < 0) {
+                node = node.left;
+            } else {
+                rank += Leaderboard.size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return OptionalInt.of(rank + Leaderboard.size(node.left));
+    }
+
+    /**
+     * Permet de récupérer la valeur classée d'un joueur.
+     * @param player le joueur.
+     * @return un {@link OptionalLong} avec la valeur du joueur s'il est classé.
+     */
+    public synchronized OptionalLong getScore(Player player)
+    {
+        this.flushIfPrimary();
+        Node node = this.nodes.get(player.getUniqueId());
+        return node != null ? OptionalLong.of(node.score) : OptionalLong.empty();
+    }
+
+    /**
+     * Permet de noter qu'un model a changé, le joueur sera reclassé par {@link Leaderboard#flush()}.
+     * @param model le model du joueur.
+     */
+    void changed(PlayerModel model)
+    {
+        this.changed.put(model.player.getUniqueId(), model);
+    }
+
+    private void flushIfPrimary()
+    {
+        if (!this.changed.isEmpty() && Bukkit.isPrimaryThread()) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Permet de reclasser les joueurs dont le model a changé depuis le dernier appel, une seule fois par joueur.
+     * A appeler depuis le thread qui modifie les models.
+     */
+    synchronized void flush()
+    {
+        for (Map.Entry<UUID, PlayerModel> entry : this.changed.entrySet()) {
+            // Retiré avant le calcul de la valeur : une modification faite pendant celui-ci sera reclassée ensuite.
+            if (this.changed.remove(entry.getKey(), entry.getValue())) {
+                this.update(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Permet de recalculer la valeur d'un joueur. Le joueur n'est classé que si le model est celui qu'il possède
+     * actuellement et qu'il est enregistré dans le gestionnaire.
+     * @param model le model du joueur.
+     */
+    synchronized void update(PlayerModel model)
+    {
+        Player player = model.player;
+        if (!this.players.isCurrent(model)) {
+            this.remove(player);
+            return;
+        }
+        long value = this.score.applyAsLong(this.classModel.cast(model));
+        Node node = this.nodes.get(player.getUniqueId());
+        if (node == null || node.player != player) {
+            if (node != null) {
+                this.root = Leaderboard.erase(this.root, node);
+            }
+            node = new Node(player, value);
+            this.nodes.put(player.getUniqueId(), node);
+            this.root = Leaderboard.insert(this.root, node);
+            return;
+        }
+        if (node.score == value) {
+            return;
+        }
+        if (this.keepsRank(node, value)) {
+            node.score = value;
+            return;
+        }
+        this.root = Leaderboard.erase(this.root, node);
+        node.score = value;
+        node.left = null;
+        node.right = null;
+        this.root = Leaderboard.insert(this.root, node.update());
+    }
+
+    /**
+     * Permet de savoir si un noeud reste entre ses voisins avec une nouvelle valeur, il peut alors être modifié sur place.
+     */
+    private boolean keepsRank(Node target, long value)
+    {
+        Node previous = null;
+        Node next = null;
+        Node node = this.root;
+        while (node != target) {
+            if (Leaderboard.compare(target, node) < 0) {
+                next = node;
+                node = node.left;
+            } else {
+                previous = node;
+                node = node.right;
+            }
+        }
+        if (node.left != null) {
+            previous = node.left;
+            while (previous.right != null) {
+                previous = previous.right;
+            }
+        }
+        if (node.right != null) {
+            next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+        }
+        UUID uuid = target.player.getUniqueId();
+        return (previous == null || Leaderboard.compare(previous.score, previous.player.getUniqueId(), value, uuid) < 0)
+                && (next == null || Leaderboard.compare(value, uuid, next.score, next.player.getUniqueId()) < 0);
+    }
+
+    /**
+     * Permet de retirer un joueur du classement.
+     * @param player le joueur.
+     */
+    synchronized void remove(Player player)
+    {
+        Node node = this.nodes.get(player.getUniqueId());
+        if (node != null && node.player == player) {
+            this.changed.remove(player.getUniqueId());
+            this.nodes.remove(player.getUniqueId());
+            this.root = Leaderboard.erase(this.root, node);
+        }
+    }
+
+    /**
+     * Permet de vider le classement.
+     */
+    synchronized void clear()
+    {
+        this.changed.clear();
+        this.nodes.clear();
+        this.root = null;
+    }
+
+    private static int size(Node node)
+    {
+        return node != null ? node.size : 0;
+    }
+
+    private static int compare(Node a, Node b)
+    {
+        return Leaderboard.compare(a.score, a.player.getUniqueId(), b.score, b.player.getUniqueId());
+    }
+
+    private static int compare(long score, UUID uuid, long otherScore, UUID otherUuid)
+    {
+        if (score != otherScore) {
+            return score > otherScore ? -1 : 1;
+        }
+        return uuid.compareTo(otherUuid);
+    }
+
+    private static Node insert(Node node, Node inserted)
+    {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            Node[] split = Leaderboard.split(node, inserted);
+            inserted.left = split[0];
+            inserted.right = split[1];
+            return inserted.update();
+        }
+        if (Leaderboard.compare(inserted, node) < 0) {
+            node.left = Leaderboard.insert(node.left, inserted);
+        } else {
+            node.right = Leaderboard.insert(node.right, inserted);
+        }
+        return node.update();
+    }
+
+    private static Node erase(Node node, Node erased)
+    {
+        if (node == null) {
+            return null;
+        }
+        if (node == erased) {
+            return Leaderboard.merge(node.left, node.right);
+        }
+        if (Leaderboard.compare(erased, node) < 0) {
+            node.left = Leaderboard.erase(node.left, erased);
+        } else {
+            node.right = Leaderboard.erase(node.right, erased);
+        }
+        return node.update();
+    }
+
+    /**
+     * Sépare un arbre entre les noeuds classés avant une clé et ceux classés après.
+     */
+    private static Node[] split(Node node, Node key)
+    {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (Leaderboard.compare(node, key) < 0) {
+            Node[] split = Leaderboard.split(node.right, key);
+            node.right = split[0];
+            split[0] = node.update();
+            return split;
+        }
+        Node[] split = Leaderboard.split(node.left, key);
+        node.left = split[1];
+        split[1] = node.update();
+        return split;
+    }
+
+    private static Node merge(Node left, Node right)
+    {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = Leaderboard.merge(left.right, right);
+            return left.update();
+        }
+        right.left = Leaderboard.merge(left, right.left);
+        return right.update();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Leaderboard{" + this.classModel.getName() + ", size=" + this.size() + "}";
+    }
+
+    private static final class Node
+    {
+        private final Player player;
+        private long score;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(Player player, long score)
+        {
+            this.player = player;
+            this.score = score;
+        }
+
+        private Node update()
+        {
+            this.size = Leaderboard.size(this.left) + Leaderboard.size(this.right) + 1;
+            return this;
+        }
+    }
+
+    /**
+     * Une ligne du classement, figée au moment de sa lecture.
+     */
+    public static final class Entry
+    {
+        private final Player player;
+        private final long score;
+        private final int rank;
+
+        private Entry(Player player, long score, int rank)
+        {
+            this.player = player;
+            this.score = score;
+            this.rank = rank;
+        }
+
+        /**
+         * Permet de récupérer le joueur.
+         * @return le joueur.
+         */
+        public Player getPlayer()
+        {
+            return this.player;
+        }
+
+        /**
+         * Permet de récupérer la valeur classée du joueur.
+         * @return la valeur du joueur.
+         */
+        public long getScore()
+        {
+            return this.score;
+        }
+
+        /**
+         * Permet de récupérer le rang du joueur, à partir de 1.
+         * @return le rang du joueur.
+         */
+        public int getRank()
+        {
+            return this.rank;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "#" + this.rank + " " + this.player.getName() + " (" + this.score + ")";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+/**
+ * Permet de choisir à quel moment un {@link PlayerModel} est instancié pour un {@link Player}.
+ */
+public enum LoadPolicy
+{
+    /**
+     * Le model est instancié dès l'enregistrement du joueur.
+     */
+    EAGER,
+    /**
+     * Le model est instancié lors du premier appel à {@link Player#getModel(Class)}.
+     */
+    LAZY
+}
@@ -0,0 +1,524 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Un {@link PlayerStorage} local, sous la forme d'un journal réparti dans des fichiers de taille fixe projetés en
+ * mémoire. Chaque sauvegarde ajoute un enregistrement à la fin du journal, et un index en mémoire associe l'identifiant
+ * de chaque joueur à son dernier enregistrement complet et aux modifications écrites après lui.
+ *
+ * Chaque enregistrement est vérifié par un CRC32. A l'ouverture, le journal est relu pour reconstruire l'index, et
+ * tout ce qui suit le premier enregistrement invalide d'un fichier (écriture interrompue) est effacé : le joueur
+ * retrouve alors son enregistrement précédent.
+ *
+ * Les anciens enregistrements sont supprimés par {@link MappedPlayerStorage#compact()}, appelé par
+ * {@link MappedPlayerStorage#flush()} lorsque plus de la moitié du journal est inutile. Les modifications d'un joueur
+ * sont recopiées telles quelles, c'est la prochaine sauvegarde complète du joueur qui les rend inutiles. Les fichiers
+ * supprimés sont libérés aussitôt, sans attendre le ramasse-miettes, afin de pouvoir les effacer sous Windows.
+ *
+ * Un enregistrement est dans la mémoire du système dès son écriture et survit à l'arrêt de la JVM, mais il n'est écrit
+ * sur le disque que par {@link MappedPlayerStorage#flush()} : un arrêt brutal du système perd ceux écrits depuis.
+ */
+public final class MappedPlayerStorage implements PlayerStorage
+{
+    /**
+     * La taille par défaut d'un fichier du journal : 64 Mo.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final int MAGIC = 0x504D4C31;
+
+    /**
+     * La marque d'un enregistrement de modifications.
+     */
+    private static final int MAGIC_DELTA = 0x504D4C44;
+
+    /**
+     * L'entête d'un enregistrement : sa marque, qui indique aussi son type, la taille des données, le CRC32 de l'identifiant et des données, puis
+     * l'identifiant du joueur.
+     */
+    private static final int HEADER = 28;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Permet d'ouvrir, ou de créer, un stockage dans un dossier avec des fichiers de {@link #DEFAULT_SEGMENT_SIZE}.
+     * @param directory le dossier du stockage.
+     * @return le stockage.
+     * @throws IOException si le dossier ou le journal n'a pas pu être ouvert.
+     */
+    public static MappedPlayerStorage open(Path directory) throws IOException
+    {
+        return MappedPlayerStorage.open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Permet d'ouvrir, ou de créer, un stockage dans un dossier.
+     * @param directory   le dossier du stockage.
+     * @param segmentSize la taille de chaque fichier du journal, qui limite aussi la taille des données d'un joueur.
+     * @return le stockage.
+     * @throws IOException si le dossier ou le journal n'a pas pu être ouvert.
+     */
+    public static MappedPlayerStorage open(Path directory, int segmentSize) throws IOException
+    {
+        if (segmentSize <= HEADER) {
+            throw new IllegalArgumentException("The segment size must be greater than " + HEADER + ".");
+        }
+        Files.createDirectories(directory);
+        MappedPlayerStorage storage = new MappedPlayerStorage(directory, segmentSize);
+        storage.recover();
+        return storage;
+    }
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    /**
+     * Les enregistrements utiles de chaque joueur.
+     */
+    private final Map<UUID, Chain> index = new HashMap<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private Segment current;
+
+    /**
+     * La taille totale des enregistrements écrits, et celle des enregistrements encore utiles.
+     */
+    private long totalBytes;
+    private long liveBytes;
+
+    private MappedPlayerStorage(Path directory, int segmentSize)
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    private void recover() throws IOException
+    {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException exception) {
+                    // Ce fichier n'appartient pas au journal.
+                }
+            }
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = this.map(id);
+            this.scan(segment);
+            this.current = segment;
+        }
+        if (this.current == null) {
+            this.current = this.map(0);
+        }
+    }
+
+    /**
+     * Relit les enregistrements d'un fichier jusqu'au premier invalide, puis efface la suite du fichier pour qu'un
+     * reste d'écriture interrompue ne soit jamais relu après de nouveaux enregistrements.
+     */
+    private void scan(Segment segment)
+    {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            int magic = buffer.getInt(position);
+            int length = buffer.getInt(position + 4);
+            if (magic != MAGIC && magic != MAGIC_DELTA || length < 0 || position + HEADER + length > buffer.capacity()
+                    || buffer.getInt(position + 8) != this.checksum(buffer, position, length)) {
+                break;
+            }
+            UUID uuid = new UUID(buffer.getLong(position + 12), buffer.getLong(position + 20));
+            this.index(uuid, magic == MAGIC_DELTA, segment.id, position, length);
+            position += HEADER + length;
+        }
+        segment.position = position;
+        for (int i = position; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Ajoute un enregistrement à l'index : un enregistrement complet remplace ceux du joueur, et des données vides
+     * l'effacent.
+     */
+    private void index(UUID uuid, boolean delta, int segment, int position, int length)
+    {
+        long address = (long) segment << 32 | position;
+        this.totalBytes += HEADER + length;
+        Chain chain = this.index.get(uuid);
+        if (delta) {
+            if (chain == null) {
+                chain = new Chain();
+                this.index.put(uuid, chain);
+            }
+        } else {
+            if (chain != null) {
+                this.liveBytes -= chain.bytes;
+            }
+            if (length == 0) {
+                this.index.remove(uuid);
+                return;
+            }
+            chain = new Chain();
+            this.index.put(uuid, chain);
+        }
+        chain.add(address, delta, HEADER + length);
+        this.liveBytes += HEADER + length;
+    }
+
+    private int checksum(ByteBuffer buffer, int position, int length)
+    {
+        ByteBuffer data = buffer.duplicate();
+        data.limit(position + HEADER + length).position(position + 12);
+        this.crc.reset();
+        this.crc.update(data);
+        return (int) this.crc.getValue();
+    }
+
+    private Segment map(int id) throws IOException
+    {
+        Path path = this.directory.resolve(String.format("%s%08d%s", PREFIX, id, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Segment segment = new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize));
+            this.segments.put(id, segment);
+            return segment;
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public synchronized List<ByteBuffer> load(UUID uuid) throws IOException
+    {
+        this.ensureOpen();
+        Chain chain = this.index.get(uuid);
+        if (chain == null) {
+            return Collections.emptyList();
+        }
+        List<ByteBuffer> records = new ArrayList<>(chain.count);
+        for (int i = 0; i < chain.count; i++) {
+            ByteBuffer record = this.record(chain.addresses[i]);
+            ByteBuffer data = ByteBuffer.allocate(record.remaining());
+            data.put(record).flip();
+            records.add(data);
+        }
+        return records;
+    }
+
+    /**
+     * Permet de lire les données d'un enregistrement, sans les copier.
+     */
+    private ByteBuffer record(long address)
+    {
+        MappedByteBuffer buffer = this.segments.get((int) (address >>> 32)).buffer;
+        int position = (int) address;
+        ByteBuffer record = buffer.duplicate();
+        record.limit(position + HEADER + buffer.getInt(position + 4)).position(position + HEADER);
+        return record;
+    }
+
+    @Override
+    public synchronized void save(UUID uuid, ByteBuffer data) throws IOException
+    {
+        this.ensureOpen();
+        if (!data.hasRemaining()) {
+            throw new IllegalArgumentException("The data of " + uuid + " are empty.");
+        }
+        this.append(uuid, data, false);
+    }
+
+    @Override
+    public synchronized void append(UUID uuid, ByteBuffer delta) throws IOException
+    {
+        this.ensureOpen();
+        if (!delta.hasRemaining()) {
+            throw new IllegalArgumentException("The delta of " + uuid + " is empty.");
+        }
+        this.append(uuid, delta, true);
+    }
+
+    @Override
+    public synchronized void delete(UUID uuid) throws IOException
+    {
+        this.ensureOpen();
+        if (this.index.containsKey(uuid)) {
+            this.append(uuid, ByteBuffer.allocate(0), false);
+        }
+    }
+
+    /**
+     * Ajoute un enregistrement à la fin du journal, des données vides effacent le joueur. La marque est écrite en
+     * dernier pour qu'un enregistrement incomplet ne soit jamais reconnu.
+     */
+    private void append(UUID uuid, ByteBuffer data, boolean delta) throws IOException
+    {
+        int length = data.remaining();
+        if (HEADER + length > this.segmentSize) {
+            throw new IOException("The data of " + uuid + " (" + length + " bytes) do not fit in a segment of " + this.segmentSize + " bytes.");
+        }
+        if (this.current.position + HEADER + length > this.segmentSize) {
+            this.current = this.map(this.current.id + 1);
+        }
+        MappedByteBuffer buffer = this.current.buffer;
+        int position = this.current.position;
+        buffer.putInt(position + 4, length);
+        buffer.putLong(position + 12, uuid.getMostSignificantBits());
+        buffer.putLong(position + 20, uuid.getLeastSignificantBits());
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + HEADER);
+        target.put(data.duplicate());
+        buffer.putInt(position + 8, this.checksum(buffer, position, length));
+        buffer.putInt(position, delta ? MAGIC_DELTA : MAGIC);
+        this.current.position = position + HEADER + length;
+        this.current.dirty = true;
+        this.index(uuid, delta, this.current.id, position, length);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        this.ensureOpen();
+        for (Segment segment : this.segments.values()) {
+            if (segment.dirty) {
+                segment.buffer.force();
+                segment.dirty = false;
+            }
+        }
+        if (this.segments.size() > 1 && this.totalBytes - this.liveBytes > Math.max(this.liveBytes, this.segmentSize)) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Permet de recopier les derniers enregistrements de chaque joueur dans de nouveaux fichiers, puis de supprimer les
+     * anciens. Une interruption pendant le compactage ne perd rien : les nouveaux fichiers sont relus après les anciens.
+     * @throws IOException si le journal n'a pas pu être compacté.
+     */
+    public synchronized void compact() throws IOException
+    {
+        this.ensureOpen();
+        List<Segment> old = new ArrayList<>(this.segments.values());
+        Map<UUID, Chain> live = new HashMap<>(this.index);
+        this.current = this.map(this.current.id + 1);
+        this.index.clear();
+        this.totalBytes = 0L;
+        this.liveBytes = 0L;
+        for (Map.Entry<UUID, Chain> entry : live.entrySet()) {
+            Chain chain = entry.getValue();
+            for (int i = 0; i < chain.count; i++) {
+                this.append(entry.getKey(), this.record(chain.addresses[i]), chain.isDelta(i));
+            }
+        }
+        for (Segment segment : this.segments.values()) {
+            if (segment.dirty) {
+                segment.buffer.force();
+                segment.dirty = false;
+            }
+        }
+        for (Segment segment : old) {
+            this.segments.remove(segment.id);
+            segment.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs enregistrés.
+     * @return le nombre de joueurs enregistrés.
+     */
+    public synchronized int size()
+    {
+        return this.index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (this.current == null) {
+            return;
+        }
+        IOException failure = null;
+        for (Segment segment : this.segments.values()) {
+            try {
+                if (segment.dirty) {
+                    segment.buffer.force();
+                }
+                segment.close();
+            } catch (IOException exception) {
+                failure = exception;
+            }
+        }
+        this.segments.clear();
+        this.index.clear();
+        this.current = null;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (this.current == null) {
+            throw new IOException("The storage " + this.directory + " is closed.");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MappedPlayerStorage{" + this.directory + "}";
+    }
+
+    /**
+     * Les adresses des enregistrements utiles d'un joueur, dans l'ordre : le numéro du fichier sur les 32 bits de poids
+     * fort et la position dans le fichier sur ceux de poids faible.
+     */
+    private static final class Chain
+    {
+        private long[] addresses = new long[1];
+        private int count;
+        private boolean base;
+        private long bytes;
+
+        private void add(long address, boolean delta, int size)
+        {
+            if (this.count == 0) {
+                this.base = !delta;
+            }
+            if (this.count == this.addresses.length) {
+                this.addresses = Arrays.copyOf(this.addresses, this.count << 1);
+            }
+            this.addresses[this.count++] = address;
+            this.bytes += size;
+        }
+
+        private boolean isDelta(int index)
+        {
+            return index > 0 || !this.base;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private boolean dirty;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer)
+        {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Ferme le fichier et libère sa projection en mémoire. Le buffer ne doit plus jamais être lu : toutes les
+         * lectures du stockage copient les données sous son verrou.
+         */
+        private void close() throws IOException
+        {
+            try {
+                this.channel.close();
+            } finally {
+                MappedPlayerStorage.unmap(this.buffer);
+            }
+        }
+    }
+
+    /**
+     * La méthode qui libère un buffer projeté en mémoire, null si la JVM n'en propose pas : la projection est alors
+     * libérée par le ramasse-miettes.
+     */
+    private static final MethodHandle UNMAP = MappedPlayerStorage.findUnmap();
+
+    private static MethodHandle findUnmap()
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            // Java 9 et plus.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            MethodHandle invokeCleaner = lookup.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class));
+            return invokeCleaner.bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            // Java 8.
+        }
+        try {
+            Class<?> directBuffer = Class.forName("sun.nio.ch.DirectBuffer");
+            Method cleanerMethod = directBuffer.getMethod("cleaner");
+            Method cleanMethod = cleanerMethod.getReturnType().getMethod("clean");
+            MethodHandle cleaner = lookup.unreflect(cleanerMethod).asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            MethodHandle clean = lookup.unreflect(cleanMethod).asType(MethodType.methodType(void.class, Object.class));
+            return MethodHandles.filterReturnValue(cleaner, clean);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            return null;
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer)
+    {
+        if (UNMAP == null) {
+            return;
+        }
+        try {
+            UNMAP.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable throwable) {
+            // La projection sera libérée par le ramasse-miettes.
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un {@link PlayerTransport} en mémoire, partagé par plusieurs gestionnaires {@link Players} d'une même JVM. Il sert
+ * aussi de boîte de réception au {@link SocketPlayerTransport}.
+ *
+ * Les données qui ne sont pas récupérées avant leur expiration sont oubliées, pour qu'un joueur revenu plus tard ne
+ * reçoive pas un état périmé. Le numéro du dernier envoi d'un joueur est gardé jusqu'à la même expiration, même après
+ * la récupération de ses données : un envoi dont le numéro n'est pas plus grand est ignoré.
+ */
+public final class MemoryPlayerTransport implements PlayerTransport
+{
+    /**
+     * La durée de vie par défaut des données envoyées : 30 secondes.
+     */
+    public static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(30L);
+
+    private final long ttl;
+
+    private final Map<UUID, State> states = new HashMap<>();
+
+    private boolean closed;
+
+    /**
+     * Permet de créer un transport dont les données expirent après {@link #DEFAULT_TTL}.
+     */
+    public MemoryPlayerTransport()
+    {
+        this(DEFAULT_TTL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Permet de créer un transport.
+     * @param ttl  la durée de vie des données envoyées.
+     * @param unit l'unité de la durée.
+     */
+    public MemoryPlayerTransport(long ttl, TimeUnit unit)
+    {
+        this.ttl = unit.toMillis(ttl);
+    }
+
+    @Override
+    public synchronized void send(UUID uuid, long sequence, ByteBuffer data) throws IOException
+    {
+        if (this.closed) {
+            throw new IOException("The transport is closed.");
+        }
+        long now = System.currentTimeMillis();
+        this.purge(now);
+        State previous = this.states.get(uuid);
+        if (previous != null && previous.sequence >= sequence) {
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data.duplicate()).flip();
+        this.states.put(uuid, new State(copy, sequence, now + this.ttl));
+        this.notifyAll();
+    }
+
+    @Override
+    public synchronized Handoff receive(UUID uuid, long timeout, TimeUnit unit) throws IOException, InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            if (this.closed) {
+                throw new IOException("The transport is closed.");
+            }
+            long now = System.currentTimeMillis();
+            State state = this.states.get(uuid);
+            if (state != null && state.data != null && state.expiration > now) {
+                this.states.put(uuid, new State(null, state.sequence, now + this.ttl));
+                return new Handoff(state.sequence, state.data);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+    }
+
+    private void purge(long now)
+    {
+        Iterator<State> iterator = this.states.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiration <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs dont les données attendent d'être récupérées.
+     * @return le nombre de joueurs.
+     */
+    public synchronized int size()
+    {
+        this.purge(System.currentTimeMillis());
+        int size = 0;
+        for (State state : this.states.values()) {
+            if (state.data != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        this.closed = true;
+        this.states.clear();
+        this.notifyAll();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemoryPlayerTransport{ttl=" + this.ttl + "ms}";
+    }
+
+    /**
+     * Les données en attente d'un joueur, null une fois récupérées, et le numéro de son dernier envoi.
+     */
+    private static final class State
+    {
+        private final ByteBuffer data;
+        private final long sequence;
+        private final long expiration;
+
+        private State(ByteBuffer data, long sequence, long expiration)
+        {
+            this.data = data;
+            this.sequence = sequence;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Permet d'écrire et de relire les données d'un {@link PlayerModel} dans un {@link ByteBuffer}, sans objet intermédiaire.
+ *
+ * Le format est déduit une seule fois de la class du model, lors de la création de sa {@link ModelFactory}. Les champs
+ * écrits sont ceux déclarés par la class et ses parents jusqu'à {@link PlayerModel}, qui ne sont ni {@code static}, ni
+ * {@code final}, ni {@code transient}, et dont le type est primitif, {@link String}, {@link UUID} ou une énumération.
+ * Les autres champs sont ignorés, un model qui en a besoin peut implémenter {@link BinaryModel}.
+ *
+ * Chaque champ est écrit avec une étiquette tirée de son nom et son type : un champ ajouté, supprimé ou dont le type
+ * a changé ne casse pas la lecture des anciennes données, mais un champ renommé perd sa valeur.
+ *
+ * @param <M> le type du model.
+ */
+public final class ModelCodec<M extends PlayerModel>
+{
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte CHAR = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte STRING = 9;
+    private static final byte UUID_TYPE = 10;
+    private static final byte ENUM = 11;
+
+    private static final Map<Class<?>, Byte> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put(boolean.class, BOOLEAN);
+        TYPES.put(byte.class, BYTE);
+        TYPES.put(short.class, SHORT);
+        TYPES.put(char.class, CHAR);
+        TYPES.put(int.class, INT);
+        TYPES.put(long.class, LONG);
+        TYPES.put(float.class, FLOAT);
+        TYPES.put(double.class, DOUBLE);
+        TYPES.put(String.class, STRING);
+        TYPES.put(UUID.class, UUID_TYPE);
+    }
+
+    /**
+     * Permet de déduire le format d'un {@link PlayerModel}.
+     * @param classModel la class du model.
+     * @param <M>        le type du model.
+     * @return le codec du model.
+     * @throws ModelException si deux champs du model ont la même étiquette.
+     */
+    public static <M extends PlayerModel> ModelCodec<M> of(Class<M> classModel) throws ModelException
+    {
+        ModelVersion modelVersion = classModel.getAnnotation(ModelVersion.class);
+        int version = modelVersion != null ? modelVersion.value() : 0;
+        if (BinaryModel.class.isAssignableFrom(classModel)) {
+            return new ModelCodec<>(classModel, version, new FieldCodec[0], true);
+        }
+
+        List<FieldCodec> fields = new ArrayList<>();
+        Map<Integer, String> tags = new HashMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> type = classModel; type != null && type != PlayerModel.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                Byte fieldType = field.getType().isEnum() ? Byte.valueOf(ENUM) : TYPES.get(field.getType());
+                if (fieldType == null) {
+                    continue;
+                }
+                String name = tags.containsValue(field.getName()) ? type.getSimpleName() + "." + field.getName() : field.getName();
+                int tag = name.hashCode();
+                String previous = tags.putIfAbsent(tag, name);
+                if (previous != null) {
+                    throw new ModelException("The fields " + previous + " and " + name + " of the model "
+                            + classModel.getName() + " have the same tag, one of them must be renamed or transient.");
+                }
+                try {
+                    field.setAccessible(true);
+                    Class<?> handleType = fieldType == ENUM ? Enum.class : field.getType();
+                    MethodHandle getter = lookup.unreflectGetter(field)
+                            .asType(MethodType.methodType(handleType, PlayerModel.class));
+                    MethodHandle setter = lookup.unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, PlayerModel.class, handleType));
+                    fields.add(new FieldCodec(name, tag, fieldType, field.getType(), getter, setter));
+                } catch (IllegalAccessException | SecurityException exception) {
+                    ModelException modelException = new ModelException(
+                            "The field " + name + " of the model " + classModel.getName() + " is not accessible."
+                    );
+                    modelException.initCause(exception);
+                    throw modelException;
+                }
+            }
+        }
+        return new ModelCodec<>(classModel, version, fields.toArray(new FieldCodec[0]), false);
+    }
+
+    private final Class<M> classModel;
+
+    private final int version;
+
+    private final FieldCodec[] fields;
+
+    /**
+     * Si le model implémente {@link BinaryModel}.
+     */
+    private final boolean binary;
+
+    private ModelCodec(Class<M> classModel, int version, FieldCodec[] fields, boolean binary)
+    {
+        this.classModel = classModel;
+        this.version = version;
+        this.fields = fields;
+        this.binary = binary;
+    }
+
+    /**
+     * Permet de récupérer la class du model.
+     * @return la class du model.
+     */
+    public Class<M> getModelClass()
+    {
+        return this.classModel;
+    }
+
+    /**
+     * Permet de récupérer la version actuelle du format du model.
+     * @return la version {@link ModelVersion} du model.
+     */
+    public int getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Permet de récupérer le nom des champs écrits par ce codec.
+     * @return le nom des champs, vide si le model est un {@link BinaryModel}.
+     */
+    public List<String> getFieldNames()
+    {
+        List<String> names = new ArrayList<>(this.fields.length);
+        for (FieldCodec field : this.fields) {
+            names.add(field.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Permet de récupérer la position d'un champ écrit par ce codec, utilisée par {@link PlayerModel#markDirty(String)}.
+     * @param name le nom du champ.
+     * @return la position du champ, ou -1 s'il n'est pas écrit par ce codec.
+     */
+    public int indexOf(String name)
+    {
+        for (int i = 0; i < this.fields.length; i++) {
+            if (this.fields[i].name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Permet d'écrire les données d'un model à la position du buffer.
+     * @param model  le model.
+     * @param buffer le buffer où écrire.
+     * @throws java.nio.BufferOverflowException si le buffer est trop petit.
+     */
+    public void write(M model, ByteBuffer buffer)
+    {
+        this.write(model, buffer, PlayerModel.ALL_DIRTY);
+    }
+
+    /**
+     * Permet d'écrire une partie des champs d'un model à la position du buffer. Relire ces données ne modifie que les
+     * champs écrits, elles peuvent donc être appliquées après des données complètes. Un {@link BinaryModel} est toujours
+     * écrit en entier.
+     * @param model  le model.
+     * @param buffer le buffer où écrire.
+     * @param fields les champs à écrire : le bit i pour le champ i, le dernier bit pour tous les champs suivants.
+     * @throws java.nio.BufferOverflowException si le buffer est trop petit.
+     */
+    public void write(M model, ByteBuffer buffer, long fields)
+    {
+        if (this.binary) {
+            ((BinaryModel) model).writeTo(buffer);
+            return;
+        }
+        int countPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int count = 0;
+        for (int i = 0; i < this.fields.length; i++) {
+            if ((fields & 1L << Math.min(i, 63)) != 0L) {
+                FieldCodec field = this.fields[i];
+                buffer.putInt(field.tag);
+                buffer.put(field.type);
+                field.write(field.bits(model), field.reference(model), buffer);
+                count++;
+            }
+        }
+        buffer.putShort(countPosition, (short) count);
+    }
+
+    /**
+     * Permet de copier une partie des champs d'un model, pour les écrire plus tard depuis un autre thread avec
+     * {@link ModelCodec#write(Values, ByteBuffer)}. Les champs primitifs sont copiés, les autres sont immuables. Un
+     * {@link BinaryModel} est écrit tout de suite dans un tableau, par le thread qui appelle cette méthode.
+     * @param model  le model.
+     * @param fields les champs à copier, comme pour {@link ModelCodec#write(PlayerModel, ByteBuffer, long)}.
+     * @return les valeurs copiées.
+     */
+    public Values capture(M model, long fields)
+    {
+        if (this.binary) {
+            int capacity = 64;
+            while (true) {
+                ByteBuffer buffer = ByteBuffer.allocate(capacity);
+                try {
+                    ((BinaryModel) model).writeTo(buffer);
+                    return new Values(fields, null, null, Arrays.copyOf(buffer.array(), buffer.position()));
+                } catch (BufferOverflowException exception) {
+                    capacity <<= 1;
+                }
+            }
+        }
+        long[] bits = new long[this.fields.length];
+        Object[] references = new Object[this.fields.length];
+        for (int i = 0; i < this.fields.length; i++) {
+            if ((fields & 1L << Math.min(i, 63)) != 0L) {
+                bits[i] = this.fields[i].bits(model);
+                references[i] = this.fields[i].reference(model);
+            }
+        }
+        return new Values(fields, bits, references, null);
+    }
+
+    /**
+     * Permet d'écrire à la position du buffer des valeurs copiées par {@link ModelCodec#capture(PlayerModel, long)},
+     * dans le même format que {@link ModelCodec#write(PlayerModel, ByteBuffer, long)}.
+     * @param values les valeurs copiées.
+     * @param buffer le buffer où écrire.
+     * @throws java.nio.BufferOverflowException si le buffer est trop petit.
+     */
+    public void write(Values values, ByteBuffer buffer)
+    {
+        if (this.binary) {
+            buffer.put(values.binary);
+            return;
+        }
+        int countPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int count = 0;
+        for (int i = 0; i < this.fields.length; i++) {
+            if ((values.fields & 1L << Math.min(i, 63)) != 0L) {
+                FieldCodec field = this.fields[i];
+                buffer.putInt(field.tag);
+                buffer.put(field.type);
+                field.write(values.bits[i], values.references[i], buffer);
+                count++;
+            }
+        }
+        buffer.putShort(countPosition, (short) count);
+    }
+
+    /**
+     * Permet de relire les données d'un model depuis la position du buffer. Les champs inconnus sont ignorés.
+     * @param model   le model à remplir.
+     * @param buffer  le buffer à lire.
+     * @param version la version avec laquelle les données ont été écrites.
+     * @throws java.nio.BufferUnderflowException si les données sont tronquées.
+     */
+    public void read(M model, ByteBuffer buffer, int version)
+    {
+        if (this.binary) {
+            ((BinaryModel) model).readFrom(buffer, version);
+            return;
+        }
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int tag = buffer.getInt();
+            byte type = buffer.get();
+            FieldCodec field = this.find(tag);
+            if (field != null && field.type == type) {
+                field.read(model, buffer);
+            } else {
+                ModelCodec.skip(type, buffer);
+            }
+        }
+    }
+
+    private FieldCodec find(int tag)
+    {
+        for (FieldCodec field : this.fields) {
+            if (field.tag == tag) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static void skip(byte type, ByteBuffer buffer)
+    {
+        switch (type) {
+            case BOOLEAN:
+            case BYTE:
+                buffer.position(buffer.position() + 1);
+                break;
+            case SHORT:
+            case CHAR:
+                buffer.position(buffer.position() + 2);
+                break;
+            case INT:
+            case FLOAT:
+                buffer.position(buffer.position() + 4);
+                break;
+            case LONG:
+            case DOUBLE:
+                buffer.position(buffer.position() + 8);
+                break;
+            case STRING:
+            case ENUM:
+                int length = buffer.getInt();
+                buffer.position(buffer.position() + Math.max(0, length));
+                break;
+            case UUID_TYPE:
+                buffer.position(buffer.position() + (buffer.get() != 0 ? 16 : 0));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field type " + type + ".");
+        }
+    }
+
+    /**
+     * Permet d'écrire une chaîne de caractères : sa taille en octets puis chaque caractère sur 1 à 3 octets,
+     * sans tableau intermédiaire.
+     * @param buffer le buffer où écrire.
+     * @param value  la chaîne, peut être null.
+     */
+    public static void writeString(ByteBuffer buffer, String value)
+    {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        buffer.putInt(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Permet de relire une chaîne de caractères écrite par {@link ModelCodec#writeString(ByteBuffer, String)}.
+     * @param buffer le buffer à lire.
+     * @return la chaîne, peut être null.
+     * @throws BufferUnderflowException si la taille écrite dépasse les données restantes du buffer.
+     */
+    public static String readString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        // La taille vient de données qui peuvent être corrompues, elle ne doit pas réserver plus que le buffer.
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        char[] chars = new char[length];
+        int count = 0;
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[count++] = (char) ((b & 0x1F) << 6 | buffer.get() & 0x3F);
+            } else {
+                chars[count++] = (char) ((b & 0x0F) << 12 | (buffer.get() & 0x3F) << 6 | buffer.get() & 0x3F);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static RuntimeException rethrow(Throwable throwable)
+    {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new IllegalStateException(throwable);
+    }
+
+    /**
+     * Les valeurs d'un model copiées par {@link ModelCodec#capture(PlayerModel, long)}. Elles ne changent plus et
+     * peuvent être écrites depuis n'importe quel thread.
+     */
+    public static final class Values
+    {
+        private final long fields;
+        private final long[] bits;
+        private final Object[] references;
+        private final byte[] binary;
+
+        private Values(long fields, long[] bits, Object[] references, byte[] binary)
+        {
+            this.fields = fields;
+            this.bits = bits;
+            this.references = references;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Un champ écrit par le codec, lu et modifié avec des {@link MethodHandle} typés pour ne pas créer d'objet.
+     */
+    private static final class FieldCodec
+    {
+        private final String name;
+        private final int tag;
+        private final byte type;
+        private final Class<?> fieldType;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private FieldCodec(String name, int tag, byte type, Class<?> fieldType, MethodHandle getter, MethodHandle setter)
+        {
+            this.name = name;
+            this.tag = tag;
+            this.type = type;
+            this.fieldType = fieldType;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        /**
+         * Lit un champ primitif, converti en long sans perte, ou 0 pour les autres champs.
+         */
+        private long bits(PlayerModel model)
+        {
+            try {
+                switch (this.type) {
+                    case BOOLEAN:
+                        return (boolean) this.getter.invokeExact(model) ? 1L : 0L;
+                    case BYTE:
+                        return (byte) this.getter.invokeExact(model);
+                    case SHORT:
+                        return (short) this.getter.invokeExact(model);
+                    case CHAR:
+                        return (char) this.getter.invokeExact(model);
+                    case INT:
+                        return (int) this.getter.invokeExact(model);
+                    case LONG:
+                        return (long) this.getter.invokeExact(model);
+                    case FLOAT:
+                        return Float.floatToRawIntBits((float) this.getter.invokeExact(model));
+                    case DOUBLE:
+                        return Double.doubleToRawLongBits((double) this.getter.invokeExact(model));
+                    default:
+                        return 0L;
+                }
+            } catch (Throwable throwable) {
+                throw ModelCodec.rethrow(throwable);
+            }
+        }
+
+        /**
+         * Lit un champ {@link String}, {@link UUID} ou énumération, ou null pour les champs primitifs.
+         */
+        private Object reference(PlayerModel model)
+        {
+            try {
+                switch (this.type) {
+                    case STRING:
+                        return (String) this.getter.invokeExact(model);
+                    case UUID_TYPE:
+                        return (UUID) this.getter.invokeExact(model);
+                    case ENUM:
+                        return (Enum<?>) this.getter.invokeExact(model);
+                    default:
+                        return null;
+                }
+            } catch (Throwable throwable) {
+                throw ModelCodec.rethrow(throwable);
+            }
+        }
+
+        private void write(long bits, Object reference, ByteBuffer buffer)
+        {
+            switch (this.type) {
+                case BOOLEAN:
+                case BYTE:
+                    buffer.put((byte) bits);
+                    break;
+                case SHORT:
+                case CHAR:
+                    buffer.putShort((short) bits);
+                    break;
+                case INT:
+                case FLOAT:
+                    buffer.putInt((int) bits);
+                    break;
+                case LONG:
+                case DOUBLE:
+                    buffer.putLong(bits);
+                    break;
+                case STRING:
+                    ModelCodec.writeString(buffer, (String) reference);
+                    break;
+                case UUID_TYPE:
+                    UUID uuid = (UUID) reference;
+                    buffer.put((byte) (uuid != null ? 1 : 0));
+                    if (uuid != null) {
+                        buffer.putLong(uuid.getMostSignificantBits());
+                        buffer.putLong(uuid.getLeastSignificantBits());
+                    }
+                    break;
+                default:
+                    Enum<?> constant = (Enum<?>) reference;
+                    ModelCodec.writeString(buffer, constant != null ? constant.name() : null);
+                    break;
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void read(PlayerModel model, ByteBuffer buffer)
+        {
+            try {
+                switch (this.type) {
+                    case BOOLEAN:
+                        this.setter.invokeExact(model, buffer.get() != 0);
+                        break;
+                    case BYTE:
+                        this.setter.invokeExact(model, buffer.get());
+                        break;
+                    case SHORT:
+                        this.setter.invokeExact(model, buffer.getShort());
+                        break;
+                    case CHAR:
+                        this.setter.invokeExact(model, buffer.getChar());
+                        break;
+                    case INT:
+                        this.setter.invokeExact(model, buffer.getInt());
+                        break;
+                    case LONG:
+                        this.setter.invokeExact(model, buffer.getLong());
+                        break;
+                    case FLOAT:
+                        this.setter.invokeExact(model, buffer.getFloat());
+                        break;
+                    case DOUBLE:
+                        this.setter.invokeExact(model, buffer.getDouble());
+                        break;
+                    case STRING:
+                        this.setter.invokeExact(model, ModelCodec.readString(buffer));
+                        break;
+                    case UUID_TYPE:
+                        UUID uuid = buffer.get() != 0 ? new UUID(buffer.getLong(), buffer.getLong()) : null;
+                        this.setter.invokeExact(model, uuid);
+                        break;
+                    default:
+                        String name = ModelCodec.readString(buffer);
+                        Enum<?> constant = null;
+                        if (name != null) {
+                            try {
+                                constant = Enum.valueOf((Class) this.fieldType, name);
+                            } catch (IllegalArgumentException exception) {
+                                // Une constante supprimée garde la valeur initiale du champ.
+                                break;
+                            }
+                        }
+                        this.setter.invokeExact(model, constant);
+                        break;
+                }
+            } catch (Throwable throwable) {
+                throw ModelCodec.rethrow(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Permet d'instancier un {@link PlayerModel} sans réflexion à chaque nouveau {@link Player}.
+ *
+ * Le constructeur du model est résolu et vérifié une seule fois lors de la création de la fabrique,
+ * c'est-à-dire lors de l'enregistrement du model dans le gestionnaire {@link Players}.
+ *
+ * @param <M> Le type de {@link PlayerModel} instancié par cette fabrique.
+ */
+public final class ModelFactory<M extends PlayerModel>
+{
+    /**
+     * Permet de créer la fabrique d'un {@link PlayerModel} instancié dès l'enregistrement du joueur.
+     * @param classModel la class du {@link PlayerModel}.
+     * @param <M>        le type de {@link PlayerModel}.
+     * @return la fabrique du {@link PlayerModel}.
+     * @throws ModelException si la class est abstraite ou ne possède pas de constructeur prenant un {@link Player}.
+     */
+    public static <M extends PlayerModel> ModelFactory<M> of(Class<M> classModel) throws ModelException
+    {
+        return ModelFactory.of(classModel, LoadPolicy.EAGER);
+    }
+
+    /**
+     * Permet de créer la fabrique d'un {@link PlayerModel}.
+     * @param classModel la class du {@link PlayerModel}.
+     * @param loadPolicy le moment où le {@link PlayerModel} est instancié.
+     * @param <M>        le type de {@link PlayerModel}.
+     * @return la fabrique du {@link PlayerModel}.
+     * @throws ModelException si la class est abstraite, ne possède pas de constructeur prenant un {@link Player} ou si son
+     *                        format binaire ne peut pas être déduit.
+     */
+    public static <M extends PlayerModel> ModelFactory<M> of(Class<M> classModel, LoadPolicy loadPolicy) throws ModelException
+    {
+        if (Modifier.isAbstract(classModel.getModifiers())) {
+            throw new ModelException("The model " + classModel.getName() + " can not be abstract.");
+        }
+        try {
+            Constructor<M> constructor = classModel.getDeclaredConstructor(Player.class);
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(PlayerModel.class, Player.class));
+            DependsOn dependsOn = classModel.getAnnotation(DependsOn.class);
+            List<Class<? extends PlayerModel>> dependencies = dependsOn != null
+                    ? Collections.unmodifiableList(Arrays.asList(dependsOn.value()))
+                    : Collections.emptyList();
+            return new ModelFactory<>(classModel, loadPolicy, handle, ModelCodec.of(classModel), dependencies);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException exception) {
+            ModelException modelException = new ModelException(
+                    "The model " + classModel.getName() + " must have a constructor with a " + Player.class.getName() + " parameter."
+            );
+            modelException.initCause(exception);
+            throw modelException;
+        }
+    }
+
+    /**
+     * La class du {@link PlayerModel}.
+     */
+    private final Class<M> classModel;
+
+    /**
+     * Le moment où le {@link PlayerModel} est instancié.
+     */
+    private final LoadPolicy loadPolicy;
+
+    /**
+     * Le constructeur du {@link PlayerModel} de type {@code (Player) -> PlayerModel}.
+     */
+    private final MethodHandle constructor;
+
+    /**
+     * Le format binaire du {@link PlayerModel}.
+     */
+    private final ModelCodec<M> codec;
+
+    /**
+     * Les models dont le {@link PlayerModel} a besoin, déclarés avec {@link DependsOn}.
+     */
+    private final List<Class<? extends PlayerModel>> dependencies;
+
+    private ModelFactory(Class<M> classModel, LoadPolicy loadPolicy, MethodHandle constructor, ModelCodec<M> codec,
+                         List<Class<? extends PlayerModel>> dependencies)
+    {
+        this.classModel = classModel;
+        this.loadPolicy = loadPolicy;
+        this.constructor = constructor;
+        this.codec = codec;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Permet de récupérer la class du {@link PlayerModel} instancié par cette fabrique.
+     * @return la class du {@link PlayerModel}.
+     */
+    public Class<M> getModelClass()
+    {
+        return this.classModel;
+    }
+
+    /**
+     * Permet de récupérer le moment où le {@link PlayerModel} est instancié.
+     * @return le moment où le {@link PlayerModel} est instancié.
+     */
+    public LoadPolicy getLoadPolicy()
+    {
+        return this.loadPolicy;
+    }
+
+    /**
+     * Permet de récupérer le format binaire du {@link PlayerModel}, déduit lors de la création de la fabrique.
+     * @return le codec du {@link PlayerModel}.
+     */
+    public ModelCodec<M> getCodec()
+    {
+        return this.codec;
+    }
+
+    /**
+     * Permet de récupérer les models dont le {@link PlayerModel} a besoin, déclarés avec {@link DependsOn}.
+     * @return les class des dépendances.
+     */
+    public List<Class<? extends PlayerModel>> getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * Permet de savoir si le {@link PlayerModel} est instancié lors de son premier accès.
+     * @return si le {@link PlayerModel} est instancié lors de son premier accès.
+     */
+    public boolean isLazy()
+    {
+        return this.loadPolicy == LoadPolicy.LAZY;
+    }
+
+    /**
+     * Permet de créer une nouvelle instance du {@link PlayerModel} pour un joueur.
+     * @param player le joueur du model.
+     * @return la nouvelle instance du model.
+     * @throws ModelException si le constructeur du model a lancé une exception. Les {@link Error} ne sont pas enveloppées.
+     */
+    public M create(Player player) throws ModelException
+    {
+        PlayersMetrics metrics = player.players != null ? player.players.metrics : null;
+        long start = metrics != null ? metrics.start() : 0L;
+        try {
+            M model = this.classModel.cast((PlayerModel) this.constructor.invokeExact(player));
+            if (metrics != null) {
+                metrics.recordModel(this.classModel, start);
+            }
+            return model;
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable throwable) {
+            ModelException modelException = new ModelException(
+                    "The model " + this.classModel.getName() + " could not be created: " + throwable.getMessage()
+            );
+            modelException.initCause(throwable);
+            throw modelException;
+        }
+    }
+}
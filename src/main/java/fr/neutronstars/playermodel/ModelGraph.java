@@ -0,0 +1,114 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Permet d'ordonner les models enregistrés selon leurs dépendances {@link DependsOn}.
+ */
+final class ModelGraph
+{
+    private ModelGraph() {}
+
+    /**
+     * Trie des clés pour que chaque model soit après ses dépendances. Les models indépendants gardent l'ordre donné.
+     * Les dépendances qui ne font pas partie des clés sont ignorées.
+     * @param keys les clés des models.
+     * @return les clés triées.
+     * @throws ModelException si des models dépendent les uns des autres.
+     */
+    static List<ModelKey<?>> sort(Collection<ModelKey<?>> keys) throws ModelException
+    {
+        Map<Class<?>, ModelKey<?>> byClass = new LinkedHashMap<>();
+        for (ModelKey<?> key : keys) {
+            byClass.put(key.getModelClass(), key);
+        }
+        List<ModelKey<?>> sorted = new ArrayList<>(byClass.size());
+        Map<Class<?>, Boolean> visited = new HashMap<>();
+        List<Class<?>> path = new ArrayList<>();
+        for (ModelKey<?> key : byClass.values()) {
+            ModelGraph.visit(key, byClass, visited, path, sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * Parcourt les dépendances d'un model en profondeur. Un model est marqué false tant que ses dépendances sont
+     * parcourues, le retrouver sur le chemin indique un cycle.
+     */
+    private static void visit(ModelKey<?> key, Map<Class<?>, ModelKey<?>> byClass, Map<Class<?>, Boolean> visited,
+                              List<Class<?>> path, List<ModelKey<?>> sorted) throws ModelException
+    {
+        Class<?> classModel = key.getModelClass();
+        Boolean done = visited.get(classModel);
+        if (done != null) {
+            if (!done) {
+                StringBuilder cycle = new StringBuilder();
+                for (Class<?> step : path.subList(path.indexOf(classModel), path.size())) {
+                    cycle.append(step.getName()).append(" -> ");
+                }
+                throw new ModelException("The models " + cycle.append(classModel.getName()) + " depend on each other.");
+            }
+            return;
+        }
+        visited.put(classModel, false);
+        path.add(classModel);
+        for (Class<? extends PlayerModel> dependency : key.getFactory().getDependencies()) {
+            ModelKey<?> dependencyKey = byClass.get(dependency);
+            if (dependencyKey != null) {
+                ModelGraph.visit(dependencyKey, byClass, visited, path, sorted);
+            }
+        }
+        path.remove(path.size() - 1);
+        visited.put(classModel, true);
+        sorted.add(key);
+    }
+
+    /**
+     * Regroupe des clés triées par {@link ModelGraph#sort(Collection)} en niveaux : les models d'un niveau ne dépendent
+     * que de models des niveaux précédents ou absents des clés.
+     * @param sorted les clés triées.
+     * @return les niveaux, dans l'ordre.
+     */
+    static List<List<ModelKey<?>>> levels(List<ModelKey<?>> sorted)
+    {
+        Map<Class<?>, Integer> depths = new HashMap<>();
+        List<List<ModelKey<?>>> levels = new ArrayList<>();
+        for (ModelKey<?> key : sorted) {
+            int depth = 0;
+            for (Class<? extends PlayerModel> dependency : key.getFactory().getDependencies()) {
+                Integer dependencyDepth = depths.get(dependency);
+                if (dependencyDepth != null) {
+                    depth = Math.max(depth, dependencyDepth + 1);
+                }
+            }
+            depths.put(key.getModelClass(), depth);
+            while (levels.size() <= depth) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(depth).add(key);
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La clé typée d'un {@link PlayerModel} enregistré dans le gestionnaire {@link Players}.
+ *
+ * Chaque clé possède un emplacement unique qui correspond à l'index du model dans le tableau de models de chaque
+ * {@link Player}. {@link Player#get(ModelKey)} est donc une simple lecture dans un tableau.
+ *
+ * Lorsque le model est supprimé du gestionnaire, son emplacement est libéré et pourra être réutilisé par un autre model,
+ * la clé ne doit alors plus être utilisée.
+ *
+ * @param <M> Le type de {@link PlayerModel} de cette clé.
+ */
+public final class ModelKey<M extends PlayerModel>
+{
+    /**
+     * L'emplacement du model dans le tableau de models de chaque {@link Player}.
+     */
+    private final int slot;
+
+    /**
+     * La fabrique du model.
+     */
+    private final ModelFactory<M> factory;
+
+    /**
+     * Permet de savoir si le model est toujours enregistré dans le gestionnaire.
+     */
+    private volatile boolean registered = true;
+
+    /**
+     * Les joueurs enregistrés qui possèdent une instance du model, tenus à jour par le gestionnaire et utilisés par
+     * {@link PlayerQuery}.
+     */
+    final Map<UUID, Player> players = new ConcurrentHashMap<>();
+
+    ModelKey(int slot, ModelFactory<M> factory)
+    {
+        this.slot = slot;
+        this.factory = factory;
+    }
+
+    /**
+     * Permet de récupérer l'emplacement du model dans le tableau de models de chaque {@link Player}.
+     * @return l'emplacement du model.
+     */
+    public int getSlot()
+    {
+        return this.slot;
+    }
+
+    /**
+     * Permet de récupérer la fabrique du model.
+     * @return la fabrique du model.
+     */
+    public ModelFactory<M> getFactory()
+    {
+        return this.factory;
+    }
+
+    /**
+     * Permet de récupérer la class du model.
+     * @return la class du model.
+     */
+    public Class<M> getModelClass()
+    {
+        return this.factory.getModelClass();
+    }
+
+    /**
+     * Permet de savoir si le model est toujours enregistré dans le gestionnaire.
+     * @return si le model est toujours enregistré.
+     */
+    public boolean isRegistered()
+    {
+        return this.registered;
+    }
+
+    void unregister()
+    {
+        this.registered = false;
+        this.players.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ModelKey{" + this.getModelClass().getName() + "#" + this.slot + "}";
+    }
+}
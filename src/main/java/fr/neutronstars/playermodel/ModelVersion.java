@@ -0,0 +1,35 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Permet d'indiquer la version du format d'un {@link PlayerModel}, écrite avec ses données par le {@link ModelCodec}.
+ * Un model sans cette annotation est en version 0.
+ *
+ * L'ajout ou la suppression d'un champ ne demande pas de changer de version : les champs inconnus sont ignorés et les
+ * champs absents gardent leur valeur initiale. La version sert aux {@link BinaryModel} pour relire un ancien format.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ModelVersion
+{
+    int value();
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garde la trace des joueurs déconnectés conservés par le gestionnaire {@link Players}, du moins récemment utilisé au
+ * plus récemment utilisé, afin de pouvoir appliquer une {@link RetentionPolicy}.
+ */
+class OfflinePlayers
+{
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private long weight;
+
+    /**
+     * Ajoute un joueur qui vient de se déconnecter et récupère les joueurs à oublier.
+     * @param player le joueur déconnecté.
+     * @param policy la politique à appliquer.
+     * @return les joueurs à oublier avec la raison.
+     */
+    synchronized Map<Player, RetentionPolicy.Cause> add(Player player, RetentionPolicy policy)
+    {
+        Entry previous = this.entries.put(player.getUniqueId(), new Entry(player, policy.weigh(player)));
+        if (previous != null) {
+            this.weight -= previous.weight;
+        }
+        this.weight += this.entries.get(player.getUniqueId()).weight;
+        Map<Player, RetentionPolicy.Cause> evicted = new LinkedHashMap<>();
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (iterator.hasNext() && (this.entries.size() > policy.getMaxEntries() || this.weight > policy.getMaxWeight())) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            this.weight -= eldest.weight;
+            evicted.put(eldest.player, this.entries.size() >= policy.getMaxEntries()
+                    ? RetentionPolicy.Cause.SIZE
+                    : RetentionPolicy.Cause.WEIGHT);
+        }
+        return evicted;
+    }
+
+    /**
+     * Retire un joueur qui s'est reconnecté.
+     * @param uuid l'identifiant du joueur.
+     */
+    synchronized void remove(UUID uuid)
+    {
+        Entry entry = this.entries.remove(uuid);
+        if (entry != null) {
+            this.weight -= entry.weight;
+        }
+    }
+
+    /**
+     * Indique qu'un joueur déconnecté vient d'être utilisé.
+     * @param uuid l'identifiant du joueur.
+     */
+    synchronized void touch(UUID uuid)
+    {
+        Entry entry = this.entries.get(uuid);
+        if (entry != null) {
+            entry.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Récupère et retire les joueurs qui n'ont pas été utilisés depuis trop longtemps.
+     * @param policy la politique à appliquer.
+     * @return les joueurs à oublier.
+     */
+    synchronized List<Player> expire(RetentionPolicy policy)
+    {
+        long timeout = policy.getIdleTimeout(TimeUnit.MILLISECONDS);
+        if (timeout <= 0 || this.entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long limit = System.currentTimeMillis() - timeout;
+        List<Player> expired = new ArrayList<>();
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.lastAccess > limit) {
+                break;
+            }
+            iterator.remove();
+            this.weight -= entry.weight;
+            expired.add(entry.player);
+        }
+        return expired;
+    }
+
+    synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    synchronized void clear()
+    {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    private static class Entry
+    {
+        private final Player player;
+        private final long weight;
+        private long lastAccess = System.currentTimeMillis();
+
+        private Entry(Player player, long weight)
+        {
+            this.player = player;
+            this.weight = weight;
+        }
+    }
+}
@@ -16,16 +16,33 @@
 package fr.neutronstars.playermodel;
 
 import fr.neutronstars.api.model.EntityModel;
+import fr.neutronstars.api.model.Model;
+import fr.neutronstars.api.model.ModelException;
 import org.bukkit.Bukkit;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.logging.Level;
 
 /**
  * Le joueur créé par le gestionnaire {@link Players} et qui est relié à un {@link org.bukkit.entity.Player} de {@link Bukkit}
  */
 public class Player extends EntityModel
 {
+    /**
+     * Les models en cours de création par {@link Players#registerModelKeys(LoadPolicy, Class[])}, pas encore ajoutés au
+     * joueur. Ils ne sont visibles que du thread qui les crée, afin que leurs constructeurs trouvent leurs dépendances.
+     */
+    private static final ThreadLocal<Staging> STAGING = new ThreadLocal<>();
+
+    /**
+     * Le gestionnaire qui a créé ce joueur, il permet d'instancier les models {@link LoadPolicy#LAZY}.
+     */
+    protected final Players<?> players;
+
     /**
      * L'identifiant unique du joueur.
      */
@@ -34,7 +51,42 @@ public class Player extends EntityModel
     /**
      * Le nom du joueur.
      */
-    protected String name;
+    protected volatile String name;
+
+    /**
+     * Les models du joueur enregistrés dans le gestionnaire {@link Players}, indexés par l'emplacement de leur {@link ModelKey}.
+     * Le tableau n'est jamais modifié, il est remplacé par une copie à chaque ajout ou suppression d'un model.
+     */
+    protected volatile PlayerModel[] playerModels = new PlayerModel[0];
+
+    /**
+     * La ligne du joueur dans la {@link StatTable} de son gestionnaire, -1 s'il n'en a pas.
+     */
+    private volatile int statRow = -1;
+
+    /**
+     * Si la ligne du joueur a été libérée par {@link Player#unloadModels()}, elle n'est alors plus jamais réservée.
+     */
+    private boolean statReleased;
+
+    /**
+     * La taille de la dernière sauvegarde complète du joueur, -1 si ses données doivent être écrites en entier à la
+     * prochaine sauvegarde, et celle des modifications ajoutées depuis. Modifiées par le thread du stockage une fois
+     * les données écrites, lues par {@link Players#save(Player)}.
+     */
+    volatile int savedBytes = -1;
+    volatile int deltaBytes;
+
+    /**
+     * Le numéro du dernier envoi des données du joueur par un {@link PlayerTransport}, reçu ou envoyé par ce serveur.
+     */
+    volatile long handoff;
+
+    /**
+     * Si les données du joueur sont en train d'être chargées depuis le stockage : il n'est pas sauvegardé tant qu'elles
+     * ne sont pas appliquées, sinon ses valeurs par défaut remplaceraient les données enregistrées.
+     */
+    volatile boolean restoring;
 
     /**
      * Permet de créer une nouvelle instance de {@link Player}.
@@ -43,6 +95,18 @@ public class Player extends EntityModel
      */
     protected Player(UUID uuid, String name)
     {
+        this(null, uuid, name);
+    }
+
+    /**
+     * Permet de créer une nouvelle instance de {@link Player} relié à son gestionnaire.
+     * @param players le gestionnaire du joueur.
+     * @param uuid    l'identifiant du joueur.
+     * @param name    le nom du joueur.
+     */
+    protected Player(Players<?> players, UUID uuid, String name)
+    {
+        this.players = players;
         this.uuid = uuid;
         this.name = name;
     }
@@ -77,10 +141,338 @@ public class Player extends EntityModel
 
     /**
      * Change le nom du joueur. Attention, celui-ci ne le changera pas dans la tablist ou au dessus de la tête de celui-ci.
+     * L'index des noms du gestionnaire {@link Players} est mis à jour.
      * @param name le nouveau nom du joueur.
      */
     public void setName(String name)
     {
+        String oldName = this.name;
         this.name = name;
+        if (this.players != null && !Objects.equals(name, oldName)) {
+            this.players.rename(this, oldName);
+        }
+    }
+
+    /**
+     * Permet de récupérer un model du joueur. Les models instanciés par les {@link ModelFactory} sont cherchés en premier,
+     * puis ceux enregistrés directement par {@link EntityModel}.
+     *
+     * Un model enregistré avec {@link LoadPolicy#LAZY} est instancié lors du premier appel de cette méthode.
+     *
+     * @param classModel la class du model.
+     * @param <M>        le type du model.
+     * @return un {@link Optional} avec le model s'il existe.
+     */
+    @Override
+    public <M extends Model<?>> Optional<M> getModel(Class<M> classModel)
+    {
+        PlayerModel model = this.getPlayerModel(classModel);
+        if (model != null) {
+            return Optional.of(classModel.cast(model));
+        }
+        return super.getModel(classModel);
+    }
+
+    /**
+     * Permet de récupérer un model du joueur grâce à sa {@link ModelKey}. Il s'agit d'une simple lecture dans un tableau.
+     * Un model {@link LoadPolicy#LAZY} est instancié lors du premier appel.
+     * @param key la clé du model.
+     * @param <M> le type du model.
+     * @return le model ou null s'il n'existe pas.
+     */
+    public <M extends PlayerModel> M get(ModelKey<M> key)
+    {
+        PlayerModel[] models = this.playerModels;
+        int slot = key.getSlot();
+        PlayerModel model = slot < models.length ? models[slot] : null;
+        if (model == null) {
+            model = this.getStagedModel(key.getModelClass());
+        }
+        if (model == null) {
+            model = this.loadLazyModel(key);
+        }
+        Class<M> classModel = key.getModelClass();
+        return classModel.isInstance(model) ? classModel.cast(model) : null;
+    }
+
+    /**
+     * Permet de récupérer un model du joueur sans allouer d'{@link Optional}, à utiliser dans les listeners appelés
+     * très souvent. Un model {@link LoadPolicy#LAZY} est instancié lors du premier appel.
+     * @param classModel la class du model.
+     * @param <M>        le type du model.
+     * @return le model ou null s'il n'existe pas.
+     */
+    public <M extends PlayerModel> M getModelOrNull(Class<M> classModel)
+    {
+        PlayerModel model = this.getPlayerModel(classModel);
+        if (model != null) {
+            return classModel.cast(model);
+        }
+        return super.getModel(classModel).orElse(null);
+    }
+
+    /**
+     * Permet de récupérer un model enregistré dans le gestionnaire {@link Players} à partir de sa class.
+     * @param classModel la class du model.
+     * @return le model ou null s'il n'existe pas.
+     */
+    protected PlayerModel getPlayerModel(Class<?> classModel)
+    {
+        if (this.players == null) {
+            return null;
+        }
+        ModelKey<?> key = this.players.models.get(classModel);
+        return key != null ? this.get(key) : this.getStagedModel(classModel);
+    }
+
+    /**
+     * Permet de récupérer un model en cours de création pour ce joueur par le thread appelant.
+     * @param classModel la class du model.
+     * @return le model ou null s'il n'est pas en cours de création.
+     */
+    private PlayerModel getStagedModel(Class<?> classModel)
+    {
+        Staging staging = STAGING.get();
+        if (staging == null || staging.player != this) {
+            return null;
+        }
+        for (int i = 0; i < staging.models.length; i++) {
+            if (staging.keys.get(i).getModelClass() == classModel) {
+                return staging.models[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Permet de récupérer le model d'une {@link ModelKey} s'il est déjà instancié, sans instancier un model
+     * {@link LoadPolicy#LAZY}.
+     * @param key la clé du model.
+     * @param <M> le type du model.
+     * @return le model ou null s'il n'est pas instancié.
+     */
+    <M extends PlayerModel> M peek(ModelKey<M> key)
+    {
+        PlayerModel[] models = this.playerModels;
+        int slot = key.getSlot();
+        PlayerModel model = slot < models.length ? models[slot] : null;
+        Class<M> classModel = key.getModelClass();
+        return classModel.isInstance(model) ? classModel.cast(model) : null;
+    }
+
+    /**
+     * Permet de savoir si le model d'une {@link ModelKey} est instancié pour ce joueur.
+     * @param key la clé du model.
+     * @return si le model est instancié.
+     */
+    public boolean hasModel(ModelKey<?> key)
+    {
+        PlayerModel[] models = this.playerModels;
+        int slot = key.getSlot();
+        return slot < models.length && key.getModelClass().isInstance(models[slot]);
+    }
+
+    /**
+     * Permet d'instancier un model {@link LoadPolicy#LAZY}.
+     * @param key la clé du model.
+     * @return le model instancié ou null si le model n'est pas un model {@link LoadPolicy#LAZY}.
+     */
+    protected PlayerModel loadLazyModel(ModelKey<?> key)
+    {
+        if (!key.getFactory().isLazy() || !key.isRegistered()) {
+            return null;
+        }
+        synchronized (this) {
+            PlayerModel[] models = this.playerModels;
+            int slot = key.getSlot();
+            if (slot < models.length && models[slot] != null) {
+                return models[slot];
+            }
+            try {
+                return this.registerModel(key);
+            } catch (ModelException modelException) {
+                if (this.players != null) {
+                    this.players.getPlugin().getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Permet d'instancier et d'ajouter un model au joueur grâce à sa {@link ModelKey}.
+     * @param key la clé du model.
+     * @param <M> le type du model.
+     * @return le model instancié.
+     * @throws ModelException si le model n'a pas pu être instancié.
+     */
+    public <M extends PlayerModel> M registerModel(ModelKey<M> key) throws ModelException
+    {
+        M model = key.getFactory().create(this);
+        this.setModel(key.getSlot(), model);
+        if (this.players != null) {
+            this.players.modelLoaded(model);
+        }
+        return model;
+    }
+
+    /**
+     * Permet d'instancier les models de plusieurs {@link ModelKey} sans les ajouter au joueur.
+     * Les models {@link LoadPolicy#LAZY} ne sont pas instanciés.
+     *
+     * Les models déjà instanciés des clés en attente sont visibles des constructeurs, depuis ce thread uniquement :
+     * un model peut donc récupérer ses dépendances avec {@link Player#getModel(Class)}.
+     *
+     * @param keys   les clés des models à instancier.
+     * @param staged toutes les clés en attente d'être ajoutées au joueur, dont celles à instancier.
+     * @param models les models en attente dans l'ordre de staged, complétés par cette méthode.
+     * @throws ModelException si un des models n'a pas pu être instancié.
+     */
+    protected void createModels(List<ModelKey<?>> keys, List<ModelKey<?>> staged, PlayerModel[] models) throws ModelException
+    {
+        Staging previous = STAGING.get();
+        STAGING.set(new Staging(this, staged, models));
+        try {
+            for (ModelKey<?> key : keys) {
+                if (!key.getFactory().isLazy()) {
+                    models[staged.indexOf(key)] = key.getFactory().create(this);
+                }
+            }
+        } finally {
+            if (previous != null) {
+                STAGING.set(previous);
+            } else {
+                STAGING.remove();
+            }
+        }
+    }
+
+    /**
+     * Permet de supprimer plusieurs models du joueur en une seule fois.
+     * @param keys les clés des models à supprimer.
+     */
+    public void removeModels(List<ModelKey<?>> keys)
+    {
+        PlayerModel[] removed = this.setModels(keys, null);
+        for (ModelKey<?> key : keys) {
+            this.unregisterModel(key.getModelClass());
+        }
+        for (PlayerModel model : removed) {
+            if (model != null) {
+                model.unload();
+            }
+        }
+    }
+
+    /**
+     * Permet de supprimer un model du joueur.
+     * @param key la clé du model à supprimer.
+     */
+    public void removeModel(ModelKey<?> key)
+    {
+        PlayerModel removed = this.setModel(key.getSlot(), null);
+        this.unregisterModel(key.getModelClass());
+        if (removed != null) {
+            removed.unload();
+        }
+    }
+
+    /**
+     * Permet de prévenir tous les models du joueur qu'il a été supprimé du gestionnaire {@link Players}.
+     * Sa ligne dans la {@link StatTable} est libérée.
+     */
+    protected void unloadModels()
+    {
+        for (PlayerModel model : this.playerModels) {
+            if (model != null) {
+                model.unload();
+            }
+        }
+        synchronized (this) {
+            this.statReleased = true;
+            if (this.statRow >= 0) {
+                this.players.getStats().release(this.statRow);
+                this.statRow = -1;
+            }
+        }
+    }
+
+    /**
+     * Permet de récupérer la ligne du joueur dans la {@link StatTable} de son gestionnaire, elle est réservée lors du
+     * premier appel. Appelée uniquement lorsqu'un {@link ColumnPlayerModel} devient celui d'un joueur enregistré.
+     * @return la ligne du joueur, -1 si elle a déjà été libérée.
+     */
+    int getStatRow()
+    {
+        int row = this.statRow;
+        if (row >= 0) {
+            return row;
+        }
+        synchronized (this) {
+            if (this.statRow < 0 && !this.statReleased) {
+                this.statRow = this.players.getStats().allocate(this);
+            }
+            return this.statRow;
+        }
+    }
+
+    /**
+     * Permet de remplacer le model d'un emplacement en copiant le tableau de models.
+     * @param slot  l'emplacement du model.
+     * @param model le nouveau model ou null pour vider l'emplacement.
+     * @return l'ancien model de l'emplacement ou null.
+     */
+    protected synchronized PlayerModel setModel(int slot, PlayerModel model)
+    {
+        PlayerModel[] models = this.playerModels;
+        if (slot >= models.length && model == null) {
+            return null;
+        }
+        PlayerModel[] copy = Arrays.copyOf(models, Math.max(models.length, slot + 1));
+        PlayerModel previous = copy[slot];
+        copy[slot] = model;
+        this.playerModels = copy;
+        return previous;
+    }
+
+    /**
+     * Permet de remplacer les models de plusieurs emplacements en une seule copie du tableau de models.
+     * @param keys   les clés des models.
+     * @param models les nouveaux models dans l'ordre des clés, ou null pour vider les emplacements.
+     * @return les anciens models dans l'ordre des clés.
+     */
+    protected synchronized PlayerModel[] setModels(List<ModelKey<?>> keys, PlayerModel[] models)
+    {
+        PlayerModel[] previous = new PlayerModel[keys.size()];
+        PlayerModel[] current = this.playerModels;
+        int length = current.length;
+        for (ModelKey<?> key : keys) {
+            length = Math.max(length, key.getSlot() + 1);
+        }
+        PlayerModel[] copy = Arrays.copyOf(current, length);
+        for (int i = 0; i < keys.size(); i++) {
+            int slot = keys.get(i).getSlot();
+            previous[i] = copy[slot];
+            copy[slot] = models != null ? models[i] : null;
+        }
+        this.playerModels = copy;
+        return previous;
+    }
+
+    /**
+     * Les models d'un joueur en cours de création, dans l'ordre de leurs clés.
+     */
+    private static final class Staging
+    {
+        private final Player player;
+        private final List<ModelKey<?>> keys;
+        private final PlayerModel[] models;
+
+        private Staging(Player player, List<ModelKey<?>> keys, PlayerModel[] models)
+        {
+            this.player = player;
+            this.keys = keys;
+            this.models = models;
+        }
     }
 }
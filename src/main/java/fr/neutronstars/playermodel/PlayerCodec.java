@@ -0,0 +1,267 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Permet d'écrire et de relire un {@link Player} et tous ses models en une seule passe, avec le {@link ModelCodec} de
+ * chaque model enregistré dans son gestionnaire {@link Players}.
+ *
+ * Format : la version du format, l'identifiant et le nom du joueur, puis pour chaque model le nom de sa class, sa
+ * version {@link ModelVersion} et la taille de ses données. Les models qui ne sont plus enregistrés sont ignorés à la
+ * lecture.
+ *
+ * Les données partielles copiées par {@link PlayerCodec#captureDirty(Player)} ont le même format, mais ne contiennent
+ * que les models et les champs modifiés : relues après les données complètes, elles donnent le même joueur.
+ */
+public final class PlayerCodec
+{
+    /**
+     * La version du format.
+     */
+    public static final byte FORMAT = 1;
+
+    private PlayerCodec() {}
+
+    /**
+     * Permet d'écrire un joueur à la position du buffer. Les models {@link LoadPolicy#LAZY} qui n'ont jamais été
+     * instanciés ne sont pas écrits.
+     * @param player le joueur.
+     * @param buffer le buffer où écrire.
+     * @throws BufferOverflowException si le buffer est trop petit.
+     */
+    public static void write(Player player, ByteBuffer buffer)
+    {
+        PlayerCodec.write(PlayerCodec.capture(player), buffer);
+    }
+
+    /**
+     * Permet de copier tous les models d'un joueur, pour les écrire plus tard depuis un autre thread avec
+     * {@link PlayerCodec#encode(Capture)}.
+     * @param player le joueur.
+     * @return les valeurs copiées.
+     */
+    static Capture capture(Player player)
+    {
+        return PlayerCodec.capture(player, player.playerModels, null);
+    }
+
+    /**
+     * Permet de copier les models et les champs d'un joueur modifiés depuis sa dernière sauvegarde, marqués par
+     * {@link PlayerModel#markDirty()}. Ils sont ensuite considérés comme sauvegardés.
+     * @param player le joueur.
+     * @return les valeurs copiées, ou null si aucun model n'a été modifié.
+     */
+    static Capture captureDirty(Player player)
+    {
+        PlayerModel[] models = player.playerModels;
+        long[] fields = new long[models.length];
+        boolean dirty = false;
+        for (int i = 0; i < models.length; i++) {
+            if (models[i] != null) {
+                fields[i] = models[i].takeDirty();
+                dirty |= fields[i] != 0L;
+            }
+        }
+        return dirty ? PlayerCodec.capture(player, models, fields) : null;
+    }
+
+    /**
+     * Copie les models donnés d'un joueur.
+     * @param fields les champs à copier de chaque model, ou null pour tout copier. Un model sans champ n'est pas copié.
+     */
+    private static Capture capture(Player player, PlayerModel[] models, long[] fields)
+    {
+        ModelCodec<?>[] codecs = new ModelCodec<?>[models.length];
+        ModelCodec.Values[] values = new ModelCodec.Values[models.length];
+        if (player.players != null) {
+            for (int i = 0; i < models.length; i++) {
+                PlayerModel model = models[i];
+                ModelKey<?> key = model != null ? player.players.models.get(model.getClass()) : null;
+                long modelFields = fields != null ? fields[i] : PlayerModel.ALL_DIRTY;
+                if (key != null && modelFields != 0L) {
+                    codecs[i] = key.getFactory().getCodec();
+                    values[i] = PlayerCodec.captureModel(codecs[i], model, modelFields);
+                }
+            }
+        }
+        return new Capture(player.getUniqueId(), player.getName(), codecs, values);
+    }
+
+    private static <M extends PlayerModel> ModelCodec.Values captureModel(ModelCodec<M> codec, PlayerModel model, long fields)
+    {
+        return codec.capture(codec.getModelClass().cast(model), fields);
+    }
+
+    private static void write(Capture capture, ByteBuffer buffer)
+    {
+        buffer.put(FORMAT);
+        buffer.putLong(capture.uuid.getMostSignificantBits());
+        buffer.putLong(capture.uuid.getLeastSignificantBits());
+        ModelCodec.writeString(buffer, capture.name);
+        int countPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int count = 0;
+        for (int i = 0; i < capture.codecs.length; i++) {
+            ModelCodec<?> codec = capture.codecs[i];
+            if (codec != null) {
+                ModelCodec.writeString(buffer, codec.getModelClass().getName());
+                buffer.putShort((short) codec.getVersion());
+                int lengthPosition = buffer.position();
+                buffer.putInt(0);
+                codec.write(capture.models[i], buffer);
+                buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+                count++;
+            }
+        }
+        buffer.putShort(countPosition, (short) count);
+    }
+
+    /**
+     * Permet d'écrire un joueur dans un nouveau buffer, agrandi tant qu'il est trop petit.
+     * @param player le joueur.
+     * @return le buffer prêt à être lu.
+     */
+    public static ByteBuffer encode(Player player)
+    {
+        return PlayerCodec.encode(PlayerCodec.capture(player));
+    }
+
+    /**
+     * Permet d'écrire dans un nouveau buffer des valeurs copiées par {@link PlayerCodec#capture(Player)} ou
+     * {@link PlayerCodec#captureDirty(Player)}. Peut être appelée depuis n'importe quel thread.
+     * @param capture les valeurs copiées.
+     * @return le buffer prêt à être lu.
+     */
+    static ByteBuffer encode(Capture capture)
+    {
+        int capacity = 256;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                PlayerCodec.write(capture, buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException exception) {
+                capacity <<= 1;
+            }
+        }
+    }
+
+    /**
+     * Permet de lire l'identifiant du joueur écrit à la position du buffer, sans la modifier.
+     * @param buffer le buffer.
+     * @return l'identifiant du joueur.
+     */
+    public static UUID readUniqueId(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        return new UUID(buffer.getLong(position + 1), buffer.getLong(position + 9));
+    }
+
+    /**
+     * Permet de relire les models d'un joueur depuis la position du buffer. Les models {@link LoadPolicy#LAZY} présents
+     * dans les données sont instanciés. Le nom écrit est ignoré, celui du joueur connecté est plus récent.
+     * @param player le joueur à remplir.
+     * @param buffer le buffer à lire.
+     * @throws ModelException si les données ne sont pas celles de ce joueur, ou sont tronquées ou invalides.
+     */
+    public static void read(Player player, ByteBuffer buffer) throws ModelException
+    {
+        try {
+            byte format = buffer.get();
+            if (format != FORMAT) {
+                throw new ModelException("Unknown player format " + format + ".");
+            }
+            UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+            if (!uuid.equals(player.getUniqueId())) {
+                throw new ModelException("The data of " + uuid + " can not be read into the player " + player.getUniqueId() + ".");
+            }
+            ModelCodec.readString(buffer);
+            int count = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                String className = ModelCodec.readString(buffer);
+                int version = buffer.getShort();
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                ModelKey<?> key = PlayerCodec.findKey(player, className);
+                if (key != null) {
+                    int limit = buffer.limit();
+                    buffer.limit(end);
+                    try {
+                        PlayerCodec.readModel(player, key, buffer, version);
+                    } finally {
+                        buffer.limit(limit);
+                    }
+                }
+                buffer.position(end);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException exception) {
+            ModelException modelException = new ModelException(
+                    "The data of the player " + player.getUniqueId() + " are invalid: " + exception
+            );
+            modelException.initCause(exception);
+            throw modelException;
+        }
+    }
+
+    private static <M extends PlayerModel> void readModel(Player player, ModelKey<M> key, ByteBuffer buffer, int version)
+    {
+        M model = player.get(key);
+        if (model != null) {
+            key.getFactory().getCodec().read(model, buffer, version);
+        }
+    }
+
+    private static ModelKey<?> findKey(Player player, String className)
+    {
+        if (player.players == null) {
+            return null;
+        }
+        for (ModelKey<?> key : player.players.models.values()) {
+            if (key.getModelClass().getName().equals(className)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Les valeurs d'un joueur et de ses models copiées par {@link PlayerCodec#capture(Player)}, qui ne dépendent plus
+     * du joueur.
+     */
+    static final class Capture
+    {
+        private final UUID uuid;
+        private final String name;
+        private final ModelCodec<?>[] codecs;
+        private final ModelCodec.Values[] models;
+
+        private Capture(UUID uuid, String name, ModelCodec<?>[] codecs, ModelCodec.Values[] models)
+        {
+            this.uuid = uuid;
+            this.name = name;
+            this.codecs = codecs;
+            this.models = models;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package fr.neutronstars.playermodel;
 
 import fr.neutronstars.api.model.Model;
+import fr.neutronstars.api.model.ModelException;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Cette class permet de créer de nouveau Model au {@link Player}.
@@ -9,8 +12,169 @@ import fr.neutronstars.api.model.Model;
  */
 public abstract class PlayerModel extends Model<Player>
 {
+    /**
+     * Le joueur à qui appartient ce model.
+     */
+    final Player player;
+
+    /**
+     * Toutes les valeurs du model ont changé.
+     */
+    static final long ALL_DIRTY = -1L;
+
+    private static final AtomicLongFieldUpdater<PlayerModel> DIRTY = AtomicLongFieldUpdater.newUpdater(PlayerModel.class, "dirty");
+
+    /**
+     * Les champs modifiés depuis la dernière sauvegarde : le bit i pour le champ i du {@link ModelCodec}, le dernier bit
+     * pour tous les champs suivants.
+     */
+    private volatile long dirty;
+
+    /**
+     * Le codec de ce model, connu une fois le model ajouté à un joueur enregistré.
+     */
+    volatile ModelCodec<?> codec;
+
     protected PlayerModel(Player entityModel)
     {
         super(entityModel);
+        this.player = entityModel;
+    }
+
+    /**
+     * Permet de prévenir le gestionnaire {@link Players} que les valeurs de ce model ont changé, afin de mettre à jour
+     * les {@link Leaderboard} qui le classent. A appeler dans les méthodes qui modifient une valeur classée.
+     * Le model est aussi marqué comme modifié avec {@link PlayerModel#markDirty()}.
+     */
+    protected final void changed()
+    {
+        this.markDirty();
+        if (this.player.players != null) {
+            this.player.players.modelChanged(this);
+        }
+    }
+
+    /**
+     * Permet de marquer toutes les valeurs de ce model comme modifiées, elles seront écrites à la prochaine sauvegarde
+     * du joueur. Un model qui n'est jamais marqué n'est sauvegardé qu'avec toutes les données du joueur.
+     */
+    protected final void markDirty()
+    {
+        if (this.dirty != ALL_DIRTY) {
+            this.dirty = ALL_DIRTY;
+        }
+    }
+
+    /**
+     * Permet de marquer un champ de ce model comme modifié, seul ce champ sera écrit à la prochaine sauvegarde du
+     * joueur. Un nom qui n'est pas celui d'un champ du {@link ModelCodec} marque tout le model.
+     *
+     * Le champ est cherché à chaque appel, les setters appelés souvent utilisent plutôt
+     * {@link PlayerModel#markDirty(long)} avec un masque calculé une fois par {@link PlayerModel#fieldMask(Class, String)}.
+     * @param field le nom du champ.
+     */
+    protected final void markDirty(String field)
+    {
+        ModelCodec<?> codec = this.codec;
+        if (codec == null) {
+            ModelKey<?> key = this.player.players != null ? this.player.players.models.get(this.getClass()) : null;
+            codec = key != null ? key.getFactory().getCodec() : null;
+        }
+        this.markDirty(codec != null ? PlayerModel.bit(codec.indexOf(field)) : ALL_DIRTY);
+    }
+
+    /**
+     * Permet de marquer des champs de ce model comme modifiés, sans les chercher :
+     * <pre>
+     * private static final long COINS = PlayerModel.fieldMask(StatsModel.class, "coins");
+     *
+     * public void setCoins(long coins)
+     * {
+     *     this.coins = coins;
+     *     this.markDirty(COINS);
+     * }
+     * </pre>
+     * @param fields les champs modifiés, combinés avec | .
+     */
+    protected final void markDirty(long fields)
+    {
+        if ((this.dirty & fields) != fields) {
+            DIRTY.accumulateAndGet(this, fields, (dirty, added) -> dirty | added);
+        }
     }
+
+    /**
+     * Permet de calculer le masque d'un champ pour {@link PlayerModel#markDirty(long)}. Un nom qui n'est pas celui d'un
+     * champ du {@link ModelCodec} donne un masque qui marque tout le model.
+     * @param classModel la class du model.
+     * @param field      le nom du champ.
+     * @return le masque du champ.
+     * @throws IllegalArgumentException si le format du model ne peut pas être déduit.
+     */
+    protected static long fieldMask(Class<? extends PlayerModel> classModel, String field)
+    {
+        try {
+            return PlayerModel.bit(ModelCodec.of(classModel).indexOf(field));
+        } catch (ModelException exception) {
+            throw new IllegalArgumentException(exception.getMessage(), exception);
+        }
+    }
+
+    private static long bit(int index)
+    {
+        return index >= 0 ? 1L << Math.min(index, 63) : ALL_DIRTY;
+    }
+
+    /**
+     * Permet de savoir si ce model a été modifié depuis la dernière sauvegarde du joueur.
+     * @return si le model a été modifié.
+     */
+    public final boolean isDirty()
+    {
+        return this.dirty != 0L;
+    }
+
+    /**
+     * Permet de récupérer les champs modifiés et de les marquer comme sauvegardés. Les modifications faites pendant
+     * l'écriture qui suit seront écrites à la sauvegarde suivante.
+     * @return les champs modifiés.
+     */
+    final long takeDirty()
+    {
+        return this.dirty != 0L ? DIRTY.getAndSet(this, 0L) : 0L;
+    }
+
+    /**
+     * Retire ce model des index du gestionnaire {@link Players} puis appelle {@link PlayerModel#onUnload()}.
+     */
+    final void unload()
+    {
+        if (this.player.players != null) {
+            this.player.players.modelUnloaded(this);
+        }
+        try {
+            this.onUnload();
+        } finally {
+            this.detach();
+        }
+    }
+
+    /**
+     * Appelé par le gestionnaire {@link Players} lorsque ce model devient celui d'un joueur enregistré, éventuellement
+     * plusieurs fois. Permet aux models de la librairie de s'ajouter aux données partagées du gestionnaire.
+     */
+    void attach() {}
+
+    /**
+     * Appelé une seule fois lorsque ce model est retiré de son joueur, après {@link PlayerModel#onUnload()}, même si
+     * celui-ci est redéfini sans appeler le model parent.
+     */
+    void detach() {}
+
+    /**
+     * Appelé lorsque ce model est retiré de son {@link Player}, ou lorsque son {@link Player} est supprimé du
+     * gestionnaire {@link Players}. Appelé par le thread principal, sauf pour un joueur préparé qui ne s'est jamais
+     * connecté : ses models peuvent être abandonnés par le thread de pré-connexion ou par une tâche asynchrone.
+     */
+    protected void onUnload() {}
 }
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * L'index des noms des joueurs enregistrés dans le gestionnaire {@link Players}, sans tenir compte des majuscules.
+ *
+ * La recherche exacte se fait dans une table de hachage, la recherche par préfixe dans une liste triée. Plusieurs
+ * joueurs peuvent avoir le même nom à une majuscule près, par exemple un joueur en mode hors-ligne ou un joueur
+ * déconnecté gardé après avoir changé de nom : ils sont tous gardés, et la recherche exacte renvoie le joueur connecté
+ * en priorité, sinon le dernier ajouté.
+ */
+class PlayerNames
+{
+    private static final Player[] NONE = new Player[0];
+
+    private final Map<String, Player[]> exact = new ConcurrentHashMap<>();
+
+    private final ConcurrentNavigableMap<String, Player[]> sorted = new ConcurrentSkipListMap<>();
+
+    /**
+     * Permet de transformer un nom en clé de l'index.
+     * @param name le nom.
+     * @return la clé de l'index.
+     */
+    static String key(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(Player player)
+    {
+        String name = player.getName();
+        if (name == null) {
+            return;
+        }
+        this.update(PlayerNames.key(name), players -> {
+            for (Player current : players) {
+                if (current == player) {
+                    return players;
+                }
+            }
+            Player[] copy = Arrays.copyOf(players, players.length + 1);
+            copy[players.length] = player;
+            return copy;
+        });
+    }
+
+    void remove(String name, Player player)
+    {
+        if (name == null) {
+            return;
+        }
+        this.update(PlayerNames.key(name), players -> {
+            for (int i = 0; i < players.length; i++) {
+                if (players[i] == player) {
+                    Player[] copy = new Player[players.length - 1];
+                    System.arraycopy(players, 0, copy, 0, i);
+                    System.arraycopy(players, i + 1, copy, i, copy.length - i);
+                    return copy;
+                }
+            }
+            return players;
+        });
+    }
+
+    /**
+     * Permet de modifier les joueurs d'un nom. La table de hachage verrouille le nom pendant la modification, la liste
+     * triée est donc toujours modifiée dans le même ordre.
+     */
+    private void update(String key, UnaryOperator<Player[]> update)
+    {
+        this.exact.compute(key, (k, players) -> {
+            Player[] updated = update.apply(players != null ? players : NONE);
+            if (updated.length == 0) {
+                this.sorted.remove(k);
+                return null;
+            }
+            this.sorted.put(k, updated);
+            return updated;
+        });
+    }
+
+    Player get(String name)
+    {
+        Player[] players = this.exact.get(PlayerNames.key(name));
+        return players != null ? PlayerNames.preferred(players) : null;
+    }
+
+    /**
+     * Permet de choisir le joueur d'un nom porté par plusieurs joueurs : le joueur connecté, sinon le dernier ajouté.
+     */
+    private static Player preferred(Player[] players)
+    {
+        if (players.length > 1) {
+            for (int i = players.length - 1; i >= 0; i--) {
+                if (players[i].get().isPresent()) {
+                    return players[i];
+                }
+            }
+        }
+        return players[players.length - 1];
+    }
+
+    List<Player> find(String prefix, int limit)
+    {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        String key = PlayerNames.key(prefix);
+        List<Player> players = new ArrayList<>(Math.min(limit, 16));
+        for (Player[] named : this.sorted.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            for (Player player : named) {
+                players.add(player);
+                if (players.size() >= limit) {
+                    return players;
+                }
+            }
+        }
+        return players;
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Une recherche de joueurs enregistrés dans un gestionnaire {@link Players}, créée par {@link Players#query()}.
+ *
+ * Les conditions sur les models sont vérifiées en lisant directement l'emplacement du model dans chaque joueur, sans
+ * {@link java.util.Optional} et sans instancier les models {@link LoadPolicy#LAZY}. Lorsque la recherche porte sur au
+ * moins un model, seuls les joueurs qui possèdent le model le moins répandu sont parcourus, grâce à l'index tenu à
+ * jour par le gestionnaire à chaque ajout ou suppression d'un model. Sinon tous les joueurs enregistrés sont parcourus.
+ *
+ * Une recherche peut être évaluée plusieurs fois, chaque évaluation lit les joueurs enregistrés à ce moment. Elle
+ * peut être évaluée depuis n'importe quel thread, les conditions doivent alors pouvoir lire les models depuis ce
+ * thread.
+ */
+public final class PlayerQuery
+{
+    /**
+     * Le nombre de joueurs à parcourir à partir duquel une recherche {@link PlayerQuery#parallel()} est évaluée en
+     * parallèle.
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+
+    private final Players<?> players;
+
+    private final List<Condition<?>> conditions = new ArrayList<>();
+
+    private Predicate<? super Player> filter;
+
+    private boolean parallel;
+
+    /**
+     * Si un model demandé n'est pas enregistré : la recherche ne trouve alors aucun joueur.
+     */
+    private boolean empty;
+
+    PlayerQuery(Players<?> players)
+    {
+        this.players = players;
+    }
+
+    /**
+     * Permet de ne garder que les joueurs qui possèdent un model.
+     * @param classModel la class du model.
+     * @return cette recherche.
+     */
+    public PlayerQuery with(Class<? extends PlayerModel> classModel)
+    {
+        return this.where(classModel, null);
+    }
+
+    /**
+     * Permet de ne garder que les joueurs qui possèdent un model.
+     * @param key la clé du model.
+     * @return cette recherche.
+     */
+    public PlayerQuery with(ModelKey<?> key)
+    {
+        return this.where(key, null);
+    }
+
+    /**
+     * Permet de ne garder que les joueurs qui possèdent un model dont les valeurs correspondent à une condition.
+     * @param classModel la class du model.
+     * @param condition  la condition, ou null pour ne vérifier que la présence du model.
+     * @param <M>        le type du model.
+     * @return cette recherche.
+     */
+    public <M extends PlayerModel> PlayerQuery where(Class<M> classModel, Predicate<? super M> condition)
+    {
+        ModelKey<M> key = this.players.getModelKey(classModel).orElse(null);
+        if (key == null) {
+            this.empty = true;
+            return this;
+        }
+        return this.where(key, condition);
+    }
+
+    /**
+     * Permet de ne garder que les joueurs qui possèdent un model dont les valeurs correspondent à une condition.
+     * @param key       la clé du model.
+     * @param condition la condition, ou null pour ne vérifier que la présence du model.
+     * @param <M>       le type du model.
+     * @return cette recherche.
+     */
+    public <M extends PlayerModel> PlayerQuery where(ModelKey<M> key, Predicate<? super M> condition)
+    {
+        this.conditions.add(new Condition<>(key, condition));
+        return this;
+    }
+
+    /**
+     * Permet de ne garder que les joueurs qui correspondent à une condition, vérifiée après celles des models.
+     * @param condition la condition.
+     * @return cette recherche.
+     */
+    public PlayerQuery filter(Predicate<? super Player> condition)
+    {
+        Objects.requireNonNull(condition, "condition");
+        Predicate<? super Player> previous = this.filter;
+        this.filter = previous == null ? condition : player -> previous.test(player) && condition.test(player);
+        return this;
+    }
+
+    /**
+     * Permet d'évaluer la recherche en parallèle lorsqu'elle parcourt au moins {@link #PARALLEL_THRESHOLD} joueurs.
+     * En dessous, la répartition coûte plus cher que le parcours.
+     * @return cette recherche.
+     */
+    public PlayerQuery parallel()
+    {
+        this.parallel = true;
+        return this;
+    }
+
+    /**
+     * Permet de récupérer les joueurs trouvés sous la forme d'un {@link Stream}, évalué au fur et à mesure.
+     * @return le stream des joueurs trouvés.
+     */
+    public Stream<Player> stream()
+    {
+        if (this.empty) {
+            return Stream.empty();
+        }
+        Condition<?>[] conditions = this.conditions.toArray(new Condition<?>[0]);
+        Predicate<? super Player> filter = this.filter;
+        Stream<Player> candidates = this.candidates(conditions);
+        if (conditions.length > 0) {
+            candidates = candidates.filter(player -> PlayerQuery.matches(player, conditions));
+        }
+        return filter != null ? candidates.filter(filter) : candidates;
+    }
+
+    /**
+     * Choisit les joueurs à parcourir : ceux de l'index du model le moins répandu, ou tous les joueurs enregistrés.
+     */
+    private Stream<Player> candidates(Condition<?>[] conditions)
+    {
+        Collection<Player> smallest = null;
+        for (Condition<?> condition : conditions) {
+            Collection<Player> indexed = condition.key.players.values();
+            if (smallest == null || indexed.size() < smallest.size()) {
+                smallest = indexed;
+            }
+        }
+        if (smallest == null) {
+            PlayersSnapshot snapshot = this.players.getSnapshot();
+            return this.parallel && snapshot.size() >= PARALLEL_THRESHOLD ? snapshot.stream().parallel() : snapshot.stream();
+        }
+        return this.parallel && smallest.size() >= PARALLEL_THRESHOLD ? smallest.parallelStream() : smallest.stream();
+    }
+
+    private static boolean matches(Player player, Condition<?>[] conditions)
+    {
+        for (Condition<?> condition : conditions) {
+            if (!condition.test(player)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Permet de récupérer un model des joueurs trouvés, sans instancier les models {@link LoadPolicy#LAZY}.
+     * @param key la clé du model.
+     * @param <M> le type du model.
+     * @return le stream des models des joueurs trouvés qui possèdent le model.
+     */
+    public <M extends PlayerModel> Stream<M> models(ModelKey<M> key)
+    {
+        return this.stream().map(player -> player.peek(key)).filter(Objects::nonNull);
+    }
+
+    /**
+     * Permet de récupérer une valeur numérique d'un model des joueurs trouvés, sans objet intermédiaire par joueur.
+     * Les joueurs qui ne possèdent pas le model sont ignorés.
+     * @param key   la clé du model.
+     * @param value la valeur du model.
+     * @param <M>   le type du model.
+     * @return le stream des valeurs, utilisable avec {@link LongStream#iterator()} ou {@link LongStream#summaryStatistics()}.
+     */
+    public <M extends PlayerModel> LongStream mapToLong(ModelKey<M> key, ToLongFunction<? super M> value)
+    {
+        return this.models(key).mapToLong(value);
+    }
+
+    /**
+     * Permet de parcourir les joueurs trouvés.
+     * @return l'itérateur des joueurs trouvés.
+     */
+    public Iterator<Player> iterator()
+    {
+        return this.stream().iterator();
+    }
+
+    /**
+     * Permet d'appeler une action pour chaque joueur trouvé, en parallèle si la recherche l'est.
+     * @param action l'action.
+     */
+    public void forEach(Consumer<? super Player> action)
+    {
+        this.stream().forEach(action);
+    }
+
+    /**
+     * Permet de récupérer les joueurs trouvés.
+     * @return la liste des joueurs trouvés.
+     */
+    public List<Player> list()
+    {
+        return this.stream().collect(Collectors.toList());
+    }
+
+    /**
+     * Permet de compter les joueurs trouvés. Une recherche sur la seule présence d'un model ne parcourt aucun joueur.
+     * @return le nombre de joueurs trouvés.
+     */
+    public long count()
+    {
+        if (!this.empty && this.filter == null && this.conditions.size() == 1 && this.conditions.get(0).condition == null) {
+            return this.conditions.get(0).key.players.size();
+        }
+        return this.stream().count();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PlayerQuery{conditions=" + this.conditions.size() + ", parallel=" + this.parallel + "}";
+    }
+
+    private static final class Condition<M extends PlayerModel>
+    {
+        private final ModelKey<M> key;
+        private final Predicate<? super M> condition;
+
+        private Condition(ModelKey<M> key, Predicate<? super M> condition)
+        {
+            this.key = key;
+            this.condition = condition;
+        }
+
+        private boolean test(Player player)
+        {
+            M model = player.peek(this.key);
+            return model != null && (this.condition == null || this.condition.test(model));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Un stockage des données des joueurs écrites par le {@link PlayerCodec}, branché au gestionnaire {@link Players} avec
+ * {@link Players#setStorage(PlayerStorage)}.
+ *
+ * Le gestionnaire appelle toutes les méthodes depuis un seul thread dédié, jamais depuis le thread principal :
+ * une implémentation n'a pas besoin d'être utilisable par plusieurs threads à la fois.
+ *
+ * Les données d'un joueur sont un enregistrement complet, écrit par {@link PlayerStorage#save(UUID, ByteBuffer)},
+ * suivi des modifications ajoutées depuis par {@link PlayerStorage#append(UUID, ByteBuffer)}.
+ *
+ * Une écriture n'a pas à être durable avant l'appel suivant de {@link PlayerStorage#flush()}, que le gestionnaire fait
+ * toutes les 10 secondes et lors de {@link Players#unload()}. Un arrêt brutal du serveur ou du système peut donc perdre
+ * jusqu'à 10 secondes de sauvegardes, selon l'implémentation.
+ */
+public interface PlayerStorage extends Closeable
+{
+    /**
+     * Permet de charger les dernières données d'un joueur.
+     * @param uuid l'identifiant du joueur.
+     * @return l'enregistrement complet puis les modifications du joueur, à relire dans l'ordre, ou une liste vide si le
+     *         joueur est inconnu.
+     * @throws IOException si les données n'ont pas pu être lues.
+     */
+    List<ByteBuffer> load(UUID uuid) throws IOException;
+
+    /**
+     * Permet d'enregistrer les données complètes d'un joueur, elles remplacent les précédentes et leurs modifications.
+     * @param uuid l'identifiant du joueur.
+     * @param data les données du joueur, entre la position et la limite du buffer.
+     * @throws IOException si les données n'ont pas pu être écrites.
+     */
+    void save(UUID uuid, ByteBuffer data) throws IOException;
+
+    /**
+     * Permet d'ajouter des modifications aux données d'un joueur.
+     * @param uuid  l'identifiant du joueur.
+     * @param delta les modifications, entre la position et la limite du buffer.
+     * @throws IOException si les modifications n'ont pas pu être écrites.
+     */
+    void append(UUID uuid, ByteBuffer delta) throws IOException;
+
+    /**
+     * Permet de supprimer les données d'un joueur, appelé par {@link Players#deleteData(UUID)}.
+     * @param uuid l'identifiant du joueur.
+     * @throws IOException si les données n'ont pas pu être supprimées.
+     */
+    void delete(UUID uuid) throws IOException;
+
+    /**
+     * Permet d'écrire sur le disque les données enregistrées depuis le dernier appel.
+     * @throws IOException si les données n'ont pas pu être écrites.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un moyen de transmettre les données d'un joueur, écrites par le {@link PlayerCodec}, au serveur sur lequel il se
+ * connecte ensuite. Branché au gestionnaire {@link Players} avec {@link Players#setTransport(PlayerTransport)}.
+ *
+ * Les données d'un joueur sont envoyées lorsqu'il quitte un serveur, puis reçues par le serveur suivant lors de la
+ * préparation du joueur, avant {@link org.bukkit.event.player.PlayerJoinEvent}. Des données reçues ne peuvent être
+ * récupérées qu'une seule fois.
+ *
+ * Chaque envoi porte un numéro, plus grand que celui de l'envoi reçu précédemment pour le même joueur. Une
+ * implémentation ignore les données d'un joueur plus anciennes que les plus récentes qu'elle a vues, pour qu'un serveur
+ * qui reçoit en retard l'envoi d'un serveur précédent ne remplace pas un état plus récent.
+ *
+ * Une implémentation doit pouvoir être utilisée par plusieurs threads à la fois.
+ */
+public interface PlayerTransport extends Closeable
+{
+    /**
+     * Permet d'envoyer les données d'un joueur, sans attendre qu'elles soient reçues. Appelé par le thread principal.
+     * @param uuid     l'identifiant du joueur.
+     * @param sequence le numéro de l'envoi, plus grand que celui des envois précédents du joueur.
+     * @param data     les données du joueur, entre la position et la limite du buffer.
+     * @throws IOException si les données n'ont pas pu être envoyées.
+     */
+    void send(UUID uuid, long sequence, ByteBuffer data) throws IOException;
+
+    /**
+     * Permet de récupérer les données envoyées pour un joueur, en attendant qu'elles arrivent.
+     * @param uuid    l'identifiant du joueur.
+     * @param timeout le temps d'attente maximum, 0 pour ne pas attendre.
+     * @param unit    l'unité du temps d'attente.
+     * @return les données les plus récentes du joueur, ou null si aucune donnée n'est arrivée à temps.
+     * @throws IOException          si les données n'ont pas pu être reçues.
+     * @throws InterruptedException si le thread a été interrompu pendant l'attente.
+     */
+    Handoff receive(UUID uuid, long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+    /**
+     * Les données d'un joueur reçues par un transport, avec le numéro de leur envoi.
+     */
+    final class Handoff
+    {
+        private final long sequence;
+        private final ByteBuffer data;
+
+        public Handoff(long sequence, ByteBuffer data)
+        {
+            this.sequence = sequence;
+            this.data = data;
+        }
+
+        /**
+         * Permet de récupérer le numéro de l'envoi.
+         * @return le numéro passé à {@link PlayerTransport#send(UUID, long, ByteBuffer)}.
+         */
+        public long getSequence()
+        {
+            return this.sequence;
+        }
+
+        /**
+         * Permet de récupérer les données du joueur.
+         * @return les données prêtes à être lues.
+         */
+        public ByteBuffer getData()
+        {
+            return this.data;
+        }
+    }
+}
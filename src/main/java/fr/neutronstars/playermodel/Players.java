@@ -17,17 +17,47 @@ package fr.neutronstars.playermodel;
 
 import fr.neutronstars.api.model.ModelException;
 import fr.neutronstars.playermodel.event.RegisterPlayerEvent;
+import fr.neutronstars.playermodel.event.RegisterPlayersEvent;
 import fr.neutronstars.playermodel.event.UnregisterPlayerEvent;
+import fr.neutronstars.playermodel.event.UnregisterPlayersEvent;
 import fr.neutronstars.playermodel.listener.PlayerHostListener;
 import org.bukkit.Bukkit;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.Plugin;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
+import java.util.stream.IntStream;
 
 /**
  * Permet de gérer les joueurs en jeu.
  *
+ * Ce gestionnaire peut être utilisé depuis n'importe quel thread (évènements asynchrones, tâches asynchrones...),
+ * les lectures ne prennent aucun verrou.
+ *
  * @param <T> L'instance du plugin {@link Bukkit} ou est initialisé cette class.
  */
 public class Players<T extends Plugin>
@@ -46,12 +76,93 @@ public class Players<T extends Plugin>
     /**
      * Permet de stocker les joueurs en jeu.
      */
-    protected final Map<UUID, Player> playerMap = new HashMap<>();
+    protected final Map<UUID, Player> playerMap = new ConcurrentHashMap<>();
+
+    /**
+     * L'époque des joueurs enregistrés, augmentée après chaque ajout ou suppression dans {@link Players#playerMap}.
+     * Sert aussi de verrou pour reconstruire {@link Players#snapshot}.
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * La dernière vue des joueurs enregistrés, reconstruite lorsqu'elle est demandée si son époque est dépassée.
+     */
+    private volatile PlayersSnapshot snapshot = PlayersSnapshot.EMPTY;
+
+    /**
+     * Permet de stocker les identifiants des joueurs en cours d'enregistrement afin qu'un même joueur
+     * ne soit jamais instancié deux fois.
+     */
+    protected final Set<UUID> registering = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Permet de stocker les joueurs préparés lors de leur pré-connexion en attendant leur connexion.
+     */
+    protected final Map<UUID, PreparedPlayer> preparedPlayers = new ConcurrentHashMap<>();
+
+    /**
+     * Le stockage en colonnes des statistiques des joueurs.
+     */
+    protected final StatTable stats = new StatTable();
+
+    /**
+     * Les totaux des compteurs des {@link CounterPlayerModel} des joueurs enregistrés, par class de model.
+     */
+    private final Map<Class<?>, LongAdder[]> counterTotals = new ConcurrentHashMap<>();
+
+    /**
+     * L'index des noms des joueurs enregistrés.
+     */
+    final PlayerNames playerNames = new PlayerNames();
+
+    /**
+     * Permet de stocker la date d'expiration des joueurs déconnectés qui peuvent encore se reconnecter sans être
+     * enregistrés à nouveau.
+     */
+    protected final Map<UUID, Long> parkedPlayers = new ConcurrentHashMap<>();
+
+    /**
+     * Permet de garder la trace des joueurs déconnectés conservés lorsque l'option {@link Players#hasUnregisterPlayer()}
+     * est désactivée.
+     */
+    final OfflinePlayers offlinePlayers = new OfflinePlayers();
+
+    /**
+     * Permet de stocker les clés des models à initialiser lorsque qu'un nouveau joueur se connecte.
+     */
+    protected final Map<Class<? extends PlayerModel>, ModelKey<?>> models = new ConcurrentHashMap<>();
+
+    /**
+     * Les clés des models enregistrés, chaque model après ses dépendances {@link DependsOn}. La liste n'est jamais
+     * modifiée, elle est remplacée à chaque enregistrement ou suppression d'un model.
+     */
+    protected volatile List<ModelKey<?>> modelOrder = Collections.emptyList();
+
+    /**
+     * Le pool qui instancie en parallèle les models indépendants d'un nouveau joueur, null pour les instancier un par un.
+     */
+    protected volatile Executor modelExecutor;
+
+    /**
+     * Les emplacements utilisés par les {@link ModelKey} des models enregistrés.
+     * Sert aussi de verrou pour l'enregistrement et la suppression des models.
+     */
+    private final BitSet modelSlots = new BitSet();
 
     /**
-     * Permet de stocker les models à initialiser lorsque qu'un nouveau joueur se connecte.
+     * Les classements enregistrés, par class de model.
      */
-    protected final Set<Class<? extends PlayerModel>> models = new HashSet<>();
+    protected final Map<Class<? extends PlayerModel>, List<Leaderboard<?>>> leaderboards = new ConcurrentHashMap<>();
+
+    /**
+     * Les mesures de ce gestionnaire.
+     */
+    protected final PlayersMetrics metrics = new PlayersMetrics(this);
+
+    /**
+     * Le nom sous lequel les mesures sont publiées par JMX, null si elles ne le sont pas.
+     */
+    private ObjectName metricsName;
 
     /**
      * L'instance du plugin ou est initialisé cette class.
@@ -61,11 +172,65 @@ public class Players<T extends Plugin>
     /**
      * Permet d'activer/désactivé l'enregistrement des nouveaux joueurs.
      */
-    protected boolean registerPlayer = true;
+    protected volatile boolean registerPlayer = true;
     /**
      * Permet d'activer/désactivé la suppression des joueurs qui se déconnecte.
      */
-    protected boolean unregisterPlayer = true;
+    protected volatile boolean unregisterPlayer = true;
+    /**
+     * Permet d'activer/désactivé la préparation des joueurs lors de leur pré-connexion.
+     */
+    protected volatile boolean preparePlayer = false;
+    /**
+     * Le temps en millisecondes au bout duquel un joueur préparé qui ne s'est pas connecté est oublié.
+     */
+    protected volatile long preparedTimeout = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * La politique de conservation des joueurs déconnectés, null pour les garder indéfiniment.
+     */
+    protected volatile RetentionPolicy retentionPolicy;
+    /**
+     * Le temps en millisecondes pendant lequel un joueur déconnecté peut se reconnecter en gardant ses models.
+     */
+    protected volatile long reconnectGrace = 0L;
+    /**
+     * Le stockage des données des joueurs, null pour ne rien garder après leur suppression.
+     */
+    protected volatile PlayerStorage storage;
+
+    /**
+     * Le thread qui fait toutes les lectures et écritures du stockage, dans l'ordre où elles sont demandées.
+     */
+    private volatile ExecutorService storageExecutor;
+
+    /**
+     * Les threads qui encodent les données à sauvegarder, propres à ce gestionnaire pour ne pas attendre les autres
+     * tâches du {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     */
+    private volatile ExecutorService encodeExecutor;
+
+    /**
+     * La dernière tâche demandée au thread du stockage. Chaque tâche attend la précédente : les lectures et écritures
+     * restent dans l'ordre des appels, même lorsque les données à écrire sont encore en train d'être encodées.
+     */
+    private CompletableFuture<?> storageTail = CompletableFuture.completedFuture(null);
+
+    private final Object storageLock = new Object();
+
+    /**
+     * Le transport des données des joueurs vers les autres serveurs, null s'il n'y en a pas.
+     */
+    protected volatile PlayerTransport transport;
+
+    /**
+     * Le temps d'attente des données d'un joueur envoyées par un autre serveur lors de sa préparation, en millisecondes.
+     */
+    protected volatile long transportTimeout = 0L;
+
+    /**
+     * La sauvegarde automatique des joueurs, appelée à chaque tick.
+     */
+    final Autosave autosave = new Autosave(this);
 
     /**
      * Permet de créer une nouvelle instance du gestionnaire de joueur.
@@ -87,192 +252,1888 @@ public class Players<T extends Plugin>
         return this.plugin;
     }
 
+    /**
+     * Permet de récupérer le stockage en colonnes des statistiques des joueurs, utilisé par les {@link ColumnPlayerModel}.
+     * @return le stockage des statistiques.
+     */
+    public StatTable getStats()
+    {
+        return this.stats;
+    }
+
+    /**
+     * Permet de récupérer la somme d'un compteur des {@link CounterPlayerModel} de tous les joueurs enregistrés dans ce
+     * gestionnaire, sans les parcourir. Les joueurs préparés qui ne sont pas encore connectés ne sont pas comptés.
+     * @param counter le compteur.
+     * @return le total du compteur.
+     */
+    public long getTotal(Counter counter)
+    {
+        LongAdder[] totals = this.counterTotals.get(counter.getModelClass());
+        return totals != null && counter.getIndex() < totals.length ? totals[counter.getIndex()].sum() : 0L;
+    }
+
+    /**
+     * Permet de récupérer les totaux des compteurs d'une class de {@link CounterPlayerModel}.
+     * @param classModel la class du model.
+     * @param size       le nombre de compteurs du model.
+     * @return les totaux des compteurs, dans l'ordre de leur déclaration.
+     */
+    LongAdder[] getCounterTotals(Class<?> classModel, int size)
+    {
+        return this.counterTotals.computeIfAbsent(classModel, c -> {
+            LongAdder[] totals = new LongAdder[size];
+            for (int i = 0; i < size; i++) {
+                totals[i] = new LongAdder();
+            }
+            return totals;
+        });
+    }
+
+    /**
+     * Permet de récupérer les mesures de ce gestionnaire. Elles sont aussi publiées par JMX entre {@link Players#load()}
+     * et {@link Players#unload()}, sous le nom {@code fr.neutronstars.playermodel:type=Players,name=<plugin>}.
+     * @return les mesures.
+     */
+    public PlayersMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     /**
      * Permet de récupérer un {@link Optional} de {@link Player}.
      *
      * Si le joueur n'existe pas et que l'option {@link Players#hasRegisterPlayer()} est activée alors un nouvelle instance
      * est faite et l'évènement {@link RegisterPlayerEvent} est lancé.
      *
+     * Si le joueur est déjà en cours d'enregistrement par un autre thread, l'{@link Optional} sera vide le temps que
+     * celui-ci se termine.
+     *
      * Sinon l'{@link Optional} sera vide.
      *
-     * @param player
-     * @return
+     * @param player le joueur {@link Bukkit} à récupérer.
+     * @return un {@link Optional} avec le {@link Player} enregistré.
      */
     public Optional<Player> get(org.bukkit.entity.Player player)
     {
-        if (this.registerPlayer && !playerMap.containsKey(player.getUniqueId())) {
-            try {
-                Player newPlayer = new Player(player.getUniqueId(), player.getName());
-                for (Class<? extends PlayerModel> classModel : this.models) {
-                    newPlayer.registerModel(classModel);
-                }
-                RegisterPlayerEvent event = new RegisterPlayerEvent(newPlayer);
-                Bukkit.getPluginManager().callEvent(event);
-                if (!event.isCancelled())
-                {
-                    event.getPlayer().ifPresent(p -> this.playerMap.put(p.getUniqueId(), p));
-                }
-            } catch (ModelException modelException) {
-                this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
-                return Optional.empty();
-            }
+        Player current = this.playerMap.get(player.getUniqueId());
+        this.metrics.recordLookup(current != null);
+        if (current != null || !this.registerPlayer) {
+            return Optional.ofNullable(current);
         }
-        return Optional.ofNullable(this.playerMap.get(player.getUniqueId()));
+        long start = this.metrics.start();
+        current = this.register(player.getUniqueId(), player.getName());
+        this.metrics.recordRegister(start);
+        return Optional.ofNullable(current);
     }
 
     /**
-     * Permet de supprimé une instance de {@link Player} dans ce gestionnaire si l'option {@link Players#hasUnregisterPlayer()}
-     * est activé. Il appellera également l'évènement {@link UnregisterPlayerEvent}
+     * Permet de récupérer un {@link Player} enregistré, connecté ou non, à partir de son identifiant.
+     * Le joueur ne sera jamais enregistré par cette méthode.
      *
-     * @param player Le joueur à supprimer du gestionnaire.
-     * @return  L'instance de ce gestionnaire.
+     * @param uuid l'identifiant du joueur.
+     * @return un {@link Optional} avec le {@link Player} enregistré.
      */
-    public Players<T> leave(Player player)
+    public Optional<Player> get(UUID uuid)
     {
-        if (this.unregisterPlayer) {
-            UnregisterPlayerEvent event = new UnregisterPlayerEvent(player);
-            Bukkit.getPluginManager().callEvent(event);
-            if (!event.isCancelled())
-            {
-                event.getPlayer().ifPresent(p -> this.playerMap.remove(p.getUniqueId()));
-            }
+        Player current = this.playerMap.get(uuid);
+        this.metrics.recordLookup(current != null);
+        if (current != null && this.retentionPolicy != null) {
+            this.offlinePlayers.touch(uuid);
         }
-        return this;
+        return Optional.ofNullable(current);
     }
 
     /**
-     * Permet de savoir si les nouveaux joueurs doivent-être enregistrés.
-     * @return si les nouveaux joueurs doivent-être enregistrés.
+     * Permet de récupérer un {@link Player} enregistré, connecté ou non, à partir de son nom sans tenir compte des majuscules.
+     * Le joueur ne sera jamais enregistré par cette méthode.
+     *
+     * @param name le nom du joueur.
+     * @return un {@link Optional} avec le {@link Player} enregistré.
      */
-    public boolean hasRegisterPlayer()
+    public Optional<Player> getByName(String name)
     {
-        return this.registerPlayer;
+        Player current = this.playerNames.get(name);
+        this.metrics.recordLookup(current != null);
+        if (current != null && this.retentionPolicy != null) {
+            this.offlinePlayers.touch(current.getUniqueId());
+        }
+        return Optional.ofNullable(current);
     }
 
     /**
-     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs.
-     * @param registerPlayer Si l'enregistrement des nouveaux joueurs doivent avoir lieu.
-     * @return L'instance de ce gestionnaire.
+     * Permet de récupérer les {@link Player} enregistrés dont le nom commence par un préfixe, sans tenir compte des
+     * majuscules et triés par nom. Utile pour l'auto-complétion des commandes.
+     *
+     * @param prefix le début du nom des joueurs.
+     * @param limit  le nombre maximum de joueurs à récupérer.
+     * @return les {@link Player} trouvés.
      */
-    public Players<T> setRegisterPlayer(boolean registerPlayer)
+    public List<Player> findByName(String prefix, int limit)
     {
-        this.registerPlayer = registerPlayer;
-        return this;
+        return this.playerNames.find(prefix, limit);
     }
 
     /**
-     * Permet de savoir si les joueurs doivent-être supprimés lors de leur déconnexion.
-     * @return si les joueurs doivent-être supprimés lors de leur déconnexion.
+     * Permet de mettre à jour l'index des noms lorsqu'un joueur change de nom.
+     * @param player  le joueur.
+     * @param oldName l'ancien nom du joueur.
      */
-    public boolean hasUnregisterPlayer()
+    void rename(Player player, String oldName)
     {
-        return this.unregisterPlayer;
+        if (this.playerMap.get(player.getUniqueId()) == player) {
+            this.playerNames.remove(oldName, player);
+            this.playerNames.add(player);
+        }
     }
 
     /**
-     * Permet d'activer/désactiver la suppression des joueurs lors de leur déconnexion.
-     * @param unregisterPlayer Si la suppression des joueurs doivent avoir lieu lors de leur déconnexion.
-     * @return L'instance de ce gestionnaire.
+     * Permet d'enregistrer un joueur qui vient de se connecter. S'il était gardé en tant que joueur déconnecté,
+     * il ne pourra plus être oublié par la {@link RetentionPolicy}. S'il se reconnecte pendant
+     * {@link Players#getReconnectGrace(TimeUnit)}, il récupère son instance et ses models sans être enregistré à nouveau.
+     *
+     * @param player le joueur {@link Bukkit} qui vient de se connecter.
+     * @return un {@link Optional} avec le {@link Player} enregistré.
      */
-    public Players<T> setUnregisterPlayer(boolean unregisterPlayer)
+    public Optional<Player> join(org.bukkit.entity.Player player)
     {
-        this.unregisterPlayer = unregisterPlayer;
-        return this;
+        this.parkedPlayers.remove(player.getUniqueId());
+        this.offlinePlayers.remove(player.getUniqueId());
+        return this.get(player);
     }
 
     /**
-     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs et ou la suppression des joueurs lors de leur déconnexion.
-     * @param registerPlayer Si l'enregistrement des nouveaux joueurs doivent avoir lieu.
-     * @param unregisterPlayer Si la suppression des joueurs doivent avoir lieu lors de leur déconnexion.
-     * @return L'instance de ce gestionnaire.
+     * Permet de récupérer un {@link Player} déjà enregistré sans allouer d'{@link Optional} et sans jamais l'enregistrer.
+     * A utiliser dans les listeners appelés très souvent.
+     *
+     * @param player le joueur {@link Bukkit} à récupérer.
+     * @return le {@link Player} enregistré ou null s'il n'existe pas.
      */
-    public Players<T> active(boolean registerPlayer, boolean unregisterPlayer)
+    public Player getIfPresent(org.bukkit.entity.Player player)
     {
-        return this.setRegisterPlayer(registerPlayer)
-                   .setUnregisterPlayer(unregisterPlayer);
+        Player current = this.playerMap.get(player.getUniqueId());
+        this.metrics.recordLookup(current != null);
+        return current;
     }
 
     /**
-     * Permet d'activer l'enregistrement des nouveaux joueurs et la suppression des joueurs lors de leur déconnexion.
-     * @return L'instance de ce gestionnaire.
+     * Permet de récupérer directement un model d'un {@link Player} déjà enregistré sans allouer d'{@link Optional}.
+     * A utiliser dans les listeners appelés très souvent.
+     *
+     * @param player     le joueur {@link Bukkit}.
+     * @param classModel la class du model.
+     * @param <M>        le type du model.
+     * @return le model ou null si le joueur ou le model n'existe pas.
      */
-    public Players<T> activeAll()
+    public <M extends PlayerModel> M getModelOrNull(org.bukkit.entity.Player player, Class<M> classModel)
     {
-        return this.active(true, true);
+        Player current = this.playerMap.get(player.getUniqueId());
+        this.metrics.recordLookup(current != null);
+        return current != null ? current.getModelOrNull(classModel) : null;
     }
 
     /**
-     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs et ou la suppression des joueurs lors de leur déconnexion.
-     * @param registerPlayer Si l'enregistrement des nouveaux joueurs ne doivent plus avoir lieu.
-     * @param unregisterPlayer Si la suppression des joueurs ne doivent plus avoir lieu lors de leur déconnexion.
-     * @return L'instance de ce gestionnaire.
+     * Permet d'enregistrer un nouveau {@link Player}. Un seul thread à la fois peut enregistrer un même identifiant,
+     * les autres récupèrent l'instance déjà présente ou rien si l'enregistrement n'est pas terminé.
+     *
+     * @param uuid l'identifiant du joueur.
+     * @param name le nom du joueur.
+     * @return le {@link Player} enregistré ou null si l'enregistrement a été annulé.
      */
-    public Players<T> disable(boolean registerPlayer, boolean unregisterPlayer)
+    protected Player register(UUID uuid, String name)
     {
-        return this.setRegisterPlayer(!registerPlayer)
-                .setUnregisterPlayer(!unregisterPlayer);
+        if (!this.registering.add(uuid)) {
+            return this.playerMap.get(uuid);
+        }
+        try {
+            Player current = this.playerMap.get(uuid);
+            if (current != null) {
+                return current;
+            }
+            Player newPlayer = this.takeOrCreate(uuid, name);
+            Player published = this.publish(newPlayer);
+            if (published != newPlayer) {
+                newPlayer.unloadModels();
+            }
+            return published;
+        } catch (ModelException modelException) {
+            this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
+            return null;
+        } finally {
+            this.registering.remove(uuid);
+        }
     }
 
     /**
-     * Permet de désactiver l'enregistrement des nouveaux joueurs et la suppression des joueurs lors de leur déconnexion.
-     * @return L'instance de ce gestionnaire.
+     * Permet d'enregistrer plusieurs joueurs en une seule fois. L'évènement {@link RegisterPlayersEvent} est lancé
+     * une seule fois pour tous les nouveaux joueurs, puis {@link RegisterPlayerEvent} pour chaque joueur accepté si
+     * un listener l'écoute.
+     *
+     * Les joueurs déjà enregistrés ou en cours d'enregistrement sont ignorés.
+     *
+     * @param players les joueurs {@link Bukkit} à enregistrer.
+     * @return les {@link Player} qui ont été enregistrés.
      */
-    public Players<T> disableAll()
+    public List<Player> register(Collection<? extends org.bukkit.entity.Player> players)
     {
-        return this.disable(true, true);
+        if (!this.registerPlayer) {
+            return Collections.emptyList();
+        }
+        List<UUID> claimed = new ArrayList<>(players.size());
+        try {
+            List<Player> created = new ArrayList<>(players.size());
+            for (org.bukkit.entity.Player player : players) {
+                UUID uuid = player.getUniqueId();
+                if (this.playerMap.containsKey(uuid) || !this.registering.add(uuid)) {
+                    continue;
+                }
+                claimed.add(uuid);
+                // Un autre thread a pu terminer l'enregistrement entre la vérification et la réservation.
+                if (this.playerMap.containsKey(uuid)) {
+                    continue;
+                }
+                try {
+                    created.add(this.takeOrCreate(uuid, player.getName()));
+                } catch (ModelException modelException) {
+                    this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
+                }
+            }
+            if (created.isEmpty()) {
+                return created;
+            }
+            RegisterPlayersEvent event = null;
+            if (Players.hasListeners(RegisterPlayersEvent.getHandlerList())) {
+                event = new RegisterPlayersEvent(created);
+                Bukkit.getPluginManager().callEvent(event);
+            }
+            List<Player> registered = new ArrayList<>(created.size());
+            for (Player player : created) {
+                Player published = event == null || !event.isCancelled(player) ? this.publish(player) : null;
+                if (published != null) {
+                    registered.add(published);
+                }
+                if (published != player) {
+                    player.unloadModels();
+                }
+            }
+            return registered;
+        } finally {
+            this.registering.removeAll(claimed);
+        }
     }
 
     /**
-     * Permet de savoir si la class d'un {@link PlayerModel} est enregistré.
-     * @param classModel la class du {@link PlayerModel} à verifier.
-     * @return si la class du {@link PlayerModel} existe.
+     * Permet de récupérer le joueur préparé lors de sa pré-connexion, ou d'en créer un nouveau.
+     * @param uuid l'identifiant du joueur.
+     * @param name le nom du joueur.
+     * @return le joueur à enregistrer.
+     * @throws ModelException si un des models n'a pas pu être instancié.
      */
-    public boolean hasModel(Class<? extends PlayerModel> classModel)
+    protected Player takeOrCreate(UUID uuid, String name) throws ModelException
     {
-        return this.models.contains(classModel);
+        PreparedPlayer prepared = this.preparedPlayers.remove(uuid);
+        if (prepared != null) {
+            if (!prepared.isExpired()) {
+                prepared.player.setName(name);
+                return prepared.player;
+            }
+            prepared.player.unloadModels();
+        }
+        return this.newPlayer(uuid, name);
     }
 
     /**
-     * Enregistre un nouveau {@link PlayerModel} à ce gestionnaire.
-     * @param classModel le nouveau {@link PlayerModel} à enregistrer.
-     * @return L'instance de ce gestionnaire.
+     * Permet d'ajouter un nouveau joueur dans ce gestionnaire. L'évènement {@link RegisterPlayerEvent} n'est lancé
+     * que si un listener l'écoute.
+     * @param newPlayer le joueur à ajouter.
+     * @return le joueur ajouté, celui déjà présent, ou null si l'enregistrement a été annulé.
      */
-    public Players<T> registerModel(Class<? extends PlayerModel> classModel)
+    protected Player publish(Player newPlayer)
     {
-        if (!this.hasModel(classModel)) {
-            try {
-                for (Player player : new ArrayList<>(this.playerMap.values())) {
-                    player.registerModel(classModel);
+        Player registered = newPlayer;
+        if (Players.hasListeners(RegisterPlayerEvent.getHandlerList())) {
+            long start = this.metrics.start();
+            RegisterPlayerEvent event = new RegisterPlayerEvent(newPlayer);
+            Bukkit.getPluginManager().callEvent(event);
+            this.metrics.recordRegisterEvent(start);
+            if (event.isCancelled()) {
+                return null;
+            }
+            registered = event.getPlayer().get();
+        }
+        Player previous = this.playerMap.putIfAbsent(registered.getUniqueId(), registered);
+        if (previous != null) {
+            return previous;
+        }
+        this.epoch.incrementAndGet();
+        this.playerNames.add(registered);
+        for (PlayerModel model : registered.playerModels) {
+            if (model != null) {
+                this.modelLoaded(model);
+            }
+        }
+        // Un model a pu être enregistré pendant la création du joueur.
+        for (ModelKey<?> key : this.modelOrder) {
+            if (!key.getFactory().isLazy() && !registered.hasModel(key)) {
+                try {
+                    registered.registerModel(key);
+                } catch (ModelException modelException) {
+                    this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
                 }
-                this.models.add(classModel);
-            } catch (ModelException exception) {
-                this.plugin.getLogger().log(Level.SEVERE, exception.getMessage(), classModel);
             }
         }
+        return registered;
+    }
+
+    /**
+     * Permet de savoir si au moins un listener écoute un évènement, afin de ne pas le créer inutilement.
+     * @param handlers la liste des listeners de l'évènement.
+     * @return si au moins un listener écoute l'évènement.
+     */
+    protected static boolean hasListeners(HandlerList handlers)
+    {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+
+    /**
+     * Permet de créer un nouveau {@link Player} avec tous les models enregistrés, chaque model après ses dépendances.
+     * Voir {@link Players#setModelExecutor(Executor)}.
+     *
+     * @param uuid l'identifiant du joueur.
+     * @param name le nom du joueur.
+     * @return le nouveau {@link Player}.
+     * @throws ModelException si un des models n'a pas pu être instancié.
+     */
+    protected Player newPlayer(UUID uuid, String name) throws ModelException
+    {
+        Player newPlayer = new Player(this, uuid, name);
+        List<ModelKey<?>> order = this.modelOrder;
+        Executor executor = this.modelExecutor;
+        if (executor != null && order.size() > 1) {
+            this.registerModels(newPlayer, order, executor);
+        } else {
+            for (ModelKey<?> key : order) {
+                if (!key.getFactory().isLazy()) {
+                    newPlayer.registerModel(key);
+                }
+            }
+        }
+        this.restore(newPlayer);
+        return newPlayer;
+    }
+
+    /**
+     * Permet d'instancier les models d'un nouveau joueur sur un pool : chaque model est instancié dès que ses
+     * dépendances sont ajoutées au joueur.
+     * @param player   le nouveau joueur.
+     * @param order    les clés des models, chaque model après ses dépendances.
+     * @param executor le pool.
+     * @throws ModelException si un des models n'a pas pu être instancié.
+     */
+    protected void registerModels(Player player, List<ModelKey<?>> order, Executor executor) throws ModelException
+    {
+        Map<Class<?>, CompletableFuture<Void>> tasks = new HashMap<>();
+        for (ModelKey<?> key : order) {
+            if (key.getFactory().isLazy()) {
+                continue;
+            }
+            List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+            for (Class<? extends PlayerModel> dependency : key.getFactory().getDependencies()) {
+                CompletableFuture<Void> task = tasks.get(dependency);
+                if (task != null) {
+                    dependencies.add(task);
+                }
+            }
+            CompletableFuture<Void> ready = dependencies.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]));
+            tasks.put(key.getModelClass(), ready.thenRunAsync(() -> {
+                try {
+                    player.registerModel(key);
+                } catch (ModelException modelException) {
+                    throw new CompletionException(modelException);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof ModelException) {
+                throw (ModelException) exception.getCause();
+            }
+            ModelException modelException = new ModelException(
+                    "The models of the player " + player.getUniqueId() + " could not be created: " + exception.getCause()
+            );
+            modelException.initCause(exception.getCause());
+            throw modelException;
+        }
+    }
+
+    /**
+     * Permet de préparer un {@link Player} et ses models avant sa connexion si l'option {@link Players#hasPreparePlayer()}
+     * est activée. Cette méthode est faite pour être appelée depuis l'évènement
+     * {@link org.bukkit.event.player.AsyncPlayerPreLoginEvent}, les models sont donc instanciés en dehors du thread principal.
+     *
+     * Le joueur préparé sera enregistré lors de sa connexion par {@link Players#get(org.bukkit.entity.Player)}, il sera
+     * oublié s'il ne se connecte pas avant {@link Players#getPreparedTimeout(TimeUnit)}.
+     *
+     * Si le joueur est déjà préparé, par une pré-connexion répétée ou venue d'un autre proxy, le premier joueur préparé
+     * est gardé tant qu'il n'a pas expiré.
+     *
+     * @param uuid l'identifiant du joueur.
+     * @param name le nom du joueur.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> prepare(UUID uuid, String name)
+    {
+        if (!this.preparePlayer || !this.registerPlayer || this.playerMap.containsKey(uuid)) {
+            return this;
+        }
+        PreparedPlayer current = this.preparedPlayers.get(uuid);
+        if (current != null && !current.isExpired()) {
+            return this;
+        }
+        try {
+            Player newPlayer = this.newPlayer(uuid, name);
+            PreparedPlayer prepared = new PreparedPlayer(newPlayer, System.currentTimeMillis() + this.preparedTimeout);
+            PreparedPlayer previous = this.preparedPlayers.putIfAbsent(uuid, prepared);
+            if (previous == null) {
+                return this;
+            }
+            if (previous.isExpired() && this.preparedPlayers.replace(uuid, previous, prepared)) {
+                previous.player.unloadModels();
+            } else {
+                newPlayer.unloadModels();
+            }
+        } catch (ModelException modelException) {
+            this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
+        }
         return this;
     }
 
     /**
-     * Supprimer un {@link PlayerModel} de ce gestionnaire.
-     * @param classModel le {@link PlayerModel} à supprimer.
+     * Permet d'oublier le {@link Player} préparé d'un joueur dont la connexion a été refusée.
+     * @param uuid l'identifiant du joueur.
      * @return L'instance de ce gestionnaire.
      */
-    public Players<T> unRegisterModel(Class<? extends PlayerModel> classModel)
+    public Players<T> discard(UUID uuid)
     {
-        for (Player player : new ArrayList<>(this.playerMap.values())) {
-            player.unregisterModel(classModel);
+        PreparedPlayer prepared = this.preparedPlayers.remove(uuid);
+        if (prepared != null) {
+            prepared.player.unloadModels();
         }
-        this.models.remove(classModel);
         return this;
     }
 
     /**
-     * Permet de charger les ressources adéquat au fonctionnement de ce gestionnaire.
+     * Permet d'oublier tous les {@link Player} préparés qui ne se sont pas connectés à temps.
      * @return L'instance de ce gestionnaire.
      */
-    public Players<T> load()
+    public Players<T> discardExpired()
     {
-        Bukkit.getPluginManager().registerEvents(new PlayerHostListener(this), this.plugin);
+        for (Map.Entry<UUID, PreparedPlayer> entry : this.preparedPlayers.entrySet()) {
+            if (entry.getValue().isExpired() && this.preparedPlayers.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().player.unloadModels();
+            }
+        }
         return this;
     }
+
+    /**
+     * Permet de supprimé une instance de {@link Player} dans ce gestionnaire si l'option {@link Players#hasUnregisterPlayer()}
+     * est activé. Il appellera également l'évènement {@link UnregisterPlayerEvent}
+     *
+     * @param player Le joueur à supprimer du gestionnaire.
+     * @return  L'instance de ce gestionnaire.
+     */
+    public Players<T> leave(Player player)
+    {
+        this.export(player);
+        if (this.unregisterPlayer) {
+            if (!this.park(player)) {
+                this.unpublish(player);
+            }
+        } else {
+            this.retain(player);
+        }
+        return this;
+    }
+
+    /**
+     * Permet de supprimer plusieurs joueurs de ce gestionnaire en une seule fois si l'option
+     * {@link Players#hasUnregisterPlayer()} est activé. L'évènement {@link UnregisterPlayersEvent} est lancé une seule fois
+     * pour tous les joueurs, puis {@link UnregisterPlayerEvent} pour chaque joueur accepté si un listener l'écoute.
+     *
+     * @param players les joueurs à supprimer du gestionnaire.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> leave(Collection<Player> players)
+    {
+        return this.leave(players, true);
+    }
+
+    /**
+     * Permet de supprimer plusieurs joueurs de ce gestionnaire en une seule fois.
+     * @param players les joueurs à supprimer du gestionnaire.
+     * @param park    si les joueurs peuvent être gardés pendant {@link Players#getReconnectGrace(TimeUnit)}.
+     * @return L'instance de ce gestionnaire.
+     */
+    protected Players<T> leave(Collection<Player> players, boolean park)
+    {
+        if (!this.unregisterPlayer) {
+            for (Player player : players) {
+                this.retain(player);
+            }
+            return this;
+        }
+        List<Player> accepted = new ArrayList<>(players.size());
+        for (Player player : players) {
+            if (!park || !this.park(player)) {
+                accepted.add(player);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return this;
+        }
+        if (Players.hasListeners(UnregisterPlayersEvent.getHandlerList())) {
+            UnregisterPlayersEvent event = new UnregisterPlayersEvent(new ArrayList<>(accepted));
+            Bukkit.getPluginManager().callEvent(event);
+            accepted = event.getAcceptedPlayers();
+        }
+        for (Player player : accepted) {
+            this.unpublish(player);
+        }
+        return this;
+    }
+
+    /**
+     * Permet de garder un joueur déconnecté pendant {@link Players#getReconnectGrace(TimeUnit)} avant de le supprimer.
+     * @param player le joueur déconnecté.
+     * @return si le joueur a été gardé.
+     */
+    protected boolean park(Player player)
+    {
+        long grace = this.reconnectGrace;
+        if (grace <= 0L || this.playerMap.get(player.getUniqueId()) != player) {
+            return false;
+        }
+        this.parkedPlayers.put(player.getUniqueId(), System.currentTimeMillis() + grace);
+        return true;
+    }
+
+    /**
+     * Permet de supprimer les joueurs déconnectés qui ne se sont pas reconnectés à temps. L'évènement
+     * {@link UnregisterPlayerEvent} n'est lancé qu'à ce moment.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> unregisterParked()
+    {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, Long> entry : this.parkedPlayers.entrySet()) {
+            if (entry.getValue() <= now && this.parkedPlayers.remove(entry.getKey(), entry.getValue())) {
+                Player player = this.playerMap.get(entry.getKey());
+                if (player != null) {
+                    this.unpublish(player);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Permet de garder un joueur déconnecté en appliquant la {@link RetentionPolicy}.
+     * @param player le joueur déconnecté.
+     */
+    protected void retain(Player player)
+    {
+        RetentionPolicy policy = this.retentionPolicy;
+        if (policy == null) {
+            return;
+        }
+        for (Map.Entry<Player, RetentionPolicy.Cause> entry : this.offlinePlayers.add(player, policy).entrySet()) {
+            this.evict(entry.getKey(), entry.getValue(), policy);
+        }
+    }
+
+    /**
+     * Permet d'oublier les joueurs déconnectés qui n'ont pas été utilisés depuis trop longtemps. Appelé toutes les 10
+     * secondes par le thread principal, seule l'écriture des joueurs oubliés dans le stockage est faite en dehors.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> evictExpired()
+    {
+        RetentionPolicy policy = this.retentionPolicy;
+        if (policy != null) {
+            for (Player player : this.offlinePlayers.expire(policy)) {
+                this.evict(player, RetentionPolicy.Cause.EXPIRED, policy);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Permet d'oublier un joueur déconnecté et d'appeler l'action de la {@link RetentionPolicy}.
+     * @param player le joueur à oublier.
+     * @param cause  la raison.
+     * @param policy la politique appliquée.
+     */
+    protected void evict(Player player, RetentionPolicy.Cause cause, RetentionPolicy policy)
+    {
+        if (this.playerMap.remove(player.getUniqueId(), player)) {
+            this.epoch.incrementAndGet();
+            this.playerNames.remove(player.getName(), player);
+            this.save(player);
+            player.unloadModels();
+            try {
+                policy.removed(player, cause);
+            } catch (RuntimeException exception) {
+                this.plugin.getLogger().log(Level.SEVERE, exception.getMessage(), exception);
+            }
+        }
+    }
+
+    /**
+     * Permet de retirer un joueur de ce gestionnaire. L'évènement {@link UnregisterPlayerEvent} n'est lancé
+     * que si un listener l'écoute.
+     * @param player le joueur à retirer.
+     * @return si le joueur a été retiré.
+     */
+    protected boolean unpublish(Player player)
+    {
+        Player removed = player;
+        if (Players.hasListeners(UnregisterPlayerEvent.getHandlerList())) {
+            long start = this.metrics.start();
+            UnregisterPlayerEvent event = new UnregisterPlayerEvent(player);
+            Bukkit.getPluginManager().callEvent(event);
+            this.metrics.recordUnregisterEvent(start);
+            if (event.isCancelled()) {
+                return false;
+            }
+            removed = event.getPlayer().get();
+        }
+        if (this.playerMap.remove(removed.getUniqueId(), removed)) {
+            this.epoch.incrementAndGet();
+            this.playerNames.remove(removed.getName(), removed);
+            this.save(removed);
+            removed.unloadModels();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Permet de savoir si les nouveaux joueurs doivent-être enregistrés.
+     * @return si les nouveaux joueurs doivent-être enregistrés.
+     */
+    public boolean hasRegisterPlayer()
+    {
+        return this.registerPlayer;
+    }
+
+    /**
+     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs.
+     * @param registerPlayer Si l'enregistrement des nouveaux joueurs doivent avoir lieu.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setRegisterPlayer(boolean registerPlayer)
+    {
+        this.registerPlayer = registerPlayer;
+        return this;
+    }
+
+    /**
+     * Permet de savoir si les joueurs doivent-être supprimés lors de leur déconnexion.
+     * @return si les joueurs doivent-être supprimés lors de leur déconnexion.
+     */
+    public boolean hasUnregisterPlayer()
+    {
+        return this.unregisterPlayer;
+    }
+
+    /**
+     * Permet d'activer/désactiver la suppression des joueurs lors de leur déconnexion.
+     * @param unregisterPlayer Si la suppression des joueurs doivent avoir lieu lors de leur déconnexion.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setUnregisterPlayer(boolean unregisterPlayer)
+    {
+        this.unregisterPlayer = unregisterPlayer;
+        return this;
+    }
+
+    /**
+     * Permet de savoir si les joueurs doivent-être préparés lors de leur pré-connexion.
+     * @return si les joueurs doivent-être préparés lors de leur pré-connexion.
+     */
+    public boolean hasPreparePlayer()
+    {
+        return this.preparePlayer;
+    }
+
+    /**
+     * Permet d'activer/désactiver la préparation des joueurs et de leurs models lors de leur pré-connexion,
+     * en dehors du thread principal. Les models doivent alors pouvoir être instanciés depuis un autre thread.
+     * @param preparePlayer Si la préparation des joueurs doit avoir lieu.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setPreparePlayer(boolean preparePlayer)
+    {
+        this.preparePlayer = preparePlayer;
+        if (!preparePlayer) {
+            for (UUID uuid : this.preparedPlayers.keySet()) {
+                this.discard(uuid);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Permet de récupérer le temps au bout duquel un joueur préparé qui ne s'est pas connecté est oublié.
+     * @param unit l'unité de temps souhaitée.
+     * @return le temps au bout duquel un joueur préparé est oublié.
+     */
+    public long getPreparedTimeout(TimeUnit unit)
+    {
+        return unit.convert(this.preparedTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Permet de changer le temps au bout duquel un joueur préparé qui ne s'est pas connecté est oublié.
+     * @param timeout le temps au bout duquel un joueur préparé est oublié.
+     * @param unit    l'unité du temps.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setPreparedTimeout(long timeout, TimeUnit unit)
+    {
+        this.preparedTimeout = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Permet de récupérer la politique de conservation des joueurs déconnectés.
+     * @return un {@link Optional} avec la politique, vide si les joueurs déconnectés sont gardés indéfiniment.
+     */
+    public Optional<RetentionPolicy> getRetentionPolicy()
+    {
+        return Optional.ofNullable(this.retentionPolicy);
+    }
+
+    /**
+     * Permet de limiter les joueurs déconnectés gardés lorsque l'option {@link Players#hasUnregisterPlayer()} est désactivée.
+     * Seuls les joueurs qui se déconnectent après l'appel de cette méthode sont concernés.
+     * @param retentionPolicy la politique de conservation, null pour garder les joueurs déconnectés indéfiniment.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setRetentionPolicy(RetentionPolicy retentionPolicy)
+    {
+        this.retentionPolicy = retentionPolicy;
+        if (retentionPolicy == null) {
+            this.offlinePlayers.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Permet de récupérer le temps pendant lequel un joueur déconnecté peut se reconnecter en gardant son instance et
+     * ses models.
+     * @param unit l'unité de temps souhaitée.
+     * @return le temps de reconnexion, 0 si les joueurs sont supprimés dès leur déconnexion.
+     */
+    public long getReconnectGrace(TimeUnit unit)
+    {
+        return unit.convert(this.reconnectGrace, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Permet de changer le temps pendant lequel un joueur déconnecté peut se reconnecter en gardant son instance et
+     * ses models, sans nouvel évènement {@link RegisterPlayerEvent}. L'évènement {@link UnregisterPlayerEvent} n'est
+     * lancé qu'une fois ce temps écoulé. Ne concerne que l'option {@link Players#hasUnregisterPlayer()} activée.
+     * @param grace le temps de reconnexion, 0 pour supprimer les joueurs dès leur déconnexion.
+     * @param unit  l'unité du temps.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setReconnectGrace(long grace, TimeUnit unit)
+    {
+        this.reconnectGrace = unit.toMillis(grace);
+        return this;
+    }
+
+    /**
+     * Permet de récupérer le stockage des données des joueurs.
+     * @return un {@link Optional} avec le stockage s'il y en a un.
+     */
+    public Optional<PlayerStorage> getStorage()
+    {
+        return Optional.ofNullable(this.storage);
+    }
+
+    /**
+     * Permet de changer le stockage des données des joueurs.
+     *
+     * Les données d'un nouveau joueur sont chargées lors de sa préparation, en bloquant le thread de pré-connexion, ou
+     * après son enregistrement s'il est créé depuis le thread principal. Elles sont alors appliquées au joueur par une
+     * tâche du thread principal, et écrasent les modifications faites entre temps. Il est donc conseillé d'activer
+     * {@link Players#setPreparePlayer(boolean)}.
+     *
+     * Les données sont sauvegardées par {@link Players#save(Player)}, appelé lorsque le joueur est supprimé de ce
+     * gestionnaire, puis lors de {@link Players#unload()} qui ferme le stockage. Toutes les lectures et écritures sont
+     * faites par un thread dédié. Le stockage est vidé sur le disque toutes les 10 secondes, voir {@link PlayerStorage}.
+     *
+     * @param storage le stockage, ou null pour ne plus rien garder.
+     * @return L'instance de ce gestionnaire.
+     */
+    public synchronized Players<T> setStorage(PlayerStorage storage)
+    {
+        if (storage != null && this.storageExecutor == null) {
+            this.storageExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, this.plugin.getName() + "-PlayerStorage");
+                thread.setDaemon(true);
+                return thread;
+            });
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            ThreadPoolExecutor encodeExecutor = new ThreadPoolExecutor(
+                    threads, threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, this.plugin.getName() + "-PlayerEncoder");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+            );
+            encodeExecutor.allowCoreThreadTimeOut(true);
+            this.encodeExecutor = encodeExecutor;
+        }
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * Permet d'activer la sauvegarde automatique des joueurs enregistrés dans le stockage. Chaque joueur est
+     * sauvegardé avec {@link Players#save(Player)} une fois par intervalle, et les sauvegardes sont réparties sur tous
+     * les ticks de l'intervalle plutôt que faites en une fois. Voir {@link Players#setAutosaveBudget(long, TimeUnit)}.
+     * @param interval l'intervalle entre deux sauvegardes d'un joueur, 0 pour désactiver la sauvegarde automatique.
+     * @param unit     l'unité de l'intervalle.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setAutosave(long interval, TimeUnit unit)
+    {
+        long ticks = unit.toNanos(interval) / Autosave.TICK;
+        this.autosave.setInterval(interval > 0L ? Math.max(1L, ticks) : 0L);
+        return this;
+    }
+
+    /**
+     * Permet de changer le temps que la sauvegarde automatique peut prendre à chaque tick, 2 millisecondes par défaut.
+     * Le budget utilisé est réduit tant que les ticks du serveur prennent du retard, puis remonte jusqu'à celui-ci.
+     * Les joueurs qui n'ont pas pu être sauvegardés à temps le sont aux ticks suivants.
+     * @param budget le temps maximum par tick.
+     * @param unit   l'unité du temps.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setAutosaveBudget(long budget, TimeUnit unit)
+    {
+        this.autosave.setMaxBudget(unit.toNanos(budget));
+        return this;
+    }
+
+    /**
+     * Permet d'instancier en parallèle les models d'un nouveau joueur. Les models indépendants sont instanciés en même
+     * temps sur le pool, et chaque model qui déclare des dépendances avec {@link DependsOn} l'est dès que ses
+     * dépendances sont ajoutées au joueur. Les constructeurs des models doivent alors pouvoir être appelés depuis un
+     * autre thread.
+     *
+     * Utile lorsque certains models sont longs à instancier, par exemple s'ils chargent des données. Pour des models
+     * rapides, les instancier un par un coûte moins cher.
+     *
+     * @param executor le pool, ou null pour instancier les models un par un dans l'ordre de leurs dépendances.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setModelExecutor(Executor executor)
+    {
+        this.modelExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Permet de récupérer le transport des données des joueurs vers les autres serveurs.
+     * @return un {@link Optional} avec le transport s'il y en a un.
+     */
+    public Optional<PlayerTransport> getTransport()
+    {
+        return Optional.ofNullable(this.transport);
+    }
+
+    /**
+     * Permet de changer le transport des données des joueurs vers les autres serveurs.
+     *
+     * Toutes les données d'un joueur sont envoyées lorsqu'il quitte le serveur, puis reçues par le serveur suivant lors
+     * de la préparation du joueur, avant {@link org.bukkit.event.player.PlayerJoinEvent}. Elles remplacent alors celles
+     * du {@link PlayerStorage}. Il faut donc activer {@link Players#setPreparePlayer(boolean)} : un joueur créé depuis
+     * le thread principal ne reçoit que les données déjà arrivées.
+     *
+     * Le transport n'est pas fermé par {@link Players#unload()}, il peut être partagé par plusieurs gestionnaires.
+     *
+     * @param transport le transport, ou null pour ne plus rien envoyer.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setTransport(PlayerTransport transport)
+    {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Permet de changer le temps d'attente des données d'un joueur lors de sa préparation, 0 par défaut.
+     *
+     * Lorsqu'un proxy connecte le joueur au nouveau serveur avant de le déconnecter de l'ancien, les données arrivent
+     * après la pré-connexion : ce temps d'attente retarde alors la connexion de tous les joueurs qui n'en reçoivent pas.
+     *
+     * @param timeout le temps d'attente.
+     * @param unit    l'unité du temps d'attente.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> setTransportTimeout(long timeout, TimeUnit unit)
+    {
+        this.transportTimeout = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Permet d'envoyer toutes les données d'un joueur qui quitte le serveur aux autres serveurs. L'envoi est numéroté
+     * par l'heure actuelle, ou le numéro reçu plus un si l'horloge du serveur précédent était en avance.
+     * @param player le joueur.
+     */
+    protected void export(Player player)
+    {
+        PlayerTransport transport = this.transport;
+        if (transport == null) {
+            return;
+        }
+        try {
+            long sequence = Math.max(player.handoff + 1L, System.currentTimeMillis());
+            player.handoff = sequence;
+            transport.send(player.getUniqueId(), sequence, PlayerCodec.encode(player));
+        } catch (IOException exception) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not send the player " + player.getUniqueId(), exception);
+        }
+    }
+
+    /**
+     * Permet d'appliquer les données d'un nouveau joueur envoyées par un autre serveur. Le thread principal n'attend pas.
+     * @param player le joueur.
+     * @return si des données ont été reçues.
+     */
+    protected boolean receive(Player player)
+    {
+        PlayerTransport transport = this.transport;
+        if (transport == null) {
+            return false;
+        }
+        long timeout = Bukkit.isPrimaryThread() ? 0L : this.transportTimeout;
+        try {
+            PlayerTransport.Handoff handoff = transport.receive(player.getUniqueId(), timeout, TimeUnit.MILLISECONDS);
+            if (handoff != null) {
+                player.handoff = handoff.getSequence();
+                this.apply(player, Collections.singletonList(handoff.getData()));
+                return true;
+            }
+        } catch (IOException exception) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not receive the player " + player.getUniqueId(), exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Permet de charger les données d'un nouveau joueur, depuis le transport s'il en a reçu, sinon depuis le stockage.
+     * @param player le joueur.
+     */
+    protected void restore(Player player)
+    {
+        PlayerStorage storage = this.storage;
+        ExecutorService executor = this.storageExecutor;
+        if (storage == null || executor == null) {
+            this.receive(player);
+            return;
+        }
+        UUID uuid = player.getUniqueId();
+        if (this.receive(player)) {
+            return;
+        }
+        CompletableFuture<List<ByteBuffer>> load = this.queueStorage(executor, null, () -> storage.load(uuid));
+        if (!Bukkit.isPrimaryThread()) {
+            try {
+                this.apply(player, load.get());
+            } catch (ExecutionException exception) {
+                this.plugin.getLogger().log(Level.SEVERE, "Could not load the player " + uuid, exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        player.restoring = true;
+        load.whenComplete((data, failure) -> {
+            if (failure != null) {
+                if (failure.getCause() instanceof IOException) {
+                    // Le joueur n'est plus sauvegardé : ses valeurs par défaut remplaceraient les données illisibles.
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not load the player " + uuid + ", it will not be saved.", failure.getCause());
+                } else {
+                    player.restoring = false;
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not load the player " + uuid, failure);
+                }
+                return;
+            }
+            if (data.isEmpty()) {
+                player.restoring = false;
+                return;
+            }
+            Bukkit.getScheduler().runTask(this.plugin, () -> {
+                if (this.playerMap.get(uuid) == player || this.isPrepared(player)) {
+                    this.apply(player, data);
+                }
+                player.restoring = false;
+            });
+        });
+    }
+
+    /**
+     * Une lecture ou une écriture faite par le thread du stockage.
+     */
+    @FunctionalInterface
+    private interface StorageTask<V>
+    {
+        V run() throws IOException;
+    }
+
+    /**
+     * Ajoute une tâche à la suite de celles du thread du stockage. Elle est lancée une fois la tâche précédente terminée,
+     * et les données à écrire prêtes, sans bloquer le thread du stockage en attendant.
+     * @param executor le thread du stockage.
+     * @param ready    les données attendues par la tâche, ou null.
+     * @param task     la tâche.
+     * @return le résultat de la tâche, en erreur avec une {@link CompletionException} si elle a échoué ou a été refusée.
+     */
+    private <V> CompletableFuture<V> queueStorage(ExecutorService executor, CompletableFuture<?> ready, StorageTask<V> task)
+    {
+        synchronized (this.storageLock) {
+            CompletableFuture<?> previous = ready != null ? CompletableFuture.allOf(this.storageTail, ready) : this.storageTail;
+            CompletableFuture<V> next = previous.handleAsync((ignored, failure) -> {
+                try {
+                    return task.run();
+                } catch (IOException exception) {
+                    throw new CompletionException(exception);
+                }
+            }, executor);
+            this.storageTail = next;
+            return next;
+        }
+    }
+
+    private boolean isPrepared(Player player)
+    {
+        PreparedPlayer prepared = this.preparedPlayers.get(player.getUniqueId());
+        return prepared != null && prepared.player == player;
+    }
+
+    /**
+     * Relit les données d'un joueur. Les valeurs relues ne sont pas marquées comme modifiées, sa prochaine sauvegarde
+     * écrit donc toutes ses données.
+     */
+    private void apply(Player player, List<ByteBuffer> data)
+    {
+        synchronized (player) {
+            try {
+                for (ByteBuffer record : data) {
+                    PlayerCodec.read(player, record);
+                }
+            } catch (ModelException modelException) {
+                this.plugin.getLogger().log(Level.SEVERE, modelException.getMessage(), modelException);
+            }
+            player.savedBytes = -1;
+        }
+    }
+
+    /**
+     * Permet de sauvegarder les données d'un joueur. Les valeurs du joueur sont copiées par le thread appelant, puis
+     * encodées par les threads d'encodage de ce gestionnaire et écrites par le thread du stockage, dans l'ordre des
+     * appels.
+     *
+     * La première sauvegarde du joueur écrit toutes ses données. Les suivantes n'écrivent que les models et les champs
+     * marqués par {@link PlayerModel#markDirty()} depuis la précédente, et rien si aucun model n'a été modifié. Les
+     * données sont à nouveau écrites en entier lorsque les modifications ajoutées deviennent plus grandes que la
+     * dernière sauvegarde complète, ou après une erreur d'écriture. Rien n'est écrit tant que les données du joueur
+     * chargées par {@link Players#restore(Player)} n'ont pas été appliquées.
+     *
+     * @param player le joueur.
+     */
+    public void save(Player player)
+    {
+        PlayerStorage storage = this.storage;
+        ExecutorService executor = this.storageExecutor;
+        ExecutorService encoder = this.encodeExecutor;
+        if (storage == null || executor == null || encoder == null) {
+            return;
+        }
+        if (player.restoring) {
+            return;
+        }
+        synchronized (player) {
+            boolean full = player.savedBytes < 0 || player.deltaBytes > player.savedBytes;
+            PlayerCodec.Capture capture;
+            if (full) {
+                for (PlayerModel model : player.playerModels) {
+                    if (model != null) {
+                        model.takeDirty();
+                    }
+                }
+                capture = PlayerCodec.capture(player);
+                // La taille est connue une fois la sauvegarde écrite, les suivantes sont partielles jusque-là.
+                player.savedBytes = Integer.MAX_VALUE;
+            } else {
+                capture = PlayerCodec.captureDirty(player);
+                if (capture == null) {
+                    return;
+                }
+            }
+            CompletableFuture<ByteBuffer> data;
+            try {
+                data = CompletableFuture.supplyAsync(() -> PlayerCodec.encode(capture), encoder);
+            } catch (RejectedExecutionException exception) {
+                player.savedBytes = -1;
+                this.plugin.getLogger().log(Level.SEVERE, "Could not save the player " + player.getUniqueId(), exception);
+                return;
+            }
+            this.queueStorage(executor, data, () -> {
+                try {
+                    ByteBuffer buffer = data.join();
+                    if (full) {
+                        storage.save(player.getUniqueId(), buffer);
+                        player.savedBytes = buffer.limit();
+                        player.deltaBytes = 0;
+                    } else {
+                        storage.append(player.getUniqueId(), buffer);
+                        player.deltaBytes += buffer.limit();
+                    }
+                } catch (IOException | RuntimeException exception) {
+                    player.savedBytes = -1;
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not save the player " + player.getUniqueId(), exception);
+                }
+                return null;
+            }).exceptionally(failure -> {
+                player.savedBytes = -1;
+                this.plugin.getLogger().log(Level.SEVERE, "Could not save the player " + player.getUniqueId(), failure);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Permet de supprimer les données d'un joueur du stockage, par exemple à sa demande. Si le joueur est enregistré,
+     * ses models sont gardés et ses données seront écrites en entier à sa prochaine sauvegarde.
+     * @param uuid l'identifiant du joueur.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> deleteData(UUID uuid)
+    {
+        PlayerStorage storage = this.storage;
+        ExecutorService executor = this.storageExecutor;
+        if (storage == null || executor == null) {
+            return this;
+        }
+        Player player = this.playerMap.get(uuid);
+        if (player != null) {
+            synchronized (player) {
+                player.savedBytes = -1;
+            }
+        }
+        this.queueStorage(executor, null, () -> {
+            storage.delete(uuid);
+            if (player != null) {
+                // Une sauvegarde complète écrite avant la suppression ne doit plus servir de base.
+                player.savedBytes = -1;
+            }
+            return null;
+        }).exceptionally(failure -> {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not delete the player " + uuid, failure);
+            return null;
+        });
+        return this;
+    }
+
+    /**
+     * Permet de demander au stockage d'écrire ses données sur le disque.
+     */
+    protected void flushStorage()
+    {
+        PlayerStorage storage = this.storage;
+        ExecutorService executor = this.storageExecutor;
+        if (storage != null && executor != null) {
+            this.queueStorage(executor, null, () -> {
+                storage.flush();
+                return null;
+            }).exceptionally(failure -> {
+                // Refusée si le stockage est en train d'être fermé.
+                if (failure.getCause() instanceof IOException) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not flush " + storage, failure.getCause());
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Permet d'attendre la fin des écritures en cours puis de fermer le stockage.
+     */
+    protected synchronized void closeStorage()
+    {
+        PlayerStorage storage = this.storage;
+        ExecutorService executor = this.storageExecutor;
+        ExecutorService encoder = this.encodeExecutor;
+        if (executor == null) {
+            return;
+        }
+        this.storage = null;
+        this.storageExecutor = null;
+        this.encodeExecutor = null;
+        CompletableFuture<?> last = this.queueStorage(executor, null, () -> {
+            if (storage != null) {
+                storage.close();
+            }
+            return null;
+        });
+        try {
+            last.get(30L, TimeUnit.SECONDS);
+        } catch (TimeoutException exception) {
+            this.plugin.getLogger().severe("The player storage did not finish its writes in 30 seconds.");
+        } catch (ExecutionException exception) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not close " + storage, exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs enregistrés, connectés ou non.
+     * @return le nombre de joueurs enregistrés.
+     */
+    public int getPlayerCount()
+    {
+        return this.playerMap.size();
+    }
+
+    /**
+     * Permet de chercher des joueurs enregistrés selon les models qu'ils possèdent et leurs valeurs, par exemple
+     * {@code players.query().where(ArenaModel.class, arena -> arena.getScore() > 100).stream()}.
+     * @return une nouvelle recherche sur tous les joueurs enregistrés.
+     */
+    public PlayerQuery query()
+    {
+        return new PlayerQuery(this);
+    }
+
+    /**
+     * Permet de récupérer une vue figée des joueurs enregistrés, à parcourir depuis n'importe quel thread sans copie ni
+     * verrou. La même vue est renvoyée tant qu'aucun joueur n'est ajouté ou supprimé : elle n'est reconstruite qu'au
+     * premier appel après un changement, une seule fois quel que soit le nombre de changements.
+     *
+     * Une vue contient au moins tous les changements antérieurs à son époque. Un changement fait pendant sa
+     * construction peut déjà y figurer, il augmente alors l'époque et la vue suivante sera reconstruite.
+     *
+     * @return la vue des joueurs enregistrés.
+     */
+    public PlayersSnapshot getSnapshot()
+    {
+        PlayersSnapshot snapshot = this.snapshot;
+        if (snapshot.getEpoch() == this.epoch.get()) {
+            return snapshot;
+        }
+        synchronized (this.epoch) {
+            long epoch = this.epoch.get();
+            snapshot = this.snapshot;
+            if (snapshot.getEpoch() != epoch) {
+                snapshot = new PlayersSnapshot(epoch, this.playerMap.values().toArray(new Player[0]));
+                this.snapshot = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs préparés qui ne se sont pas encore connectés.
+     * @return le nombre de joueurs préparés.
+     */
+    public int getPreparedPlayerCount()
+    {
+        return this.preparedPlayers.size();
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs déconnectés gardés par la {@link RetentionPolicy}.
+     * @return le nombre de joueurs déconnectés gardés.
+     */
+    public int getOfflinePlayerCount()
+    {
+        return this.offlinePlayers.size();
+    }
+
+    /**
+     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs et ou la suppression des joueurs lors de leur déconnexion.
+     * @param registerPlayer Si l'enregistrement des nouveaux joueurs doivent avoir lieu.
+     * @param unregisterPlayer Si la suppression des joueurs doivent avoir lieu lors de leur déconnexion.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> active(boolean registerPlayer, boolean unregisterPlayer)
+    {
+        return this.setRegisterPlayer(registerPlayer)
+                   .setUnregisterPlayer(unregisterPlayer);
+    }
+
+    /**
+     * Permet d'activer l'enregistrement des nouveaux joueurs et la suppression des joueurs lors de leur déconnexion.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> activeAll()
+    {
+        return this.active(true, true);
+    }
+
+    /**
+     * Permet d'activer/désactiver l'enregistrement des nouveaux joueurs et ou la suppression des joueurs lors de leur déconnexion.
+     * @param registerPlayer Si l'enregistrement des nouveaux joueurs ne doivent plus avoir lieu.
+     * @param unregisterPlayer Si la suppression des joueurs ne doivent plus avoir lieu lors de leur déconnexion.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> disable(boolean registerPlayer, boolean unregisterPlayer)
+    {
+        return this.setRegisterPlayer(!registerPlayer)
+                .setUnregisterPlayer(!unregisterPlayer);
+    }
+
+    /**
+     * Permet de désactiver l'enregistrement des nouveaux joueurs et la suppression des joueurs lors de leur déconnexion.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> disableAll()
+    {
+        return this.disable(true, true);
+    }
+
+    /**
+     * Permet de savoir si la class d'un {@link PlayerModel} est enregistré.
+     * @param classModel la class du {@link PlayerModel} à verifier.
+     * @return si la class du {@link PlayerModel} existe.
+     */
+    public boolean hasModel(Class<? extends PlayerModel> classModel)
+    {
+        return this.models.containsKey(classModel);
+    }
+
+    /**
+     * Enregistre un nouveau {@link PlayerModel} à ce gestionnaire. Le model est instancié dès l'enregistrement des joueurs.
+     *
+     * Le constructeur du model est vérifié et compilé une seule fois dans une {@link ModelFactory}, réutilisée
+     * pour chaque joueur. Une class invalide est donc refusée dès son enregistrement.
+     *
+     * @param classModel le nouveau {@link PlayerModel} à enregistrer.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> registerModel(Class<? extends PlayerModel> classModel)
+    {
+        return this.registerModel(classModel, LoadPolicy.EAGER);
+    }
+
+    /**
+     * Enregistre un nouveau {@link PlayerModel} à ce gestionnaire.
+     *
+     * Avec {@link LoadPolicy#LAZY}, le model n'est instancié qu'au premier appel de {@link Player#getModel(Class)}
+     * pour chaque joueur, ce qui est utile pour les models qui ne concernent qu'une partie des joueurs.
+     *
+     * @param classModel le nouveau {@link PlayerModel} à enregistrer.
+     * @param loadPolicy le moment où le model est instancié pour chaque joueur.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> registerModel(Class<? extends PlayerModel> classModel, LoadPolicy loadPolicy)
+    {
+        try {
+            this.registerModelKey(classModel, loadPolicy);
+        } catch (ModelException exception) {
+            this.plugin.getLogger().log(Level.SEVERE, exception.getMessage(), exception);
+        }
+        return this;
+    }
+
+    /**
+     * Enregistre un nouveau {@link PlayerModel} à ce gestionnaire et récupère sa {@link ModelKey}.
+     * Le model est instancié dès l'enregistrement des joueurs.
+     *
+     * @param classModel le nouveau {@link PlayerModel} à enregistrer.
+     * @param <M>        le type du {@link PlayerModel}.
+     * @return la clé du model, ou la clé existante si le model était déjà enregistré.
+     * @throws ModelException si le model est invalide ou n'a pas pu être instancié pour un des joueurs.
+     */
+    public <M extends PlayerModel> ModelKey<M> registerModelKey(Class<M> classModel) throws ModelException
+    {
+        return this.registerModelKey(classModel, LoadPolicy.EAGER);
+    }
+
+    /**
+     * Enregistre un nouveau {@link PlayerModel} à ce gestionnaire et récupère sa {@link ModelKey}.
+     *
+     * La clé permet de récupérer le model d'un joueur avec {@link Player#get(ModelKey)}, sans recherche par class.
+     *
+     * @param classModel le nouveau {@link PlayerModel} à enregistrer.
+     * @param loadPolicy le moment où le model est instancié pour chaque joueur.
+     * @param <M>        le type du {@link PlayerModel}.
+     * @return la clé du model, ou la clé existante si le model était déjà enregistré.
+     * @throws ModelException si le model est invalide ou n'a pas pu être instancié pour un des joueurs.
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends PlayerModel> ModelKey<M> registerModelKey(Class<M> classModel, LoadPolicy loadPolicy) throws ModelException
+    {
+        return (ModelKey<M>) this.registerModelKeys(loadPolicy, classModel).get(0);
+    }
+
+    /**
+     * Enregistre plusieurs {@link PlayerModel} à ce gestionnaire en une seule fois.
+     * Voir {@link Players#registerModelKeys(LoadPolicy, Class[])}.
+     *
+     * @param classModels les nouveaux {@link PlayerModel} à enregistrer.
+     * @return L'instance de ce gestionnaire.
+     */
+    @SafeVarargs
+    public final Players<T> registerModels(Class<? extends PlayerModel>... classModels)
+    {
+        try {
+            this.registerModelKeys(LoadPolicy.EAGER, classModels);
+        } catch (ModelException exception) {
+            this.plugin.getLogger().log(Level.SEVERE, exception.getMessage(), exception);
+        }
+        return this;
+    }
+
+    /**
+     * Enregistre plusieurs {@link PlayerModel} à ce gestionnaire en une seule fois.
+     *
+     * Toutes les class sont vérifiées avant d'instancier le moindre model. Les models des joueurs déjà enregistrés sont
+     * ensuite instanciés en parallèle (les constructeurs doivent donc pouvoir être appelés depuis un autre thread), puis
+     * ajoutés à chaque joueur en une seule fois, une fois tous instanciés. Si un seul model échoue, aucun joueur n'est
+     * modifié, aucun model n'est enregistré et {@link PlayerModel#onUnload()} est appelé sur les models déjà instanciés.
+     *
+     * Les dépendances {@link DependsOn} de chaque model doivent déjà être enregistrées ou faire partie des class
+     * données. Un model est instancié pour chaque joueur après les models dont il dépend, qu'il peut récupérer depuis
+     * son constructeur même s'ils ne sont pas encore ajoutés au joueur.
+     *
+     * @param loadPolicy  le moment où les models sont instanciés pour chaque joueur.
+     * @param classModels les nouveaux {@link PlayerModel} à enregistrer.
+     * @return les clés des models dans l'ordre des class, avec les clés existantes des models déjà enregistrés.
+     * @throws ModelException si un des models est invalide, dépend d'un model non enregistré ou d'un cycle de models,
+     *                        ou n'a pas pu être instancié pour un des joueurs.
+     */
+    @SafeVarargs
+    public final List<ModelKey<?>> registerModelKeys(LoadPolicy loadPolicy, Class<? extends PlayerModel>... classModels) throws ModelException
+    {
+        synchronized (this.modelSlots) {
+            Map<Class<? extends PlayerModel>, ModelFactory<?>> factories = new LinkedHashMap<>();
+            for (Class<? extends PlayerModel> classModel : classModels) {
+                if (!this.models.containsKey(classModel) && !factories.containsKey(classModel)) {
+                    factories.put(classModel, ModelFactory.of(classModel, loadPolicy));
+                }
+            }
+
+            for (ModelFactory<?> factory : factories.values()) {
+                for (Class<? extends PlayerModel> dependency : factory.getDependencies()) {
+                    if (!this.models.containsKey(dependency) && !factories.containsKey(dependency)) {
+                        throw new ModelException("The model " + factory.getModelClass().getName() + " depends on "
+                                + dependency.getName() + " which is not registered.");
+                    }
+                }
+            }
+
+            List<ModelKey<?>> newKeys = new ArrayList<>(factories.size());
+            for (ModelFactory<?> factory : factories.values()) {
+                newKeys.add(new ModelKey<>(this.modelSlots.nextClearBit(0), factory));
+                this.modelSlots.set(newKeys.get(newKeys.size() - 1).getSlot());
+            }
+
+            List<ModelKey<?>> order;
+            Player[] players = new Player[0];
+            PlayerModel[][] staged = new PlayerModel[0][];
+            try {
+                List<ModelKey<?>> all = new ArrayList<>(this.modelOrder);
+                all.addAll(newKeys);
+                order = ModelGraph.sort(all);
+                newKeys = ModelGraph.sort(newKeys);
+                if (!newKeys.isEmpty() && loadPolicy != LoadPolicy.LAZY) {
+                    players = this.getSnapshot().players;
+                    staged = new PlayerModel[players.length][newKeys.size()];
+                    // Les models d'un niveau sont instanciés après ceux dont ils dépendent, sans être ajoutés aux joueurs.
+                    for (List<ModelKey<?>> level : ModelGraph.levels(newKeys)) {
+                        this.createModels(players, level, newKeys, staged);
+                    }
+                }
+            } catch (ModelException exception) {
+                for (PlayerModel[] models : staged) {
+                    Players.unloadStaged(models);
+                }
+                for (ModelKey<?> key : newKeys) {
+                    key.unregister();
+                    this.modelSlots.clear(key.getSlot());
+                }
+                throw exception;
+            }
+
+            // Tous les models ont été instanciés : ils sont ajoutés aux joueurs, puis leurs clés sont publiées.
+            for (int i = 0; i < players.length; i++) {
+                if (this.playerMap.get(players[i].getUniqueId()) == players[i]) {
+                    players[i].setModels(newKeys, staged[i]);
+                } else {
+                    Players.unloadStaged(staged[i]);
+                }
+            }
+            for (ModelKey<?> key : newKeys) {
+                this.models.put(key.getModelClass(), key);
+            }
+            this.modelOrder = Collections.unmodifiableList(order);
+            for (Player player : this.playerMap.values()) {
+                for (ModelKey<?> key : newKeys) {
+                    PlayerModel model = player.peek(key);
+                    if (model != null) {
+                        this.modelLoaded(model);
+                    }
+                }
+            }
+            if (loadPolicy != LoadPolicy.LAZY) {
+                // Les joueurs enregistrés pendant la création des models.
+                for (Player player : this.playerMap.values()) {
+                    for (ModelKey<?> key : newKeys) {
+                        if (!player.hasModel(key)) {
+                            try {
+                                player.registerModel(key);
+                            } catch (ModelException exception) {
+                                this.plugin.getLogger().log(Level.SEVERE, exception.getMessage(), exception);
+                            }
+                        }
+                    }
+                }
+            }
+
+            List<ModelKey<?>> result = new ArrayList<>(classModels.length);
+            for (Class<? extends PlayerModel> classModel : classModels) {
+                result.add(this.models.get(classModel));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Permet d'instancier en parallèle les models de plusieurs {@link ModelKey} pour plusieurs joueurs, sans les
+     * ajouter aux joueurs.
+     * @param players les joueurs.
+     * @param keys    les clés des models à instancier.
+     * @param staged  toutes les clés en attente d'être ajoutées aux joueurs.
+     * @param models  les models en attente de chaque joueur, dans l'ordre des joueurs puis de staged.
+     * @throws ModelException si un des models n'a pas pu être instancié.
+     */
+    protected void createModels(Player[] players, List<ModelKey<?>> keys, List<ModelKey<?>> staged, PlayerModel[][] models) throws ModelException
+    {
+        AtomicReference<ModelException> failure = new AtomicReference<>();
+        IntStream.range(0, players.length).parallel().forEach(i -> {
+            if (failure.get() == null) {
+                try {
+                    players[i].createModels(keys, staged, models[i]);
+                } catch (ModelException exception) {
+                    failure.compareAndSet(null, exception);
+                }
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Permet de prévenir des models qui ne seront jamais ajoutés à leur joueur qu'ils sont abandonnés.
+     * @param models les models, dont certains peuvent être null.
+     */
+    private static void unloadStaged(PlayerModel[] models)
+    {
+        for (PlayerModel model : models) {
+            if (model != null) {
+                model.unload();
+            }
+        }
+    }
+
+    /**
+     * Permet de récupérer la {@link ModelKey} d'un {@link PlayerModel} enregistré.
+     * @param classModel la class du {@link PlayerModel}.
+     * @param <M>        le type du {@link PlayerModel}.
+     * @return un {@link Optional} avec la clé du model s'il est enregistré.
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends PlayerModel> Optional<ModelKey<M>> getModelKey(Class<M> classModel)
+    {
+        return Optional.ofNullable((ModelKey<M>) this.models.get(classModel));
+    }
+
+    /**
+     * Supprimer un {@link PlayerModel} de ce gestionnaire.
+     * Son emplacement est libéré une fois le model supprimé de tous les joueurs.
+     * @param classModel le {@link PlayerModel} à supprimer.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> unRegisterModel(Class<? extends PlayerModel> classModel)
+    {
+        return this.unRegisterModels(classModel);
+    }
+
+    /**
+     * Supprimer plusieurs {@link PlayerModel} de ce gestionnaire en une seule fois.
+     * Les models sont retirés de chaque joueur en une seule fois, puis leurs emplacements sont libérés.
+     * @param classModels les {@link PlayerModel} à supprimer.
+     * @return L'instance de ce gestionnaire.
+     */
+    @SafeVarargs
+    public final Players<T> unRegisterModels(Class<? extends PlayerModel>... classModels)
+    {
+        synchronized (this.modelSlots) {
+            List<ModelKey<?>> keys = new ArrayList<>(classModels.length);
+            for (Class<? extends PlayerModel> classModel : classModels) {
+                ModelKey<?> key = this.models.remove(classModel);
+                if (key != null) {
+                    key.unregister();
+                    keys.add(key);
+                }
+            }
+            if (keys.isEmpty()) {
+                return this;
+            }
+            List<ModelKey<?>> order = new ArrayList<>(this.modelOrder);
+            order.removeAll(keys);
+            this.modelOrder = Collections.unmodifiableList(order);
+            for (Player player : this.playerMap.values()) {
+                player.removeModels(keys);
+            }
+            for (PreparedPlayer prepared : this.preparedPlayers.values()) {
+                prepared.player.removeModels(keys);
+            }
+            for (ModelKey<?> key : keys) {
+                this.modelSlots.clear(key.getSlot());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Enregistre un classement des joueurs selon une valeur d'un {@link PlayerModel}, par exemple
+     * {@code players.registerLeaderboard(CustomPlayerModel.class, CustomPlayerModel::getBlockBreak)}.
+     *
+     * Le classement est rempli avec les joueurs enregistrés dont le model est instancié, puis tenu à jour à chaque
+     * enregistrement ou suppression d'un joueur et après chaque appel de {@link PlayerModel#changed()}, une fois par
+     * tick. Voir {@link Leaderboard}.
+     *
+     * @param classModel la class du model classé, qui doit être enregistré dans ce gestionnaire.
+     * @param score      la valeur classée.
+     * @param <M>        le type du model.
+     * @return le classement.
+     */
+    public <M extends PlayerModel> Leaderboard<M> registerLeaderboard(Class<M> classModel, ToLongFunction<? super M> score)
+    {
+        Leaderboard<M> leaderboard = new Leaderboard<>(this, classModel, score);
+        this.leaderboards.computeIfAbsent(classModel, k -> new CopyOnWriteArrayList<>()).add(leaderboard);
+        ModelKey<?> key = this.models.get(classModel);
+        if (key != null) {
+            for (Player player : this.playerMap.values()) {
+                if (player.hasModel(key)) {
+                    leaderboard.update(player.get(key));
+                }
+            }
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Supprime un classement de ce gestionnaire, il ne sera plus mis à jour.
+     * @param leaderboard le classement à supprimer.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> unregisterLeaderboard(Leaderboard<?> leaderboard)
+    {
+        this.leaderboards.computeIfPresent(leaderboard.getModelClass(), (classModel, list) -> {
+            list.remove(leaderboard);
+            return list.isEmpty() ? null : list;
+        });
+        leaderboard.clear();
+        return this;
+    }
+
+    /**
+     * Appelé lorsqu'un model est ajouté à un joueur enregistré.
+     * @param model le model ajouté.
+     */
+    void modelLoaded(PlayerModel model)
+    {
+        ModelKey<?> key = this.models.get(model.getClass());
+        if (key != null && this.isCurrent(model)) {
+            key.players.put(model.player.getUniqueId(), model.player);
+            model.codec = key.getFactory().getCodec();
+            model.attach();
+        }
+        this.modelChanged(model);
+    }
+
+    /**
+     * Appelé par {@link PlayerModel#changed()} lorsque les valeurs d'un model ont changé.
+     * @param model le model modifié.
+     */
+    void modelChanged(PlayerModel model)
+    {
+        List<Leaderboard<?>> boards = this.leaderboards.get(model.getClass());
+        if (boards != null) {
+            for (Leaderboard<?> leaderboard : boards) {
+                leaderboard.changed(model);
+            }
+        }
+    }
+
+    /**
+     * Permet de reclasser les joueurs modifiés depuis le tick précédent dans tous les classements.
+     */
+    protected void flushLeaderboards()
+    {
+        for (List<Leaderboard<?>> boards : this.leaderboards.values()) {
+            for (Leaderboard<?> leaderboard : boards) {
+                leaderboard.flush();
+            }
+        }
+    }
+
+    /**
+     * Appelé lorsqu'un model est retiré de son joueur ou que son joueur est supprimé de ce gestionnaire.
+     * @param model le model retiré.
+     */
+    void modelUnloaded(PlayerModel model)
+    {
+        ModelKey<?> key = this.models.get(model.getClass());
+        if (key != null) {
+            key.players.remove(model.player.getUniqueId(), model.player);
+        }
+        List<Leaderboard<?>> boards = this.leaderboards.get(model.getClass());
+        if (boards != null) {
+            for (Leaderboard<?> leaderboard : boards) {
+                leaderboard.remove(model.player);
+            }
+        }
+    }
+
+    /**
+     * Permet de savoir si un model est celui qu'un joueur enregistré possède actuellement.
+     * @param model le model.
+     * @return si le model est actuellement utilisé par un joueur enregistré.
+     */
+    boolean isCurrent(PlayerModel model)
+    {
+        Player player = model.player;
+        if (this.playerMap.get(player.getUniqueId()) != player) {
+            return false;
+        }
+        ModelKey<?> key = this.models.get(model.getClass());
+        if (key == null) {
+            return false;
+        }
+        PlayerModel[] playerModels = player.playerModels;
+        return key.getSlot() < playerModels.length && playerModels[key.getSlot()] == model;
+    }
+
+    /**
+     * Permet de charger les ressources adéquat au fonctionnement de ce gestionnaire.
+     * Les joueurs déjà connectés, après un rechargement par exemple, sont enregistrés en une seule fois.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> load()
+    {
+        Bukkit.getPluginManager().registerEvents(new PlayerHostListener(this), this.plugin);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this.plugin, () -> {
+            this.discardExpired();
+            this.flushStorage();
+        }, 200L, 200L);
+        // Les joueurs oubliés appellent l'action de la RetentionPolicy et PlayerModel#onUnload() : sur le thread principal.
+        Bukkit.getScheduler().runTaskTimer(this.plugin, this::evictExpired, 200L, 200L);
+        Bukkit.getScheduler().runTaskTimer(this.plugin, this::unregisterParked, 20L, 20L);
+        Bukkit.getScheduler().runTaskTimer(this.plugin, this.autosave, 1L, 1L);
+        Bukkit.getScheduler().runTaskTimer(this.plugin, this::flushLeaderboards, 1L, 1L);
+        this.register(Bukkit.getOnlinePlayers());
+        try {
+            ObjectName name = new ObjectName("fr.neutronstars.playermodel:type=Players,name=" + ObjectName.quote(this.plugin.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // Celui d'une instance précédente du plugin qui n'a pas appelé unload(), après un rechargement par exemple.
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this.metrics, name);
+            this.metricsName = name;
+        } catch (JMException exception) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not publish the metrics: " + exception.getMessage(), exception);
+        }
+        return this;
+    }
+
+    /**
+     * Permet de supprimer tous les joueurs de ce gestionnaire en une seule fois, par exemple lors de la désactivation
+     * du plugin.
+     * @return L'instance de ce gestionnaire.
+     */
+    public Players<T> unload()
+    {
+        this.parkedPlayers.clear();
+        if (this.metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.metricsName);
+            } catch (JMException exception) {
+                this.plugin.getLogger().log(Level.WARNING, "Could not unpublish the metrics: " + exception.getMessage(), exception);
+            }
+            this.metricsName = null;
+        }
+        this.leave(this.getSnapshot().asList(), false);
+        // Les joueurs gardés ou dont la suppression a été annulée.
+        for (Player player : this.playerMap.values()) {
+            this.save(player);
+        }
+        this.closeStorage();
+        return this;
+    }
+
+    /**
+     * Un {@link Player} préparé lors de la pré-connexion et en attente de sa connexion.
+     */
+    protected static class PreparedPlayer
+    {
+        /**
+         * Le joueur préparé.
+         */
+        protected final Player player;
+
+        /**
+         * La date en millisecondes à laquelle le joueur préparé sera oublié.
+         */
+        protected final long expireAt;
+
+        protected PreparedPlayer(Player player, long expireAt)
+        {
+            this.player = player;
+            this.expireAt = expireAt;
+        }
+
+        /**
+         * Permet de savoir si le joueur préparé doit être oublié.
+         * @return si le joueur préparé doit être oublié.
+         */
+        protected boolean isExpired()
+        {
+            return System.currentTimeMillis() >= this.expireAt;
+        }
+    }
 }
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Les mesures d'un gestionnaire {@link Players} : durée d'enregistrement des joueurs, durée de construction de chaque
+ * model, durée des évènements {@link fr.neutronstars.playermodel.event.RegisterPlayerEvent} et
+ * {@link fr.neutronstars.playermodel.event.UnregisterPlayerEvent}, durée de la sauvegarde automatique, nombre de
+ * joueurs et recherches réussies ou non.
+ *
+ * Les mesures ne prennent aucun verrou et n'allouent rien une fois la class d'un model mesurée une première fois.
+ * Elles peuvent être désactivées avec {@link PlayersMetrics#setEnabled(boolean)}, il ne reste alors qu'une lecture
+ * de champ par mesure. Les recherches de joueurs et de models, bien plus fréquentes, ne sont comptées qu'une fois sur
+ * {@link PlayersMetrics#LOOKUP_SAMPLE} : leurs nombres sont des estimations.
+ */
+public final class PlayersMetrics implements PlayersMetricsMXBean
+{
+    /**
+     * Une recherche sur ce nombre est comptée, en ajoutant ce nombre. Les recherches restantes ne touchent à aucun
+     * compteur partagé entre les threads.
+     */
+    static final int LOOKUP_SAMPLE = 64;
+
+    private final Players<?> players;
+
+    private volatile boolean enabled = true;
+
+    private final Histogram register = new Histogram();
+
+    private final Histogram registerEvent = new Histogram();
+
+    private final Histogram unregisterEvent = new Histogram();
+
+    private final Histogram autosave = new Histogram();
+
+    private final LongAdder autosavedPlayers = new LongAdder();
+
+    private final Map<Class<?>, Histogram> modelConstruction = new ConcurrentHashMap<>();
+
+    private final LongAdder lookupHits = new LongAdder();
+
+    private final LongAdder lookupMisses = new LongAdder();
+
+    PlayersMetrics(Players<?> players)
+    {
+        this.players = players;
+    }
+
+    /**
+     * Permet de démarrer une mesure.
+     * @return l'instant de départ, ou 0 si les mesures sont désactivées.
+     */
+    long start()
+    {
+        return this.enabled ? System.nanoTime() : 0L;
+    }
+
+    private static void stop(Histogram histogram, long start)
+    {
+        if (start != 0L) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    void recordRegister(long start)
+    {
+        PlayersMetrics.stop(this.register, start);
+    }
+
+    void recordRegisterEvent(long start)
+    {
+        PlayersMetrics.stop(this.registerEvent, start);
+    }
+
+    void recordUnregisterEvent(long start)
+    {
+        PlayersMetrics.stop(this.unregisterEvent, start);
+    }
+
+    void recordAutosave(long start, int players)
+    {
+        if (start != 0L) {
+            this.autosave.record(System.nanoTime() - start);
+            this.autosavedPlayers.add(players);
+        }
+    }
+
+    void recordModel(Class<?> classModel, long start)
+    {
+        if (start != 0L) {
+            Histogram histogram = this.modelConstruction.get(classModel);
+            if (histogram == null) {
+                histogram = this.modelConstruction.computeIfAbsent(classModel, k -> new Histogram());
+            }
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    void recordLookup(boolean hit)
+    {
+        if (this.enabled && (ThreadLocalRandom.current().nextInt() & (LOOKUP_SAMPLE - 1)) == 0) {
+            (hit ? this.lookupHits : this.lookupMisses).add(LOOKUP_SAMPLE);
+        }
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset()
+    {
+        this.register.reset();
+        this.registerEvent.reset();
+        this.unregisterEvent.reset();
+        this.autosave.reset();
+        this.autosavedPlayers.reset();
+        this.modelConstruction.clear();
+        this.lookupHits.reset();
+        this.lookupMisses.reset();
+    }
+
+    /**
+     * Permet de récupérer la durée d'enregistrement d'un joueur lors de sa connexion, évènements et models compris.
+     * @return l'histogramme des durées.
+     */
+    public Histogram getRegisterTime()
+    {
+        return this.register;
+    }
+
+    /**
+     * Permet de récupérer la durée de l'évènement {@link fr.neutronstars.playermodel.event.RegisterPlayerEvent}.
+     * @return l'histogramme des durées.
+     */
+    public Histogram getRegisterEventTime()
+    {
+        return this.registerEvent;
+    }
+
+    /**
+     * Permet de récupérer la durée de l'évènement {@link fr.neutronstars.playermodel.event.UnregisterPlayerEvent}.
+     * @return l'histogramme des durées.
+     */
+    public Histogram getUnregisterEventTime()
+    {
+        return this.unregisterEvent;
+    }
+
+    /**
+     * Permet de récupérer la durée de la sauvegarde automatique à chaque tick où elle a sauvegardé des joueurs.
+     * @return l'histogramme des durées.
+     */
+    public Histogram getAutosaveTime()
+    {
+        return this.autosave;
+    }
+
+    /**
+     * Permet de récupérer la durée de construction de chaque model.
+     * @return les histogrammes des durées, par class de model.
+     */
+    public Map<Class<?>, Histogram> getModelConstructionTime()
+    {
+        return Collections.unmodifiableMap(this.modelConstruction);
+    }
+
+    @Override
+    public int getRegisteredPlayers()
+    {
+        return this.players.getPlayerCount();
+    }
+
+    @Override
+    public int getPreparedPlayers()
+    {
+        return this.players.getPreparedPlayerCount();
+    }
+
+    @Override
+    public int getOfflinePlayers()
+    {
+        return this.players.getOfflinePlayerCount();
+    }
+
+    @Override
+    public long getLookupHits()
+    {
+        return this.lookupHits.sum();
+    }
+
+    @Override
+    public long getLookupMisses()
+    {
+        return this.lookupMisses.sum();
+    }
+
+    @Override
+    public long getRegisterCount()
+    {
+        return this.register.getCount();
+    }
+
+    @Override
+    public double getRegisterMeanMicros()
+    {
+        return this.register.getMean(TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getRegisterP99Micros()
+    {
+        return this.register.getPercentile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getRegisterMaxMicros()
+    {
+        return this.register.getMax(TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getRegisterEventP99Micros()
+    {
+        return this.registerEvent.getPercentile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getUnregisterEventP99Micros()
+    {
+        return this.unregisterEvent.getPercentile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getAutosavedPlayers()
+    {
+        return this.autosavedPlayers.sum();
+    }
+
+    @Override
+    public double getAutosaveP99Micros()
+    {
+        return this.autosave.getPercentile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getAutosaveBudgetMicros()
+    {
+        return this.players.autosave.getBudget() / 1000.0;
+    }
+
+    @Override
+    public Map<String, Double> getModelConstructionP99Micros()
+    {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<Class<?>, Histogram> entry : this.modelConstruction.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue().getPercentile(0.99, TimeUnit.MICROSECONDS));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Map;
+
+/**
+ * L'interface JMX des {@link PlayersMetrics}. Les durées sont en microsecondes, les nombres de recherches sont estimés
+ * sur un échantillon.
+ */
+public interface PlayersMetricsMXBean
+{
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+
+    int getRegisteredPlayers();
+
+    int getPreparedPlayers();
+
+    int getOfflinePlayers();
+
+    long getLookupHits();
+
+    long getLookupMisses();
+
+    long getRegisterCount();
+
+    double getRegisterMeanMicros();
+
+    double getRegisterP99Micros();
+
+    double getRegisterMaxMicros();
+
+    double getRegisterEventP99Micros();
+
+    double getUnregisterEventP99Micros();
+
+    long getAutosavedPlayers();
+
+    double getAutosaveP99Micros();
+
+    /**
+     * @return le budget actuel de la sauvegarde automatique à chaque tick.
+     */
+    double getAutosaveBudgetMicros();
+
+    /**
+     * @return le 99e percentile de la construction de chaque model, par nom de class.
+     */
+    Map<String, Double> getModelConstructionP99Micros();
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Une vue figée des joueurs enregistrés dans un gestionnaire {@link Players}, récupérée avec
+ * {@link Players#getSnapshot()}.
+ *
+ * La vue ne change jamais : elle peut être parcourue depuis n'importe quel thread, autant de fois que nécessaire, sans
+ * copie ni verrou. Son époque augmente à chaque fois qu'un joueur est ajouté ou supprimé du gestionnaire, et la vue
+ * n'est reconstruite que lorsqu'elle est demandée après un tel changement. Les models des joueurs ne sont pas figés.
+ */
+public final class PlayersSnapshot implements Iterable<Player>
+{
+    static final PlayersSnapshot EMPTY = new PlayersSnapshot(0L, new Player[0]);
+
+    private final long epoch;
+
+    /**
+     * Les joueurs de la vue, ce tableau ne doit jamais être modifié.
+     */
+    final Player[] players;
+
+    PlayersSnapshot(long epoch, Player[] players)
+    {
+        this.epoch = epoch;
+        this.players = players;
+    }
+
+    /**
+     * Permet de récupérer l'époque de la vue. Deux vues de même époque contiennent les mêmes joueurs.
+     * @return l'époque de la vue.
+     */
+    public long getEpoch()
+    {
+        return this.epoch;
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs de la vue.
+     * @return le nombre de joueurs.
+     */
+    public int size()
+    {
+        return this.players.length;
+    }
+
+    /**
+     * Permet de savoir si la vue ne contient aucun joueur.
+     * @return si la vue est vide.
+     */
+    public boolean isEmpty()
+    {
+        return this.players.length == 0;
+    }
+
+    /**
+     * Permet de récupérer un joueur de la vue.
+     * @param index la position du joueur, de 0 à {@link PlayersSnapshot#size()} exclu.
+     * @return le joueur.
+     */
+    public Player get(int index)
+    {
+        return this.players[index];
+    }
+
+    /**
+     * Permet de récupérer les joueurs de la vue sous la forme d'une liste non modifiable, sans copie.
+     * @return la liste des joueurs.
+     */
+    public List<Player> asList()
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.players));
+    }
+
+    /**
+     * Permet de parcourir les joueurs de la vue avec un {@link Stream}, qui peut être parallèle.
+     * @return le stream des joueurs.
+     */
+    public Stream<Player> stream()
+    {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    @Override
+    public Iterator<Player> iterator()
+    {
+        return new Iterator<Player>()
+        {
+            private int index;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < PlayersSnapshot.this.players.length;
+            }
+
+            @Override
+            public Player next()
+            {
+                if (this.index >= PlayersSnapshot.this.players.length) {
+                    throw new NoSuchElementException();
+                }
+                return PlayersSnapshot.this.players[this.index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Player> spliterator()
+    {
+        return Spliterators.spliterator(this.players, Spliterator.IMMUTABLE | Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PlayersSnapshot{epoch=" + this.epoch + ", size=" + this.players.length + "}";
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Permet de limiter le nombre de joueurs déconnectés gardés par le gestionnaire {@link Players} lorsque l'option
+ * {@link Players#hasUnregisterPlayer()} est désactivée.
+ *
+ * Les joueurs déconnectés sont oubliés du moins récemment utilisé au plus récemment utilisé lorsque le nombre maximum
+ * de joueurs ou le poids maximum est dépassé, ou lorsqu'ils n'ont pas été utilisés depuis trop longtemps.
+ * Un joueur connecté n'est jamais oublié.
+ */
+public class RetentionPolicy
+{
+    /**
+     * La raison pour laquelle un joueur déconnecté est oublié.
+     */
+    public enum Cause
+    {
+        /**
+         * Le nombre maximum de joueurs déconnectés est dépassé.
+         */
+        SIZE,
+        /**
+         * Le poids maximum des joueurs déconnectés est dépassé.
+         */
+        WEIGHT,
+        /**
+         * Le joueur n'a pas été utilisé depuis trop longtemps.
+         */
+        EXPIRED
+    }
+
+    /**
+     * Permet de créer une nouvelle politique sans aucune limite.
+     * @return une nouvelle politique.
+     */
+    public static RetentionPolicy create()
+    {
+        return new RetentionPolicy();
+    }
+
+    private long maxEntries = Long.MAX_VALUE;
+    private long maxWeight = Long.MAX_VALUE;
+    private ToLongFunction<Player> weigher = player -> 1L;
+    private long idleTimeout;
+    private BiConsumer<Player, Cause> removalListener = (player, cause) -> {};
+
+    private RetentionPolicy() {}
+
+    /**
+     * Permet de changer le nombre maximum de joueurs déconnectés gardés.
+     * @param maxEntries le nombre maximum de joueurs déconnectés.
+     * @return L'instance de cette politique.
+     */
+    public RetentionPolicy maxEntries(long maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * Permet de changer le poids maximum de tous les joueurs déconnectés gardés.
+     * @param maxWeight le poids maximum.
+     * @param weigher   permet d'estimer le poids d'un joueur, calculé une seule fois lors de sa déconnexion.
+     * @return L'instance de cette politique.
+     */
+    public RetentionPolicy maxWeight(long maxWeight, ToLongFunction<Player> weigher)
+    {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Permet de changer le temps au bout duquel un joueur déconnecté qui n'a pas été utilisé est oublié.
+     * @param timeout le temps, 0 pour ne jamais oublier un joueur déconnecté à cause du temps.
+     * @param unit    l'unité du temps.
+     * @return L'instance de cette politique.
+     */
+    public RetentionPolicy idleTimeout(long timeout, TimeUnit unit)
+    {
+        this.idleTimeout = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Permet de changer l'action appelée lorsqu'un joueur déconnecté est oublié, par exemple pour sauvegarder ses models.
+     * Elle est appelée par le thread principal, après que le joueur a été retiré du gestionnaire et que ses models ont
+     * été prévenus avec {@link PlayerModel#onUnload()}.
+     * @param removalListener l'action appelée avec le joueur oublié et la raison.
+     * @return L'instance de cette politique.
+     */
+    public RetentionPolicy onRemoval(BiConsumer<Player, Cause> removalListener)
+    {
+        this.removalListener = removalListener;
+        return this;
+    }
+
+    /**
+     * Permet de récupérer le nombre maximum de joueurs déconnectés gardés.
+     * @return le nombre maximum de joueurs déconnectés.
+     */
+    public long getMaxEntries()
+    {
+        return this.maxEntries;
+    }
+
+    /**
+     * Permet de récupérer le poids maximum de tous les joueurs déconnectés gardés.
+     * @return le poids maximum.
+     */
+    public long getMaxWeight()
+    {
+        return this.maxWeight;
+    }
+
+    /**
+     * Permet de récupérer le temps au bout duquel un joueur déconnecté qui n'a pas été utilisé est oublié.
+     * @param unit l'unité de temps souhaitée.
+     * @return le temps, 0 si les joueurs déconnectés ne sont jamais oubliés à cause du temps.
+     */
+    public long getIdleTimeout(TimeUnit unit)
+    {
+        return unit.convert(this.idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    long weigh(Player player)
+    {
+        return this.weigher.applyAsLong(player);
+    }
+
+    void removed(Player player, Cause cause)
+    {
+        this.removalListener.accept(player, cause);
+    }
+}
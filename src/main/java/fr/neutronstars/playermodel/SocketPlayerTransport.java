@@ -0,0 +1,529 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Un {@link PlayerTransport} par TCP entre des serveurs, par exemple sur l'interface locale pour tester plusieurs
+ * serveurs sur une seule machine.
+ *
+ * Chaque serveur écoute sur son adresse et connaît l'adresse des autres serveurs. Les données d'un joueur qui quitte
+ * le serveur sont envoyées à tous les autres, qui les gardent dans un {@link MemoryPlayerTransport} jusqu'à la
+ * connexion du joueur ou leur expiration.
+ *
+ * Les envois sont faits par un seul thread : il regroupe les données en attente, les compresse avec un
+ * {@link Deflater} lorsqu'elles dépassent {@link #COMPRESSION_THRESHOLD} octets, puis les écrit à la suite sur chaque
+ * connexion avant de la vider, sans attendre de réponse. Un serveur injoignable est ignoré et la connexion est
+ * retentée au prochain envoi, au plus une fois par seconde.
+ *
+ * Sans secret partagé, le transport n'écoute et n'envoie que sur l'interface locale. Avec un secret, chaque connexion
+ * commence par une authentification des deux serveurs : le serveur qui écoute envoie 16 octets aléatoires, l'autre
+ * répond avec ses propres 16 octets et leur HMAC-SHA256, puis le serveur qui écoute répond avec le sien. Les données
+ * ne sont pas chiffrées, elles peuvent être lues sur le réseau.
+ *
+ * Format d'un envoi : sa taille, l'identifiant du joueur, le numéro de l'envoi, un octet qui indique si les données
+ * sont compressées, la taille des données décompressées puis les données.
+ */
+public final class SocketPlayerTransport implements PlayerTransport
+{
+    /**
+     * La taille à partir de laquelle les données d'un joueur sont compressées.
+     */
+    public static final int COMPRESSION_THRESHOLD = 512;
+
+    private static final int MAX_FRAME = 64 << 20;
+
+    private static final int HEADER = 29;
+
+    private static final int NONCE = 16;
+
+    private static final String MAC = "HmacSHA256";
+
+    private static final int BATCH = 256;
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1L);
+
+    /**
+     * Permet d'ouvrir un transport sans authentification, qui écoute sur une adresse locale et envoie aux autres
+     * serveurs de la même machine.
+     * @param address l'adresse où écouter.
+     * @param peers   les adresses des autres serveurs.
+     * @param logger  le logger des erreurs de connexion.
+     * @return le transport.
+     * @throws IOException              si l'adresse n'a pas pu être utilisée.
+     * @throws IllegalArgumentException si une adresse n'est pas sur l'interface locale.
+     */
+    public static SocketPlayerTransport open(InetSocketAddress address, Collection<InetSocketAddress> peers, Logger logger)
+            throws IOException
+    {
+        SocketPlayerTransport.checkLoopback(address);
+        for (InetSocketAddress peer : peers) {
+            SocketPlayerTransport.checkLoopback(peer);
+        }
+        return SocketPlayerTransport.open(address, peers, null, logger);
+    }
+
+    /**
+     * Permet d'ouvrir un transport qui écoute sur une adresse et envoie aux autres serveurs, qui doivent tous connaître
+     * le même secret.
+     * @param address l'adresse où écouter.
+     * @param peers   les adresses des autres serveurs.
+     * @param secret  le secret partagé par les serveurs, d'au moins 16 octets.
+     * @param logger  le logger des erreurs de connexion.
+     * @return le transport.
+     * @throws IOException              si l'adresse n'a pas pu être utilisée.
+     * @throws IllegalArgumentException si le secret est trop court.
+     */
+    public static SocketPlayerTransport open(InetSocketAddress address, Collection<InetSocketAddress> peers, byte[] secret,
+                                             Logger logger) throws IOException
+    {
+        if (secret != null && secret.length < NONCE) {
+            throw new IllegalArgumentException("The secret must have at least " + NONCE + " bytes.");
+        }
+        if (secret == null) {
+            SocketPlayerTransport.checkLoopback(address);
+        }
+        ServerSocket server = new ServerSocket();
+        try {
+            server.bind(address);
+        } catch (IOException exception) {
+            server.close();
+            throw exception;
+        }
+        SocketPlayerTransport transport = new SocketPlayerTransport(
+                server, peers, secret != null ? secret.clone() : null, logger
+        );
+        transport.acceptor.start();
+        transport.sender.start();
+        return transport;
+    }
+
+    private final ServerSocket server;
+
+    private final List<Peer> peers = new ArrayList<>();
+
+    private final Logger logger;
+
+    /**
+     * Le secret partagé par les serveurs, null si le transport n'écoute que sur l'interface locale.
+     */
+    private final byte[] secret;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final MemoryPlayerTransport inbox = new MemoryPlayerTransport();
+
+    private final LinkedBlockingQueue<Outgoing> queue = new LinkedBlockingQueue<>();
+
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    private final Thread acceptor;
+
+    private final Thread sender;
+
+    private volatile boolean closed;
+
+    private SocketPlayerTransport(ServerSocket server, Collection<InetSocketAddress> peers, byte[] secret, Logger logger)
+    {
+        this.server = server;
+        this.logger = logger;
+        this.secret = secret;
+        for (InetSocketAddress peer : peers) {
+            this.peers.add(new Peer(peer));
+        }
+        this.acceptor = new Thread(this::accept, "PlayerTransport-Accept-" + server.getLocalPort());
+        this.acceptor.setDaemon(true);
+        this.sender = new Thread(this::sendLoop, "PlayerTransport-Send-" + server.getLocalPort());
+        this.sender.setDaemon(true);
+    }
+
+    /**
+     * Permet de récupérer l'adresse où le transport écoute.
+     * @return l'adresse du transport.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return (InetSocketAddress) this.server.getLocalSocketAddress();
+    }
+
+    @Override
+    public void send(UUID uuid, long sequence, ByteBuffer data) throws IOException
+    {
+        if (this.closed) {
+            throw new IOException("The transport is closed.");
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        this.queue.add(new Outgoing(uuid, sequence, bytes));
+    }
+
+    @Override
+    public Handoff receive(UUID uuid, long timeout, TimeUnit unit) throws IOException, InterruptedException
+    {
+        return this.inbox.receive(uuid, timeout, unit);
+    }
+
+    private void sendLoop()
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        List<Outgoing> batch = new ArrayList<>(BATCH);
+        try {
+            while (!this.closed || !this.queue.isEmpty()) {
+                Outgoing first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                this.queue.drainTo(batch, BATCH - 1);
+                List<byte[]> frames = new ArrayList<>(batch.size());
+                for (Outgoing outgoing : batch) {
+                    frames.add(SocketPlayerTransport.frame(outgoing, deflater));
+                }
+                batch.clear();
+                for (Peer peer : this.peers) {
+                    peer.write(frames);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+            for (Peer peer : this.peers) {
+                peer.disconnect();
+            }
+        }
+    }
+
+    private static byte[] frame(Outgoing outgoing, Deflater deflater)
+    {
+        byte[] payload = outgoing.data;
+        boolean compressed = false;
+        if (payload.length >= COMPRESSION_THRESHOLD) {
+            deflater.reset();
+            deflater.setInput(payload);
+            deflater.finish();
+            byte[] buffer = new byte[payload.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (deflater.finished()) {
+                payload = Arrays.copyOf(buffer, length);
+                compressed = true;
+            }
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + HEADER + payload.length);
+        frame.putInt(HEADER + payload.length);
+        frame.putLong(outgoing.uuid.getMostSignificantBits());
+        frame.putLong(outgoing.uuid.getLeastSignificantBits());
+        frame.putLong(outgoing.sequence);
+        frame.put((byte) (compressed ? 1 : 0));
+        frame.putInt(outgoing.data.length);
+        frame.put(payload);
+        return frame.array();
+    }
+
+    private void accept()
+    {
+        while (!this.closed) {
+            try {
+                Socket socket = this.server.accept();
+                this.connections.add(socket);
+                Thread reader = new Thread(() -> this.read(socket), "PlayerTransport-Read-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException exception) {
+                if (!this.closed) {
+                    this.logger.log(Level.WARNING, "Could not accept a player transport connection", exception);
+                }
+            }
+        }
+    }
+
+    private void read(Socket socket)
+    {
+        Inflater inflater = new Inflater();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            if (this.secret != null && !this.authenticate(socket, input)) {
+                this.logger.log(Level.WARNING, "Rejected a player transport connection from " + socket.getRemoteSocketAddress());
+                return;
+            }
+            while (true) {
+                int length = input.readInt();
+                if (length < HEADER || length > MAX_FRAME) {
+                    throw new IOException("Invalid frame length " + length + ".");
+                }
+                UUID uuid = new UUID(input.readLong(), input.readLong());
+                long sequence = input.readLong();
+                boolean compressed = input.readByte() != 0;
+                int rawLength = input.readInt();
+                if (rawLength < 0 || rawLength > MAX_FRAME) {
+                    throw new IOException("Invalid data length " + rawLength + ".");
+                }
+                byte[] payload = new byte[length - HEADER];
+                input.readFully(payload);
+                if (compressed) {
+                    byte[] raw = new byte[rawLength];
+                    inflater.reset();
+                    inflater.setInput(payload);
+                    if (inflater.inflate(raw) != rawLength || !inflater.finished()) {
+                        throw new IOException("Invalid compressed data for " + uuid + ".");
+                    }
+                    payload = raw;
+                }
+                this.inbox.send(uuid, sequence, ByteBuffer.wrap(payload));
+            }
+        } catch (EOFException | SocketException exception) {
+            // La connexion a été fermée par l'autre serveur ou par close().
+        } catch (IOException | DataFormatException exception) {
+            if (!this.closed) {
+                this.logger.log(Level.WARNING, "Invalid player transport data from " + socket.getRemoteSocketAddress(), exception);
+            }
+        } finally {
+            inflater.end();
+            this.connections.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Déjà fermée.
+            }
+        }
+    }
+
+    /**
+     * Authentifie un serveur qui se connecte, puis s'authentifie auprès de lui.
+     * @return si le serveur connaît le secret.
+     */
+    private boolean authenticate(Socket socket, DataInputStream input) throws IOException
+    {
+        byte[] nonce = new byte[NONCE];
+        this.random.nextBytes(nonce);
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        output.write(nonce);
+        output.flush();
+        socket.setSoTimeout((int) RETRY_DELAY);
+        byte[] peerNonce = new byte[NONCE];
+        byte[] peerMac = new byte[32];
+        input.readFully(peerNonce);
+        input.readFully(peerMac);
+        socket.setSoTimeout(0);
+        if (!MessageDigest.isEqual(peerMac, this.mac((byte) 1, nonce, peerNonce))) {
+            return false;
+        }
+        output.write(this.mac((byte) 2, nonce, peerNonce));
+        output.flush();
+        return true;
+    }
+
+    /**
+     * Calcule le HMAC d'une étape de l'authentification, avec les octets aléatoires des deux serveurs.
+     */
+    private byte[] mac(byte step, byte[] serverNonce, byte[] clientNonce) throws IOException
+    {
+        try {
+            Mac mac = Mac.getInstance(MAC);
+            mac.init(new SecretKeySpec(this.secret, MAC));
+            mac.update(step);
+            mac.update(serverNonce);
+            mac.update(clientNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException exception) {
+            throw new IOException("Could not authenticate the player transport connection.", exception);
+        }
+    }
+
+    private static void checkLoopback(InetSocketAddress address)
+    {
+        InetAddress host = address.getAddress();
+        if (host == null || !host.isLoopbackAddress()) {
+            throw new IllegalArgumentException(
+                    "The address " + address + " is not a loopback address, a secret is required to use it."
+            );
+        }
+    }
+
+    /**
+     * Ferme le transport après avoir envoyé les données en attente, au plus 5 secondes.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.server.close();
+        try {
+            this.sender.join(TimeUnit.SECONDS.toMillis(5L));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        this.sender.interrupt();
+        for (Socket socket : this.connections) {
+            socket.close();
+        }
+        this.inbox.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SocketPlayerTransport{" + this.server.getLocalSocketAddress() + ", peers=" + this.peers.size() + "}";
+    }
+
+    private static final class Outgoing
+    {
+        private final UUID uuid;
+        private final long sequence;
+        private final byte[] data;
+
+        private Outgoing(UUID uuid, long sequence, byte[] data)
+        {
+            this.uuid = uuid;
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Un autre serveur, utilisé uniquement par le thread d'envoi.
+     */
+    private final class Peer
+    {
+        private final InetSocketAddress address;
+        private Socket socket;
+        private DataOutputStream output;
+        private long retryAt;
+
+        private Peer(InetSocketAddress address)
+        {
+            this.address = address;
+        }
+
+        private void write(List<byte[]> frames)
+        {
+            if (this.socket == null && !this.connect()) {
+                return;
+            }
+            try {
+                for (byte[] frame : frames) {
+                    this.output.write(frame);
+                }
+                this.output.flush();
+            } catch (IOException exception) {
+                SocketPlayerTransport.this.logger.log(Level.WARNING, "Could not send players to " + this.address, exception);
+                this.disconnect();
+            }
+        }
+
+        private boolean connect()
+        {
+            long now = System.currentTimeMillis();
+            if (now < this.retryAt) {
+                return false;
+            }
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(this.address, (int) RETRY_DELAY);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                if (SocketPlayerTransport.this.secret != null) {
+                    this.authenticate(socket, output);
+                }
+                this.socket = socket;
+                this.output = output;
+                return true;
+            } catch (IOException exception) {
+                this.retryAt = now + RETRY_DELAY;
+                SocketPlayerTransport.this.logger.log(Level.FINE, "Could not connect to " + this.address, exception);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // La connexion n'a pas abouti.
+                }
+                return false;
+            }
+        }
+
+        /**
+         * S'authentifie auprès du serveur qui écoute, puis vérifie qu'il connaît aussi le secret.
+         */
+        private void authenticate(Socket socket, DataOutputStream output) throws IOException
+        {
+            socket.setSoTimeout((int) RETRY_DELAY);
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            byte[] serverNonce = new byte[NONCE];
+            input.readFully(serverNonce);
+            byte[] nonce = new byte[NONCE];
+            SocketPlayerTransport.this.random.nextBytes(nonce);
+            output.write(nonce);
+            output.write(SocketPlayerTransport.this.mac((byte) 1, serverNonce, nonce));
+            output.flush();
+            byte[] serverMac = new byte[32];
+            input.readFully(serverMac);
+            if (!MessageDigest.isEqual(serverMac, SocketPlayerTransport.this.mac((byte) 2, serverNonce, nonce))) {
+                SocketPlayerTransport.this.logger.log(Level.WARNING, "The server " + this.address + " does not know the secret");
+                throw new IOException("The server " + this.address + " does not know the secret.");
+            }
+            socket.setSoTimeout(0);
+        }
+
+        private void disconnect()
+        {
+            if (this.socket != null) {
+                try {
+                    this.socket.close();
+                } catch (IOException ignored) {
+                    // Déjà fermée.
+                }
+                this.socket = null;
+                this.output = null;
+            }
+        }
+    }
+}
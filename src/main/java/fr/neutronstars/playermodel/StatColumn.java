@@ -0,0 +1,245 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Une colonne de valeurs numériques d'une {@link StatTable}, avec une valeur par joueur. Les agrégations ne comptent
+ * que les joueurs dont un model utilise la colonne.
+ *
+ * Les écritures ne sont pas atomiques : une colonne est faite pour être modifiée depuis le thread principal et lue
+ * depuis n'importe quel thread. Pour des modifications concurrentes, voir {@link CounterPlayerModel}.
+ */
+public class StatColumn
+{
+    private final StatTable table;
+
+    private final String name;
+
+    /**
+     * Les valeurs de chaque ligne, par bloc.
+     */
+    private volatile long[][] chunks;
+
+    /**
+     * Les lignes qui ont une valeur dans cette colonne, un bit par ligne, par bloc. Seules ces lignes sont comptées
+     * par les agrégations.
+     */
+    private volatile AtomicLongArray[] present;
+
+    StatColumn(StatTable table, String name, int chunks)
+    {
+        this.table = table;
+        this.name = name;
+        this.chunks = new long[0][];
+        this.present = new AtomicLongArray[0];
+        this.grow(chunks);
+    }
+
+    /**
+     * Permet de récupérer le nom de la colonne.
+     * @return le nom de la colonne.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    synchronized void grow(int count)
+    {
+        long[][] chunks = this.chunks;
+        if (count <= chunks.length) {
+            return;
+        }
+        long[][] copy = Arrays.copyOf(chunks, count);
+        AtomicLongArray[] present = Arrays.copyOf(this.present, count);
+        for (int i = chunks.length; i < count; i++) {
+            copy[i] = new long[StatTable.CHUNK_SIZE];
+            present[i] = new AtomicLongArray(StatTable.CHUNK_SIZE >>> 6);
+        }
+        this.present = present;
+        this.chunks = copy;
+    }
+
+    /**
+     * Permet d'ajouter une ligne aux agrégations de cette colonne.
+     * @param row la ligne.
+     */
+    void attach(int row)
+    {
+        long bit = 1L << row;
+        AtomicLongArray present = this.present[row >>> StatTable.CHUNK_SHIFT];
+        int word = (row & StatTable.CHUNK_MASK) >>> 6;
+        if ((present.get(word) & bit) == 0L) {
+            present.accumulateAndGet(word, bit, (bits, added) -> bits | added);
+        }
+    }
+
+    /**
+     * Permet de retirer une ligne des agrégations de cette colonne, sa valeur est remise à zéro.
+     * @param row la ligne.
+     */
+    void detach(int row)
+    {
+        AtomicLongArray present = this.present[row >>> StatTable.CHUNK_SHIFT];
+        present.accumulateAndGet((row & StatTable.CHUNK_MASK) >>> 6, ~(1L << row), (bits, kept) -> bits & kept);
+        this.set(row, 0L);
+    }
+
+    private static boolean isPresent(AtomicLongArray present, int index)
+    {
+        return (present.get(index >>> 6) & (1L << index)) != 0L;
+    }
+
+    long get(int row)
+    {
+        return this.chunks[row >>> StatTable.CHUNK_SHIFT][row & StatTable.CHUNK_MASK];
+    }
+
+    void set(int row, long value)
+    {
+        this.chunks[row >>> StatTable.CHUNK_SHIFT][row & StatTable.CHUNK_MASK] = value;
+    }
+
+    void add(int row, long delta)
+    {
+        this.chunks[row >>> StatTable.CHUNK_SHIFT][row & StatTable.CHUNK_MASK] += delta;
+    }
+
+    /**
+     * Permet de récupérer la somme de la colonne pour tous les joueurs. Les lignes sans valeur valent zéro.
+     * @return la somme de la colonne.
+     */
+    public long sum()
+    {
+        long sum = 0L;
+        for (long[] chunk : this.chunks) {
+            for (long value : chunk) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Permet de récupérer le nombre, la somme, le minimum, le maximum et la moyenne de la colonne pour tous les joueurs
+     * en un seul passage.
+     * @param parallel si les blocs doivent être parcourus en parallèle.
+     * @return les statistiques de la colonne.
+     */
+    public LongSummaryStatistics summary(boolean parallel)
+    {
+        long[][] chunks = this.chunks;
+        AtomicLongArray[] present = this.present;
+        IntStream indexes = IntStream.range(0, Math.min(chunks.length, present.length));
+        return (parallel ? indexes.parallel() : indexes)
+                .mapToObj(c -> StatColumn.summary(chunks[c], present[c]))
+                .collect(LongSummaryStatistics::new, LongSummaryStatistics::combine, LongSummaryStatistics::combine);
+    }
+
+    private static LongSummaryStatistics summary(long[] values, AtomicLongArray present)
+    {
+        LongSummaryStatistics statistics = new LongSummaryStatistics();
+        for (int i = 0; i < values.length; i++) {
+            if (StatColumn.isPresent(present, i)) {
+                statistics.accept(values[i]);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Permet de compter les joueurs par tranche de valeurs.
+     * @param bounds   les bornes des tranches triées, la tranche i contient les valeurs inférieures à bounds[i] et
+     *                 supérieures ou égales à bounds[i - 1]. La dernière tranche contient les valeurs restantes.
+     * @param parallel si les blocs doivent être parcourus en parallèle.
+     * @return le nombre de joueurs de chaque tranche, de taille bounds.length + 1.
+     */
+    public long[] histogram(long[] bounds, boolean parallel)
+    {
+        long[][] chunks = this.chunks;
+        AtomicLongArray[] present = this.present;
+        IntStream indexes = IntStream.range(0, Math.min(chunks.length, present.length));
+        return (parallel ? indexes.parallel() : indexes)
+                .mapToObj(c -> StatColumn.histogram(chunks[c], present[c], bounds))
+                .reduce(new long[bounds.length + 1], StatColumn::merge);
+    }
+
+    private static long[] histogram(long[] values, AtomicLongArray present, long[] bounds)
+    {
+        long[] counts = new long[bounds.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            if (StatColumn.isPresent(present, i)) {
+                int bucket = Arrays.binarySearch(bounds, values[i]);
+                counts[bucket >= 0 ? bucket + 1 : -bucket - 1]++;
+            }
+        }
+        return counts;
+    }
+
+    private static long[] merge(long[] left, long[] right)
+    {
+        long[] merged = new long[left.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = left[i] + right[i];
+        }
+        return merged;
+    }
+
+    /**
+     * Permet de récupérer les joueurs dont la valeur de la colonne correspond à un filtre.
+     * @param filter   le filtre.
+     * @param parallel si les blocs doivent être parcourus en parallèle.
+     * @return les joueurs trouvés.
+     */
+    public List<Player> filter(LongPredicate filter, boolean parallel)
+    {
+        long[][] chunks = this.chunks;
+        AtomicLongArray[] present = this.present;
+        Player[][] rows = this.table.rows();
+        IntStream indexes = IntStream.range(0, Math.min(chunks.length, Math.min(present.length, rows.length)));
+        return (parallel ? indexes.parallel() : indexes)
+                .mapToObj(c -> StatColumn.filter(chunks[c], present[c], rows[c], filter))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Player> filter(long[] values, AtomicLongArray present, Player[] players, LongPredicate filter)
+    {
+        List<Player> found = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            Player player = players[i];
+            if (player != null && StatColumn.isPresent(present, i) && filter.test(values[i])) {
+                found.add(player);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StatColumn{" + this.name + "}";
+    }
+}
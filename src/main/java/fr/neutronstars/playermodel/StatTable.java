@@ -0,0 +1,152 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Le stockage en colonnes des statistiques numériques des joueurs d'un gestionnaire {@link Players}.
+ *
+ * Chaque {@link Player} qui utilise une colonne reçoit une ligne, et chaque {@link StatColumn} garde les valeurs de
+ * toutes les lignes dans des tableaux de primitives contigus. Les agrégations sur tous les joueurs (somme, minimum,
+ * maximum, histogramme, filtre) sont donc de simples boucles sur des tableaux, sans passer par les models.
+ *
+ * Les tableaux sont découpés en blocs de taille fixe qui ne sont jamais copiés, une écriture n'est donc jamais perdue
+ * lorsque la table s'agrandit.
+ */
+public class StatTable
+{
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << StatTable.CHUNK_SHIFT;
+    static final int CHUNK_MASK = StatTable.CHUNK_SIZE - 1;
+
+    private final Map<String, StatColumn> columns = new ConcurrentHashMap<>();
+
+    private final BitSet usedRows = new BitSet();
+
+    /**
+     * Les joueurs de chaque ligne, par bloc. Une ligne vide contient null.
+     */
+    private volatile Player[][] rows = new Player[0][];
+
+    StatTable() {}
+
+    /**
+     * Permet de récupérer la colonne d'un {@link ColumnPlayerModel}, elle est créée si elle n'existe pas. Son nom est
+     * préfixé par la class du model, deux models peuvent donc utiliser le même nom sans partager leurs valeurs.
+     * @param classModel la class du model.
+     * @param name       le nom de la colonne dans le model.
+     * @return la colonne.
+     */
+    public StatColumn column(Class<? extends ColumnPlayerModel> classModel, String name)
+    {
+        return this.column(classModel.getName() + '#' + name);
+    }
+
+    /**
+     * Permet de récupérer une colonne, elle est créée si elle n'existe pas.
+     * @param name le nom de la colonne.
+     * @return la colonne.
+     */
+    public StatColumn column(String name)
+    {
+        StatColumn column = this.columns.get(name);
+        if (column != null) {
+            return column;
+        }
+        synchronized (this) {
+            return this.columns.computeIfAbsent(name, n -> new StatColumn(this, n, this.rows.length));
+        }
+    }
+
+    /**
+     * Permet de récupérer toutes les colonnes de la table.
+     * @return les colonnes de la table.
+     */
+    public Collection<StatColumn> getColumns()
+    {
+        return Collections.unmodifiableCollection(this.columns.values());
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs qui possèdent une ligne.
+     * @return le nombre de joueurs.
+     */
+    public synchronized int size()
+    {
+        return this.usedRows.cardinality();
+    }
+
+    /**
+     * Permet de récupérer le joueur d'une ligne.
+     * @param row la ligne.
+     * @return le joueur ou null si la ligne est vide.
+     */
+    Player player(int row)
+    {
+        Player[][] rows = this.rows;
+        int chunk = row >>> StatTable.CHUNK_SHIFT;
+        return chunk < rows.length ? rows[chunk][row & StatTable.CHUNK_MASK] : null;
+    }
+
+    /**
+     * Permet de récupérer les joueurs des lignes, par bloc.
+     * @return les joueurs des lignes.
+     */
+    Player[][] rows()
+    {
+        return this.rows;
+    }
+
+    /**
+     * Permet de réserver une ligne pour un joueur.
+     * @param player le joueur.
+     * @return la ligne réservée.
+     */
+    synchronized int allocate(Player player)
+    {
+        int row = this.usedRows.nextClearBit(0);
+        this.usedRows.set(row);
+        int chunk = row >>> StatTable.CHUNK_SHIFT;
+        if (chunk >= this.rows.length) {
+            Player[][] rows = Arrays.copyOf(this.rows, chunk + 1);
+            rows[chunk] = new Player[StatTable.CHUNK_SIZE];
+            for (StatColumn column : this.columns.values()) {
+                column.grow(rows.length);
+            }
+            this.rows = rows;
+        }
+        this.rows[chunk][row & StatTable.CHUNK_MASK] = player;
+        return row;
+    }
+
+    /**
+     * Permet de libérer la ligne d'un joueur, ses valeurs sont remises à zéro.
+     * @param row la ligne.
+     */
+    synchronized void release(int row)
+    {
+        if (!this.usedRows.get(row)) {
+            return;
+        }
+        this.rows[row >>> StatTable.CHUNK_SHIFT][row & StatTable.CHUNK_MASK] = null;
+        for (StatColumn column : this.columns.values()) {
+            column.detach(row);
+        }
+        this.usedRows.clear(row);
+    }
+}
@@ -16,6 +16,7 @@
 package fr.neutronstars.playermodel.event;
 
 import fr.neutronstars.playermodel.Player;
+import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 
 import java.util.Optional;
@@ -24,8 +25,13 @@ public abstract class PlayerModelEvent extends Event
 {
     private Player player;
 
+    /**
+     * L'évènement est asynchrone lorsqu'il est lancé en dehors du thread principal du serveur.
+     * @param player le joueur concerné par l'évènement.
+     */
     protected PlayerModelEvent(Player player)
     {
+        super(!Bukkit.isPrimaryThread());
         this.player = player;
     }
 
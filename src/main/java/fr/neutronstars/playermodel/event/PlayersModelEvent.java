@@ -0,0 +1,93 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.event;
+
+import fr.neutronstars.playermodel.Player;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+
+import java.util.*;
+
+/**
+ * Un évènement qui concerne plusieurs {@link Player} à la fois. Chaque joueur peut être annulé séparément.
+ */
+public abstract class PlayersModelEvent extends Event
+{
+    private final List<Player> players;
+
+    private final Set<Player> cancelled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * L'évènement est asynchrone lorsqu'il est lancé en dehors du thread principal du serveur.
+     * @param players les joueurs concernés par l'évènement.
+     */
+    protected PlayersModelEvent(List<Player> players)
+    {
+        super(!Bukkit.isPrimaryThread());
+        this.players = Collections.unmodifiableList(players);
+    }
+
+    /**
+     * Permet de récupérer tous les joueurs concernés par l'évènement, annulés ou non.
+     * @return les joueurs concernés par l'évènement.
+     */
+    public List<Player> getPlayers()
+    {
+        return this.players;
+    }
+
+    /**
+     * Permet de récupérer les joueurs qui n'ont pas été annulés.
+     * @return les joueurs qui n'ont pas été annulés.
+     */
+    public List<Player> getAcceptedPlayers()
+    {
+        if (this.cancelled.isEmpty()) {
+            return this.players;
+        }
+        List<Player> accepted = new ArrayList<>(this.players.size() - this.cancelled.size());
+        for (Player player : this.players) {
+            if (!this.cancelled.contains(player)) {
+                accepted.add(player);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Permet de savoir si un joueur a été annulé.
+     * @param player le joueur.
+     * @return si le joueur a été annulé.
+     */
+    public boolean isCancelled(Player player)
+    {
+        return this.cancelled.contains(player);
+    }
+
+    /**
+     * Permet d'annuler un joueur de l'évènement.
+     * @param player    le joueur.
+     * @param cancelled si le joueur doit-être annulé.
+     */
+    public void setCancelled(Player player, boolean cancelled)
+    {
+        if (cancelled) {
+            this.cancelled.add(player);
+        } else {
+            this.cancelled.remove(player);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.event;
+
+import fr.neutronstars.playermodel.Player;
+import org.bukkit.event.HandlerList;
+
+import java.util.List;
+
+/**
+ * Cette évènement est appelé une seule fois lorsque plusieurs {@link Player} sont enregistrés en même temps.
+ * Chaque joueur peut être annulé avec {@link PlayersModelEvent#setCancelled(Player, boolean)}.
+ */
+public class RegisterPlayersEvent extends PlayersModelEvent
+{
+    private static final HandlerList handlers = new HandlerList();
+
+    public RegisterPlayersEvent(List<Player> players)
+    {
+        super(players);
+    }
+
+    @Override
+    public HandlerList getHandlers()
+    {
+        return RegisterPlayersEvent.getHandlerList();
+    }
+
+    public static HandlerList getHandlerList()
+    {
+        return RegisterPlayersEvent.handlers;
+    }
+}
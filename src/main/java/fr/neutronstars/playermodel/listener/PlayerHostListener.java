@@ -19,7 +19,9 @@ import fr.neutronstars.playermodel.Players;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
@@ -41,6 +43,31 @@ public class PlayerHostListener implements Listener
         this.players = players;
     }
 
+    /**
+     * Ecoute la pré-connexion des joueurs acceptés et les prépare dans le gestionnaire {@link Players}
+     * si l'option {@link Players#hasPreparePlayer()} est activée.
+     * @param event l'objet appelé par {@link org.bukkit.Bukkit} lors de la pré-connexion d'un joueur
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPreLogin(AsyncPlayerPreLoginEvent event)
+    {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            this.players.prepare(event.getUniqueId(), event.getName());
+        }
+    }
+
+    /**
+     * Ecoute les connexions refusées et oublie le joueur préparé dans le gestionnaire {@link Players}
+     * @param event l'objet appelé par {@link org.bukkit.Bukkit} lors de la tentative de connexion d'un joueur
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onLogin(PlayerLoginEvent event)
+    {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            this.players.discard(event.getPlayer().getUniqueId());
+        }
+    }
+
     /**
      * Ecoute la connexion des joueurs et les ajoutes dans le gestionnaire {@link Players}
      * @param event l'objet appelé par {@link org.bukkit.Bukkit} lors de la connexion d'un joueur
@@ -48,7 +75,7 @@ public class PlayerHostListener implements Listener
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOW)
     private void onJoin(PlayerJoinEvent event)
     {
-        this.players.get(event.getPlayer());
+        this.players.join(event.getPlayer());
     }
 
     /**
@@ -31,16 +31,18 @@ public class BlockListener implements Listener
     @EventHandler
     private void onBreak(BlockBreakEvent event)
     {
-        this.test.getPlayers().get(event.getPlayer())
-                .flatMap(player -> player.getModel(CustomPlayerModel.class))
-                .ifPresent(m -> m.addBlockBreak(1));
+        CustomPlayerModel model = this.test.getPlayers().getModelOrNull(event.getPlayer(), CustomPlayerModel.class);
+        if (model != null) {
+            model.addBlockBreak(1);
+        }
     }
 
     @EventHandler
     private void onPlace(BlockPlaceEvent event)
     {
-        this.test.getPlayers().get(event.getPlayer())
-                .flatMap(player -> player.getModel(CustomPlayerModel.class))
-                .ifPresent(m -> m.addBlockPlace(1));
+        CustomPlayerModel model = this.test.getPlayers().getModelOrNull(event.getPlayer(), CustomPlayerModel.class);
+        if (model != null) {
+            model.addBlockPlace(1);
+        }
     }
 }
@@ -35,16 +35,19 @@ public class CustomPlayerModel extends PlayerModel
     public void setBlockBreak(int blockBreak)
     {
         this.blockBreak = blockBreak;
+        this.changed();
     }
 
     public void addBlockBreak(int blockBreak)
     {
         this.blockBreak += blockBreak;
+        this.changed();
     }
 
     public void removeBlockBreak(int blockBreak)
     {
         this.blockBreak -= blockBreak;
+        this.changed();
     }
 
     public int getBlockPlace()
@@ -29,4 +29,10 @@ public class TestPlugin extends JavaPlugin
                 .load();
         Bukkit.getPluginManager().registerEvents(new BlockListener(this.test), this);
     }
+
+    @Override
+    public void onDisable()
+    {
+        this.test.getPlayers().unload();
+    }
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Vérifie qu'un {@link ColumnPlayerModel} ne réserve une ligne de la {@link StatTable} que pour un joueur enregistré,
+ * et qu'un model retiré ne compte plus dans les agrégations.
+ */
+public class ColumnPlayerModelTest extends PlayersTestCase
+{
+    public static class StatModel extends ColumnPlayerModel
+    {
+        private final StatColumn kills = this.column("kills");
+
+        public StatModel(Player player)
+        {
+            super(player);
+        }
+
+        public long getKills()
+        {
+            return this.get(this.kills);
+        }
+
+        public void addKills(long kills)
+        {
+            this.add(this.kills, kills);
+        }
+    }
+
+    private StatColumn kills;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(StatModel.class).setPreparePlayer(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.kills = this.players.getStats().column(StatModel.class, "kills");
+    }
+
+    @Test
+    public void preparedPlayerHasNoRow()
+    {
+        UUID uuid = UUID.randomUUID();
+        this.players.prepare(uuid, "prepared");
+        Player prepared = this.players.preparedPlayers.get(uuid).player;
+        StatModel model = prepared.getModelOrNull(StatModel.class);
+        model.addKills(5L);
+        assertEquals(5L, model.getKills());
+        assertEquals(0, this.players.getStats().size());
+        assertEquals(0L, this.kills.sum());
+
+        Player registered = this.players.get(this.server.createPlayer(uuid, "prepared")).get();
+        assertSame(prepared, registered);
+        assertEquals(1, this.players.getStats().size());
+        assertEquals(5L, this.kills.sum());
+        model.addKills(2L);
+        assertEquals(7L, model.getKills());
+        assertEquals(7L, this.kills.sum());
+    }
+
+    @Test
+    public void discardedPlayerNeverGetsARow()
+    {
+        UUID uuid = UUID.randomUUID();
+        this.players.prepare(uuid, "discarded");
+        StatModel model = this.players.preparedPlayers.get(uuid).player.getModelOrNull(StatModel.class);
+        model.addKills(3L);
+        this.players.discard(uuid);
+
+        assertEquals(0L, model.getKills());
+        model.addKills(1L);
+        assertEquals(0L, model.getKills());
+        assertEquals(0, this.players.getStats().size());
+        assertEquals(0L, this.kills.sum());
+    }
+
+    @Test
+    public void staleModelDoesNotAllocate()
+    {
+        org.bukkit.entity.Player bukkitPlayer = this.server.createPlayer(UUID.randomUUID(), "stale");
+        this.server.connect(bukkitPlayer);
+        StatModel model = this.players.get(bukkitPlayer).get().getModelOrNull(StatModel.class);
+        model.addKills(4L);
+        assertEquals(4L, this.kills.sum());
+
+        this.server.disconnect(bukkitPlayer);
+        this.players.unregisterParked();
+        assertFalse(this.players.get(bukkitPlayer.getUniqueId()).isPresent());
+        assertEquals(0, this.players.getStats().size());
+        assertEquals(0L, model.getKills());
+        model.addKills(1L);
+        assertEquals(0, this.players.getStats().size());
+        assertEquals(0L, this.kills.sum());
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Vérifie que les compteurs d'un {@link CounterPlayerModel} et leurs totaux ne perdent aucune modification, y compris
+ * lorsque le model est retiré pendant que d'autres threads le modifient.
+ */
+public class CounterPlayerModelTest extends PlayersTestCase
+{
+    private static final int THREADS = 8;
+
+    public static class KillModel extends CounterPlayerModel
+    {
+        public static final Counter KILLS = Counter.declare(KillModel.class, "kills");
+
+        public KillModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(KillModel.class).setPreparePlayer(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws Exception
+    {
+        KillModel model = this.players.get(this.server.createPlayer(UUID.randomUUID(), "killer")).get()
+                .getModelOrNull(KillModel.class);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(this.executor.submit(() -> {
+                start.await();
+                for (int n = 0; n < 10_000; n++) {
+                    model.increment(KillModel.KILLS);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30L, TimeUnit.SECONDS);
+        }
+        assertEquals(THREADS * 10_000L, model.get(KillModel.KILLS));
+        assertEquals(THREADS * 10_000L, this.players.getTotal(KillModel.KILLS));
+    }
+
+    @Test
+    public void valuesBeforeRegistrationAreAddedToTotals()
+    {
+        UUID uuid = UUID.randomUUID();
+        this.players.prepare(uuid, "prepared");
+        KillModel model = this.players.preparedPlayers.get(uuid).player.getModelOrNull(KillModel.class);
+        model.set(KillModel.KILLS, 7L);
+        assertEquals(0L, this.players.getTotal(KillModel.KILLS));
+
+        this.players.get(this.server.createPlayer(uuid, "prepared"));
+        assertEquals(7L, this.players.getTotal(KillModel.KILLS));
+        model.add(KillModel.KILLS, 3L);
+        assertEquals(10L, this.players.getTotal(KillModel.KILLS));
+    }
+
+    @Test
+    public void retiredModelLeavesTotalsExact() throws Exception
+    {
+        for (int round = 0; round < 50; round++) {
+            org.bukkit.entity.Player bukkitPlayer = this.server.createPlayer(UUID.randomUUID(), "player" + round);
+            this.server.connect(bukkitPlayer);
+            KillModel model = this.players.get(bukkitPlayer).get().getModelOrNull(KillModel.class);
+            AtomicBoolean running = new AtomicBoolean(true);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(this.executor.submit(() -> {
+                    while (running.get()) {
+                        model.increment(KillModel.KILLS);
+                    }
+                }));
+            }
+            Thread.sleep(1L);
+            this.server.disconnect(bukkitPlayer);
+            this.players.unregisterParked();
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(30L, TimeUnit.SECONDS);
+            }
+            assertEquals("round " + round, 0L, this.players.getTotal(KillModel.KILLS));
+        }
+    }
+}
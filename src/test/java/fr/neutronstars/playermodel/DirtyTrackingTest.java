@@ -0,0 +1,313 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que {@link Players#save(Player)} n'écrit que les models et les champs modifiés, et que les données complètes
+ * suivies des modifications redonnent le même joueur.
+ */
+public class DirtyTrackingTest extends PlayersTestCase
+{
+    public static class DirtyModel extends PlayerModel
+    {
+        private static final long COINS = PlayerModel.fieldMask(DirtyModel.class, "coins");
+
+        private long coins;
+        private int level;
+        private String note;
+
+        public DirtyModel(Player player)
+        {
+            super(player);
+        }
+
+        public void setCoins(long coins)
+        {
+            this.coins = coins;
+            this.markDirty(COINS);
+        }
+
+        public void setNote(String note)
+        {
+            this.note = note;
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Un stockage en mémoire qui garde l'ordre des écritures.
+     */
+    private static final class RecordingStorage implements PlayerStorage
+    {
+        private final Map<UUID, List<ByteBuffer>> records = new HashMap<>();
+        private final List<String> operations = new ArrayList<>();
+        private int flushes;
+
+        @Override
+        public synchronized List<ByteBuffer> load(UUID uuid)
+        {
+            List<ByteBuffer> data = new ArrayList<>();
+            for (ByteBuffer record : this.records.getOrDefault(uuid, Collections.emptyList())) {
+                data.add(record.duplicate());
+            }
+            return data;
+        }
+
+        @Override
+        public synchronized void save(UUID uuid, ByteBuffer data)
+        {
+            this.records.put(uuid, new ArrayList<>(Collections.singletonList(DirtyTrackingTest.copy(data))));
+            this.operations.add("save");
+        }
+
+        @Override
+        public synchronized void append(UUID uuid, ByteBuffer delta)
+        {
+            this.records.get(uuid).add(DirtyTrackingTest.copy(delta));
+            this.operations.add("append");
+        }
+
+        @Override
+        public synchronized void delete(UUID uuid)
+        {
+            this.records.remove(uuid);
+        }
+
+        @Override
+        public synchronized void flush()
+        {
+            this.flushes++;
+            this.notifyAll();
+        }
+
+        @Override
+        public void close() {}
+
+        private synchronized void awaitFlush(int flushes) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (this.flushes < flushes) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    throw new AssertionError("The storage was never flushed.");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer data)
+    {
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data.duplicate()).flip();
+        return copy;
+    }
+
+    private final RecordingStorage storage = new RecordingStorage();
+
+    private int flushes;
+
+    private Player player;
+
+    private DirtyModel model;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(DirtyModel.class).setStorage(this.storage);
+    }
+
+    @Before
+    public void setUp() throws InterruptedException
+    {
+        this.player = this.players.get(this.server.createPlayer(UUID.randomUUID(), "dirty")).orElseThrow(AssertionError::new);
+        this.model = this.player.getModelOrNull(DirtyModel.class);
+        // Attend la fin du chargement du joueur, qui n'a aucune donnée.
+        this.players.flushStorage();
+        this.storage.awaitFlush(++this.flushes);
+    }
+
+    /**
+     * Sauvegarde le joueur et attend que le thread du stockage ait tout écrit.
+     */
+    private List<String> save() throws InterruptedException
+    {
+        this.players.save(this.player);
+        this.players.flushStorage();
+        this.storage.awaitFlush(++this.flushes);
+        synchronized (this.storage) {
+            return new ArrayList<>(this.storage.operations);
+        }
+    }
+
+    private DirtyModel reload() throws ModelException
+    {
+        Players<Plugin> reader = Players.create(this.server.getPlugin()).registerModel(DirtyModel.class);
+        Player copy = reader.newPlayer(this.player.getUniqueId(), "copy");
+        for (ByteBuffer record : this.storage.load(this.player.getUniqueId())) {
+            PlayerCodec.read(copy, record);
+        }
+        return copy.getModelOrNull(DirtyModel.class);
+    }
+
+    @Test
+    public void cleanModelsAreNotCaptured()
+    {
+        this.model.takeDirty();
+        assertNull(PlayerCodec.captureDirty(this.player));
+        this.model.setCoins(3L);
+        assertNotNull(PlayerCodec.captureDirty(this.player));
+        assertNull(PlayerCodec.captureDirty(this.player));
+    }
+
+    @Test
+    public void fieldNamesAndMasksMarkTheSameField()
+    {
+        this.model.takeDirty();
+        this.model.markDirty("coins");
+        assertEquals(DirtyModel.COINS, this.model.takeDirty());
+        this.model.markDirty("unknown");
+        assertEquals(PlayerModel.ALL_DIRTY, this.model.takeDirty());
+        assertEquals(PlayerModel.ALL_DIRTY, PlayerModel.fieldMask(DirtyModel.class, "unknown"));
+    }
+
+    @Test
+    public void onlyChangedFieldsAreAppended() throws Exception
+    {
+        this.model.level = 4;
+        this.model.setCoins(10L);
+        assertEquals(Collections.singletonList("save"), this.save());
+
+        // Un save sans modification n'écrit rien.
+        assertEquals(1, this.save().size());
+
+        this.model.level = 5;
+        this.model.setCoins(20L);
+        assertEquals(2, this.save().size());
+        assertEquals("append", this.storage.operations.get(1));
+        List<ByteBuffer> records = this.storage.load(this.player.getUniqueId());
+        assertTrue(records.get(1).remaining() < records.get(0).remaining());
+
+        // level n'a pas été marqué : seule la valeur de la sauvegarde complète est relue.
+        DirtyModel copy = this.reload();
+        assertEquals(20L, copy.coins);
+        assertEquals(4, copy.level);
+    }
+
+    @Test
+    public void deltasRebuildTheSamePlayer() throws Exception
+    {
+        this.save();
+        for (int i = 0; i < 20; i++) {
+            if (i % 3 == 0) {
+                this.model.setNote("note " + i);
+            }
+            this.model.setCoins(i * 100L);
+            this.save();
+        }
+        DirtyModel copy = this.reload();
+        assertEquals(this.model.coins, copy.coins);
+        assertEquals(this.model.note, copy.note);
+    }
+
+    @Test
+    public void largeDeltasTriggerFullSave() throws Exception
+    {
+        this.save();
+        StringBuilder note = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            note.append("a longer note that grows the deltas ").append(i);
+            this.model.setNote(note.toString());
+            this.save();
+        }
+        List<String> operations = this.storage.operations;
+        assertTrue(operations.lastIndexOf("save") > 0);
+        assertTrue(this.storage.load(this.player.getUniqueId()).size() < operations.size());
+        assertEquals(note.toString(), this.reload().note);
+    }
+
+    @Test
+    public void restoredValuesAreSavedInFull() throws Exception
+    {
+        this.model.setCoins(50L);
+        this.model.setNote("restored");
+        this.save();
+        this.players.unload();
+
+        // Le joueur est enregistré par le thread principal : ses données sont appliquées par une tâche au tick suivant.
+        this.players = this.configure(Players.create(this.server.getPlugin())).load();
+        this.player = this.players.get(this.server.createPlayer(this.player.getUniqueId(), "dirty")).orElseThrow(AssertionError::new);
+        this.model = this.player.getModelOrNull(DirtyModel.class);
+        int operations = this.save().size();
+        assertEquals(0L, this.model.coins);
+        assertEquals(operations, this.storage.operations.size());
+        assertEquals(50L, this.reload().coins);
+
+        this.server.tick();
+        assertEquals(50L, this.model.coins);
+        this.model.level = 3;
+        this.save();
+        assertEquals("save", this.storage.operations.get(this.storage.operations.size() - 1));
+        DirtyModel copy = this.reload();
+        assertEquals(50L, copy.coins);
+        assertEquals("restored", copy.note);
+        assertEquals(3, copy.level);
+    }
+
+    @Test
+    public void busyCommonPoolDoesNotDelaySaves() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        for (int i = 0; i < parallelism; i++) {
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            this.model.setCoins(42L);
+            assertEquals(Collections.singletonList("save"), this.save());
+            assertEquals(42L, this.reload().coins);
+        } finally {
+            release.countDown();
+        }
+    }
+}
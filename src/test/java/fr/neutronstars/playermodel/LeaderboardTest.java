@@ -0,0 +1,160 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Vérifie le rang et le top d'un {@link Leaderboard} après des modifications et des départs, en le comparant à un
+ * tri de tous les joueurs.
+ */
+public class LeaderboardTest extends PlayersTestCase
+{
+    public static class ScoreModel extends PlayerModel
+    {
+        private long score;
+
+        public ScoreModel(Player player)
+        {
+            super(player);
+        }
+
+        public long getScore()
+        {
+            return this.score;
+        }
+
+        public void setScore(long score)
+        {
+            this.score = score;
+            this.changed();
+        }
+    }
+
+    private Leaderboard<ScoreModel> leaderboard;
+
+    private final List<org.bukkit.entity.Player> bukkitPlayers = new ArrayList<>();
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(ScoreModel.class);
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.leaderboard = this.players.registerLeaderboard(ScoreModel.class, ScoreModel::getScore);
+        for (int i = 0; i < 100; i++) {
+            org.bukkit.entity.Player bukkitPlayer = this.server.createPlayer(new UUID(0L, i), "player" + i);
+            this.bukkitPlayers.add(bukkitPlayer);
+            this.server.connect(bukkitPlayer);
+        }
+    }
+
+    private ScoreModel model(int index)
+    {
+        return this.players.getModelOrNull(this.bukkitPlayers.get(index), ScoreModel.class);
+    }
+
+    @Test
+    public void rankMatchesSortAfterRandomUpdatesAndRemovals()
+    {
+        Random random = new Random(42L);
+        for (int round = 0; round < 3000; round++) {
+            int index = random.nextInt(this.bukkitPlayers.size());
+            org.bukkit.entity.Player bukkitPlayer = this.bukkitPlayers.get(index);
+            if (random.nextInt(25) == 0) {
+                this.server.disconnect(bukkitPlayer);
+                if (random.nextBoolean()) {
+                    this.server.connect(bukkitPlayer);
+                }
+                continue;
+            }
+            ScoreModel model = this.players.getModelOrNull(bukkitPlayer, ScoreModel.class);
+            if (model != null) {
+                model.setScore(random.nextInt(3) == 0 ? model.getScore() + 1 : random.nextInt(40));
+            }
+            if (round % 100 == 0) {
+                this.assertMatchesSort();
+            }
+        }
+        this.assertMatchesSort();
+    }
+
+    @Test
+    public void updateKeepingRankDoesNotMoveOthers()
+    {
+        for (int i = 0; i < 5; i++) {
+            this.model(i).setScore(100L - i * 10L);
+        }
+        this.model(2).setScore(85L);
+        assertEquals(3, this.leaderboard.getRank(this.model(2).player).getAsInt());
+        assertEquals(85L, this.leaderboard.getScore(this.model(2).player).getAsLong());
+        this.model(2).setScore(95L);
+        assertEquals(2, this.leaderboard.getRank(this.model(2).player).getAsInt());
+        assertEquals(3, this.leaderboard.getRank(this.model(1).player).getAsInt());
+        List<Leaderboard.Entry> top = this.leaderboard.top(3);
+        assertSame(this.model(0).player, top.get(0).getPlayer());
+        assertSame(this.model(2).player, top.get(1).getPlayer());
+        assertSame(this.model(1).player, top.get(2).getPlayer());
+    }
+
+    @Test
+    public void removedPlayersLeaveTheLeaderboard()
+    {
+        this.model(7).setScore(1000L);
+        Player player = this.model(7).player;
+        assertEquals(1, this.leaderboard.getRank(player).getAsInt());
+        this.server.disconnect(this.bukkitPlayers.get(7));
+        assertFalse(this.leaderboard.getRank(player).isPresent());
+        assertEquals(this.bukkitPlayers.size() - 1, this.leaderboard.size());
+        assertNotSame(player, this.leaderboard.top(1).get(0).getPlayer());
+    }
+
+    private void assertMatchesSort()
+    {
+        List<Player> expected = new ArrayList<>(this.players.getSnapshot().asList());
+        expected.sort(Comparator.<Player>comparingLong(player -> -player.getModelOrNull(ScoreModel.class).getScore())
+                .thenComparing(Player::getUniqueId));
+        assertEquals(expected.size(), this.leaderboard.size());
+        List<Leaderboard.Entry> top = this.leaderboard.top(expected.size() + 1);
+        assertEquals(expected.size(), top.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Player player = expected.get(i);
+            assertSame(player, top.get(i).getPlayer());
+            assertEquals(i + 1, top.get(i).getRank());
+            assertEquals(player.getModelOrNull(ScoreModel.class).getScore(), top.get(i).getScore());
+            assertEquals(i + 1, this.leaderboard.getRank(player).getAsInt());
+            assertSame(player, this.leaderboard.get(i + 1).get().getPlayer());
+        }
+        List<Leaderboard.Entry> topTen = this.leaderboard.top(10);
+        assertEquals(Math.min(10, expected.size()), topTen.size());
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que le journal du {@link MappedPlayerStorage} se relit après un arrêt, ignore une fin d'écriture tronquée ou
+ * corrompue, et garde les derniers enregistrements après un compactage.
+ */
+public class MappedPlayerStorageTest
+{
+    private static final int SEGMENT_SIZE = 4096;
+
+    /**
+     * L'entête d'un enregistrement, voir {@link MappedPlayerStorage}.
+     */
+    private static final int HEADER = 28;
+
+    private final UUID first = UUID.randomUUID();
+
+    private final UUID second = UUID.randomUUID();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.directory = Files.createTempDirectory("player-storage");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        for (Path file : this.files()) {
+            Files.delete(file);
+        }
+        Files.delete(this.directory);
+    }
+
+    private MappedPlayerStorage open() throws IOException
+    {
+        return MappedPlayerStorage.open(this.directory, SEGMENT_SIZE);
+    }
+
+    private List<Path> files() throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static ByteBuffer data(String value)
+    {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> strings(List<ByteBuffer> records)
+    {
+        List<String> strings = new ArrayList<>(records.size());
+        for (ByteBuffer record : records) {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private List<String> load(MappedPlayerStorage storage, UUID uuid) throws IOException
+    {
+        return MappedPlayerStorageTest.strings(storage.load(uuid));
+    }
+
+    @Test
+    public void reopenRestoresRecordsAndDeltas() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            storage.save(this.first, data("v1"));
+            storage.save(this.first, data("v2"));
+            storage.append(this.first, data("d1"));
+            storage.append(this.first, data("d2"));
+            storage.append(this.second, data("only delta"));
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(2, storage.size());
+            assertEquals(Arrays.asList("v2", "d1", "d2"), this.load(storage, this.first));
+            assertEquals(Arrays.asList("only delta"), this.load(storage, this.second));
+            assertTrue(storage.load(UUID.randomUUID()).isEmpty());
+        }
+    }
+
+    @Test
+    public void corruptTailIsDropped() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            storage.save(this.first, data("v1"));
+            storage.save(this.first, data("v2"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(this.files().get(0).toFile(), "rw")) {
+            // Le premier octet des données du second enregistrement : son CRC ne correspond plus.
+            file.seek(HEADER + 2 + HEADER);
+            file.write('X');
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("v1"), this.load(storage, this.first));
+            storage.save(this.first, data("v3"));
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("v3"), this.load(storage, this.first));
+        }
+    }
+
+    @Test
+    public void truncatedTailIsDropped() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            storage.save(this.first, data("v1"));
+            storage.append(this.first, data("d1"));
+            storage.save(this.second, data("a record cut in the middle"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(this.files().get(0).toFile(), "rw")) {
+            file.setLength((HEADER + 2) * 2 + HEADER + 5);
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("v1", "d1"), this.load(storage, this.first));
+            assertTrue(storage.load(this.second).isEmpty());
+            storage.append(this.first, data("d2"));
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("v1", "d1", "d2"), this.load(storage, this.first));
+            assertEquals(1, storage.size());
+        }
+    }
+
+    @Test
+    public void compactionKeepsLatestRecords() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            for (int i = 0; i < 500; i++) {
+                storage.save(this.first, data("first " + i));
+                storage.save(this.second, data("second " + i));
+            }
+            storage.append(this.first, data("delta"));
+            assertTrue(this.files().size() > 3);
+            storage.compact();
+            assertEquals(1, this.files().size());
+            assertEquals(Arrays.asList("first 499", "delta"), this.load(storage, this.first));
+            assertEquals(Arrays.asList("second 499"), this.load(storage, this.second));
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("first 499", "delta"), this.load(storage, this.first));
+            assertEquals(Arrays.asList("second 499"), this.load(storage, this.second));
+        }
+    }
+
+    @Test
+    public void flushCompactsWhenMostRecordsAreStale() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            for (int i = 0; i < 1000; i++) {
+                storage.save(this.first, data("value " + i));
+            }
+            storage.flush();
+            assertEquals(1, this.files().size());
+            assertEquals(Arrays.asList("value 999"), this.load(storage, this.first));
+        }
+    }
+
+    @Test
+    public void deleteSurvivesReopenAndCompaction() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            storage.save(this.first, data("kept"));
+            storage.save(this.second, data("deleted"));
+            storage.delete(this.second);
+            assertTrue(storage.load(this.second).isEmpty());
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertTrue(storage.load(this.second).isEmpty());
+            storage.compact();
+            assertEquals(1, storage.size());
+        }
+        try (MappedPlayerStorage storage = this.open()) {
+            assertEquals(Arrays.asList("kept"), this.load(storage, this.first));
+            assertTrue(storage.load(this.second).isEmpty());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void recordLargerThanSegmentIsRefused() throws IOException
+    {
+        try (MappedPlayerStorage storage = this.open()) {
+            storage.save(this.first, ByteBuffer.allocate(SEGMENT_SIZE));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que le {@link ModelCodec} relit ce qu'il écrit, et que les données restent lisibles lorsque les champs ou la
+ * version du model changent.
+ */
+public class ModelCodecTest
+{
+    public enum Rank
+    {
+        MEMBER, VIP, ADMIN
+    }
+
+    public enum NewRank
+    {
+        MEMBER, ADMIN
+    }
+
+    public static class AllTypesModel extends PlayerModel
+    {
+        private boolean flag;
+        private byte smallNumber;
+        private short shortNumber;
+        private char letter;
+        private int number;
+        private long bigNumber;
+        private float ratio;
+        private double precise;
+        private String text;
+        private UUID friend;
+        private Rank rank;
+        private transient int ignored;
+        private final int constant = 1;
+
+        public AllTypesModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    public static class OldModel extends PlayerModel
+    {
+        private int kept;
+        private String removed;
+        private long oldName;
+        private int changedType;
+        private Rank rank;
+
+        public OldModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    public static class NewModel extends PlayerModel
+    {
+        private int kept;
+        private double added = 7.5D;
+        private long newName = -1L;
+        private long changedType = -1L;
+        private NewRank rank = NewRank.MEMBER;
+
+        public NewModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    @ModelVersion(1)
+    public static class BinaryV1 extends PlayerModel implements BinaryModel
+    {
+        private int coins;
+
+        public BinaryV1(Player player)
+        {
+            super(player);
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer)
+        {
+            buffer.putInt(this.coins);
+        }
+
+        @Override
+        public void readFrom(ByteBuffer buffer, int version)
+        {
+            this.coins = buffer.getInt();
+        }
+    }
+
+    @ModelVersion(2)
+    public static class BinaryV2 extends PlayerModel implements BinaryModel
+    {
+        private long coins;
+        private String currency;
+
+        public BinaryV2(Player player)
+        {
+            super(player);
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer)
+        {
+            buffer.putLong(this.coins);
+            ModelCodec.writeString(buffer, this.currency);
+        }
+
+        @Override
+        public void readFrom(ByteBuffer buffer, int version)
+        {
+            if (version < 2) {
+                this.coins = buffer.getInt();
+                this.currency = "gold";
+                return;
+            }
+            this.coins = buffer.getLong();
+            this.currency = ModelCodec.readString(buffer);
+        }
+    }
+
+    private Player player;
+
+    @Before
+    public void setUp()
+    {
+        this.player = new Player(UUID.randomUUID(), "codec");
+    }
+
+    private static <M extends PlayerModel> ByteBuffer write(ModelCodec<M> codec, M model)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.write(model, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void allFieldTypesRoundTrip() throws ModelException
+    {
+        AllTypesModel model = new AllTypesModel(this.player);
+        model.flag = true;
+        model.smallNumber = -12;
+        model.shortNumber = Short.MIN_VALUE;
+        model.letter = 'é';
+        model.number = Integer.MAX_VALUE;
+        model.bigNumber = Long.MIN_VALUE;
+        model.ratio = -0.25F;
+        model.precise = Math.PI;
+        model.text = "café 世";
+        model.friend = UUID.randomUUID();
+        model.rank = Rank.VIP;
+        model.ignored = 99;
+
+        ModelCodec<AllTypesModel> codec = ModelCodec.of(AllTypesModel.class);
+        assertFalse(codec.getFieldNames().contains("ignored"));
+        assertFalse(codec.getFieldNames().contains("constant"));
+        ByteBuffer buffer = ModelCodecTest.write(codec, model);
+
+        AllTypesModel copy = new AllTypesModel(this.player);
+        codec.read(copy, buffer, codec.getVersion());
+        assertFalse(buffer.hasRemaining());
+        assertTrue(copy.flag);
+        assertEquals(model.smallNumber, copy.smallNumber);
+        assertEquals(model.shortNumber, copy.shortNumber);
+        assertEquals(model.letter, copy.letter);
+        assertEquals(model.number, copy.number);
+        assertEquals(model.bigNumber, copy.bigNumber);
+        assertEquals(model.ratio, copy.ratio, 0F);
+        assertEquals(model.precise, copy.precise, 0D);
+        assertEquals(model.text, copy.text);
+        assertEquals(model.friend, copy.friend);
+        assertEquals(model.rank, copy.rank);
+        assertEquals(0, copy.ignored);
+    }
+
+    @Test
+    public void nullReferencesRoundTrip() throws ModelException
+    {
+        AllTypesModel model = new AllTypesModel(this.player);
+        ModelCodec<AllTypesModel> codec = ModelCodec.of(AllTypesModel.class);
+        AllTypesModel copy = new AllTypesModel(this.player);
+        copy.text = "before";
+        copy.friend = UUID.randomUUID();
+        copy.rank = Rank.ADMIN;
+        codec.read(copy, ModelCodecTest.write(codec, model), codec.getVersion());
+        assertNull(copy.text);
+        assertNull(copy.friend);
+        assertNull(copy.rank);
+    }
+
+    @Test
+    public void addedRemovedAndRenamedFields() throws ModelException
+    {
+        OldModel model = new OldModel(this.player);
+        model.kept = 42;
+        model.removed = "gone";
+        model.oldName = 123L;
+        model.changedType = 5;
+        model.rank = Rank.VIP;
+        ByteBuffer buffer = ModelCodecTest.write(ModelCodec.of(OldModel.class), model);
+
+        NewModel copy = new NewModel(this.player);
+        ModelCodec.of(NewModel.class).read(copy, buffer, 0);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(42, copy.kept);
+        // Un champ ajouté, renommé ou dont le type a changé garde sa valeur initiale.
+        assertEquals(7.5D, copy.added, 0D);
+        assertEquals(-1L, copy.newName);
+        assertEquals(-1L, copy.changedType);
+        // Une constante supprimée aussi.
+        assertEquals(NewRank.MEMBER, copy.rank);
+    }
+
+    @Test
+    public void partialWriteOnlyChangesWrittenFields() throws ModelException
+    {
+        ModelCodec<OldModel> codec = ModelCodec.of(OldModel.class);
+        OldModel model = new OldModel(this.player);
+        model.kept = 1;
+        model.oldName = 2L;
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.write(model, buffer, 1L << codec.indexOf("oldName"));
+        buffer.flip();
+
+        OldModel copy = new OldModel(this.player);
+        copy.kept = 10;
+        codec.read(copy, buffer, codec.getVersion());
+        assertEquals(10, copy.kept);
+        assertEquals(2L, copy.oldName);
+    }
+
+    @Test
+    public void binaryModelReadsOlderVersion() throws ModelException
+    {
+        ModelCodec<BinaryV1> oldCodec = ModelCodec.of(BinaryV1.class);
+        ModelCodec<BinaryV2> newCodec = ModelCodec.of(BinaryV2.class);
+        assertEquals(1, oldCodec.getVersion());
+        assertEquals(2, newCodec.getVersion());
+        assertTrue(newCodec.getFieldNames().isEmpty());
+
+        BinaryV1 model = new BinaryV1(this.player);
+        model.coins = 250;
+        BinaryV2 migrated = new BinaryV2(this.player);
+        newCodec.read(migrated, ModelCodecTest.write(oldCodec, model), oldCodec.getVersion());
+        assertEquals(250L, migrated.coins);
+        assertEquals("gold", migrated.currency);
+
+        migrated.coins = Long.MAX_VALUE;
+        BinaryV2 copy = new BinaryV2(this.player);
+        newCodec.read(copy, ModelCodecTest.write(newCodec, migrated), newCodec.getVersion());
+        assertEquals(Long.MAX_VALUE, copy.coins);
+        assertEquals("gold", copy.currency);
+    }
+
+    @Test
+    public void captureWritesTheSameBytes() throws ModelException
+    {
+        ModelCodec<AllTypesModel> codec = ModelCodec.of(AllTypesModel.class);
+        AllTypesModel model = new AllTypesModel(this.player);
+        model.number = 7;
+        model.text = "snapshot";
+        model.rank = Rank.ADMIN;
+        ModelCodec.Values values = codec.capture(model, PlayerModel.ALL_DIRTY);
+        ByteBuffer expected = ModelCodecTest.write(codec, model);
+        model.number = 8;
+        model.text = "changed";
+
+        ByteBuffer captured = ByteBuffer.allocate(1024);
+        codec.write(values, captured);
+        captured.flip();
+        assertEquals(expected, captured);
+    }
+
+    @Test
+    public void stringsRoundTrip()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        ModelCodec.writeString(buffer, "été ☃ ok");
+        ModelCodec.writeString(buffer, null);
+        ModelCodec.writeString(buffer, "");
+        buffer.flip();
+        assertEquals("été ☃ ok", ModelCodec.readString(buffer));
+        assertNull(ModelCodec.readString(buffer));
+        assertEquals("", ModelCodec.readString(buffer));
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie que les dépendances {@link DependsOn} ordonnent l'instanciation des models, et qu'un cycle est refusé dès
+ * l'enregistrement.
+ */
+public class ModelGraphTest extends PlayersTestCase
+{
+    private static volatile CyclicBarrier barrier;
+
+    public static class RootModel extends PlayerModel
+    {
+        public RootModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    @DependsOn(RootModel.class)
+    public static class LeftModel extends PlayerModel
+    {
+        private final boolean rootReady;
+
+        public LeftModel(Player player)
+        {
+            super(player);
+            this.rootReady = player.getModelOrNull(RootModel.class) != null;
+            ModelGraphTest.await();
+        }
+    }
+
+    @DependsOn(RootModel.class)
+    public static class RightModel extends PlayerModel
+    {
+        private final boolean rootReady;
+
+        public RightModel(Player player)
+        {
+            super(player);
+            this.rootReady = player.getModelOrNull(RootModel.class) != null;
+            ModelGraphTest.await();
+        }
+    }
+
+    @DependsOn({LeftModel.class, RightModel.class})
+    public static class TopModel extends PlayerModel
+    {
+        private final boolean dependenciesReady;
+
+        public TopModel(Player player)
+        {
+            super(player);
+            this.dependenciesReady = player.getModelOrNull(LeftModel.class) != null
+                    && player.getModelOrNull(RightModel.class) != null;
+        }
+    }
+
+    @DependsOn(CycleEndModel.class)
+    public static class CycleStartModel extends PlayerModel
+    {
+        public CycleStartModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    @DependsOn(CycleStartModel.class)
+    public static class CycleEndModel extends PlayerModel
+    {
+        public CycleEndModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    @DependsOn(SelfModel.class)
+    public static class SelfModel extends PlayerModel
+    {
+        public SelfModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    /**
+     * Attend l'autre model du même niveau, si le test le demande : les deux doivent être instanciés en même temps.
+     */
+    private static void await()
+    {
+        CyclicBarrier current = barrier;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.await(5L, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException exception) {
+            throw new IllegalStateException("The models of the same level were not created concurrently.", exception);
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        barrier = null;
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        barrier = null;
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void levelsFollowDependencies() throws ModelException
+    {
+        List<ModelKey<?>> keys = this.players.registerModelKeys(
+                LoadPolicy.EAGER, TopModel.class, RightModel.class, LeftModel.class, RootModel.class
+        );
+        List<ModelKey<?>> sorted = ModelGraph.sort(keys);
+        assertTrue(sorted.indexOf(keys.get(3)) < sorted.indexOf(keys.get(1)));
+        assertTrue(sorted.indexOf(keys.get(3)) < sorted.indexOf(keys.get(2)));
+        assertTrue(sorted.indexOf(keys.get(1)) < sorted.indexOf(keys.get(0)));
+        assertTrue(sorted.indexOf(keys.get(2)) < sorted.indexOf(keys.get(0)));
+
+        List<List<ModelKey<?>>> levels = ModelGraph.levels(sorted);
+        assertEquals(3, levels.size());
+        assertEquals(1, levels.get(0).size());
+        assertEquals(RootModel.class, levels.get(0).get(0).getModelClass());
+        assertEquals(2, levels.get(1).size());
+        assertTrue(levels.get(1).contains(keys.get(1)));
+        assertTrue(levels.get(1).contains(keys.get(2)));
+        assertEquals(1, levels.get(2).size());
+        assertEquals(TopModel.class, levels.get(2).get(0).getModelClass());
+    }
+
+    @Test
+    public void dependenciesAreCreatedFirst() throws ModelException
+    {
+        this.players.registerModels(TopModel.class, RightModel.class, LeftModel.class, RootModel.class);
+        this.assertCreatedInOrder(this.players.get(this.server.createPlayer(UUID.randomUUID(), "serial")).get());
+    }
+
+    @Test
+    public void independentModelsAreCreatedConcurrently() throws ModelException
+    {
+        this.players.registerModels(TopModel.class, RightModel.class, LeftModel.class, RootModel.class)
+                .setModelExecutor(this.executor);
+        barrier = new CyclicBarrier(2);
+        List<Player> created = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            created.add(this.players.get(this.server.createPlayer(UUID.randomUUID(), "parallel" + i)).get());
+        }
+        for (Player player : created) {
+            this.assertCreatedInOrder(player);
+        }
+    }
+
+    private void assertCreatedInOrder(Player player)
+    {
+        assertNotNull(player.getModelOrNull(RootModel.class));
+        assertTrue(player.getModelOrNull(LeftModel.class).rootReady);
+        assertTrue(player.getModelOrNull(RightModel.class).rootReady);
+        assertTrue(player.getModelOrNull(TopModel.class).dependenciesReady);
+    }
+
+    @Test
+    public void cycleIsRefusedAtRegistration()
+    {
+        try {
+            this.players.registerModelKeys(LoadPolicy.EAGER, CycleStartModel.class, CycleEndModel.class);
+            fail("The cycle should have been refused.");
+        } catch (ModelException exception) {
+            assertTrue(exception.getMessage().contains(CycleStartModel.class.getName()));
+            assertTrue(exception.getMessage().contains(CycleEndModel.class.getName()));
+        }
+        assertFalse(this.players.hasModel(CycleStartModel.class));
+        assertFalse(this.players.hasModel(CycleEndModel.class));
+    }
+
+    @Test(expected = ModelException.class)
+    public void selfDependencyIsRefused() throws ModelException
+    {
+        this.players.registerModelKeys(LoadPolicy.EAGER, SelfModel.class);
+    }
+
+    @Test(expected = ModelException.class)
+    public void missingDependencyIsRefused() throws ModelException
+    {
+        this.players.registerModelKeys(LoadPolicy.EAGER, TopModel.class);
+    }
+}
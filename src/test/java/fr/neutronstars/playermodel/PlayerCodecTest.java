@@ -0,0 +1,189 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie que le {@link PlayerCodec} relit un joueur et tous ses models, y compris entre deux gestionnaires qui
+ * n'enregistrent pas les mêmes models.
+ */
+public class PlayerCodecTest extends PlayersTestCase
+{
+    public static class WalletModel extends PlayerModel
+    {
+        private long coins;
+        private String currency;
+
+        public WalletModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    public static class StatsModel extends PlayerModel
+    {
+        private int kills;
+
+        public StatsModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    public static class LazyModel extends PlayerModel
+    {
+        private int value;
+
+        public LazyModel(Player player)
+        {
+            super(player);
+        }
+    }
+
+    /**
+     * Le gestionnaire qui relit les données écrites par celui du test, sans {@link StatsModel}.
+     */
+    private Players<Plugin> target;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players
+                .registerModels(WalletModel.class, StatsModel.class)
+                .registerModel(LazyModel.class, LoadPolicy.LAZY);
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.target = Players.create(this.server.getPlugin())
+                .registerModel(WalletModel.class)
+                .registerModel(LazyModel.class, LoadPolicy.LAZY);
+    }
+
+    private Player sourcePlayer(UUID uuid)
+    {
+        Player player = this.players.get(this.server.createPlayer(uuid, "source")).orElseThrow(AssertionError::new);
+        WalletModel wallet = player.getModelOrNull(WalletModel.class);
+        wallet.coins = 1500L;
+        wallet.currency = "gold";
+        player.getModelOrNull(StatsModel.class).kills = 12;
+        return player;
+    }
+
+    private Player targetPlayer(UUID uuid) throws ModelException
+    {
+        return this.target.newPlayer(uuid, "target");
+    }
+
+    @Test
+    public void playerRoundTrip() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer data = PlayerCodec.encode(this.sourcePlayer(uuid));
+        assertEquals(uuid, PlayerCodec.readUniqueId(data));
+
+        Player copy = this.players.newPlayer(uuid, "copy");
+        PlayerCodec.read(copy, data);
+        assertFalse(data.hasRemaining());
+        assertEquals(1500L, copy.getModelOrNull(WalletModel.class).coins);
+        assertEquals("gold", copy.getModelOrNull(WalletModel.class).currency);
+        assertEquals(12, copy.getModelOrNull(StatsModel.class).kills);
+        // Un model LAZY jamais instancié n'est pas écrit, donc pas instancié à la lecture.
+        assertNull(copy.peek(this.players.getModelKey(LazyModel.class).get()));
+    }
+
+    @Test
+    public void lazyModelWrittenOnceInstantiated() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        Player player = this.sourcePlayer(uuid);
+        player.get(this.players.getModelKey(LazyModel.class).get()).value = 3;
+
+        Player copy = this.targetPlayer(uuid);
+        PlayerCodec.read(copy, PlayerCodec.encode(player));
+        ModelKey<LazyModel> key = this.target.getModelKey(LazyModel.class).get();
+        assertNotNull(copy.peek(key));
+        assertEquals(3, copy.get(key).value);
+    }
+
+    @Test
+    public void unknownModelsAreSkipped() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        Player copy = this.targetPlayer(uuid);
+        PlayerCodec.read(copy, PlayerCodec.encode(this.sourcePlayer(uuid)));
+        assertEquals(1500L, copy.getModelOrNull(WalletModel.class).coins);
+        assertNull(copy.getModelOrNull(StatsModel.class));
+    }
+
+    @Test(expected = ModelException.class)
+    public void otherPlayerIsRejected() throws ModelException
+    {
+        ByteBuffer data = PlayerCodec.encode(this.sourcePlayer(UUID.randomUUID()));
+        PlayerCodec.read(this.targetPlayer(UUID.randomUUID()), data);
+    }
+
+    @Test
+    public void truncatedDataIsRejected() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer data = PlayerCodec.encode(this.sourcePlayer(uuid));
+        for (int limit = 0; limit < data.limit(); limit += 3) {
+            ByteBuffer truncated = data.duplicate();
+            truncated.limit(limit);
+            Player copy = this.targetPlayer(uuid);
+            try {
+                PlayerCodec.read(copy, truncated);
+                fail("Truncated data at " + limit + " bytes was accepted.");
+            } catch (ModelException exception) {
+                // Attendu.
+            }
+        }
+    }
+
+    @Test(expected = ModelException.class)
+    public void unknownFormatIsRejected() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer data = PlayerCodec.encode(this.sourcePlayer(uuid));
+        data.put(0, (byte) (PlayerCodec.FORMAT + 1));
+        PlayerCodec.read(this.targetPlayer(uuid), data);
+    }
+
+    @Test(expected = ModelException.class)
+    public void corruptStringLengthIsRejected() throws ModelException
+    {
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer data = PlayerCodec.encode(this.sourcePlayer(uuid));
+        // La taille du nom du joueur, écrite après le format et l'identifiant.
+        data.putInt(17, Integer.MAX_VALUE - 8);
+        PlayerCodec.read(this.targetPlayer(uuid), data);
+    }
+}
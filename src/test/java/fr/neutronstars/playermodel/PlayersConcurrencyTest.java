@@ -0,0 +1,177 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que l'enregistrement concurrent d'un même joueur ne crée jamais deux {@link Player}.
+ */
+public class PlayersConcurrencyTest extends PlayersTestCase
+{
+    private static final int THREADS = 8;
+
+    private static final int PLAYERS = 200;
+
+    private static final Map<UUID, AtomicInteger> CREATED = new ConcurrentHashMap<>();
+
+    public static class CountedModel extends PlayerModel
+    {
+        public CountedModel(Player player)
+        {
+            super(player);
+            CREATED.computeIfAbsent(player.getUniqueId(), uuid -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(CountedModel.class);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CREATED.clear();
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void concurrentGetCreatesOnePlayerPerUniqueId() throws Exception
+    {
+        List<org.bukkit.entity.Player> bukkitPlayers = this.createPlayers();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Player>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(this.executor.submit(() -> {
+                start.await();
+                List<Player> seen = new ArrayList<>(PLAYERS);
+                for (org.bukkit.entity.Player bukkitPlayer : bukkitPlayers) {
+                    Optional<Player> player = this.players.get(bukkitPlayer);
+                    seen.add(player.isPresent() ? player.get() : this.awaitRegistered(bukkitPlayer.getUniqueId()));
+                }
+                return seen;
+            }));
+        }
+        start.countDown();
+        this.assertSinglePlayers(bukkitPlayers, futures);
+    }
+
+    @Test
+    public void concurrentGetAndBatchRegisterCreateOnePlayerPerUniqueId() throws Exception
+    {
+        List<org.bukkit.entity.Player> bukkitPlayers = this.createPlayers();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Player>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean batch = i % 2 == 0;
+            futures.add(this.executor.submit(() -> {
+                start.await();
+                List<org.bukkit.entity.Player> order = new ArrayList<>(bukkitPlayers);
+                Collections.shuffle(order);
+                if (batch) {
+                    this.players.register(order);
+                } else {
+                    for (org.bukkit.entity.Player bukkitPlayer : order) {
+                        this.players.get(bukkitPlayer);
+                    }
+                }
+                List<Player> seen = new ArrayList<>(PLAYERS);
+                for (org.bukkit.entity.Player bukkitPlayer : bukkitPlayers) {
+                    seen.add(this.awaitRegistered(bukkitPlayer.getUniqueId()));
+                }
+                return seen;
+            }));
+        }
+        start.countDown();
+        this.assertSinglePlayers(bukkitPlayers, futures);
+    }
+
+    private List<org.bukkit.entity.Player> createPlayers()
+    {
+        List<org.bukkit.entity.Player> bukkitPlayers = new ArrayList<>(PLAYERS);
+        for (int i = 0; i < PLAYERS; i++) {
+            bukkitPlayers.add(this.server.createPlayer(UUID.randomUUID(), "player" + i));
+        }
+        return bukkitPlayers;
+    }
+
+    /**
+     * Attend qu'un autre thread termine l'enregistrement du joueur.
+     */
+    private Player awaitRegistered(UUID uuid) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (System.nanoTime() < deadline) {
+            Optional<Player> player = this.players.get(uuid);
+            if (player.isPresent()) {
+                return player.get();
+            }
+            Thread.sleep(1L);
+        }
+        throw new AssertionError("The player " + uuid + " was never registered.");
+    }
+
+    private void assertSinglePlayers(List<org.bukkit.entity.Player> bukkitPlayers, List<Future<List<Player>>> futures)
+            throws Exception
+    {
+        List<List<Player>> results = new ArrayList<>();
+        for (Future<List<Player>> future : futures) {
+            results.add(future.get(30L, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < bukkitPlayers.size(); i++) {
+            UUID uuid = bukkitPlayers.get(i).getUniqueId();
+            Player registered = this.players.get(uuid).orElseThrow(AssertionError::new);
+            for (List<Player> seen : results) {
+                assertSame(registered, seen.get(i));
+            }
+            assertEquals("models created for " + uuid, 1, CREATED.get(uuid).get());
+            assertTrue(registered.getModelOrNull(CountedModel.class) != null);
+        }
+        assertEquals(PLAYERS, this.players.getPlayerCount());
+    }
+}
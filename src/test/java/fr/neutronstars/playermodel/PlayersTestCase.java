@@ -0,0 +1,56 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.playermodel.bench.FakeServer;
+import org.bukkit.plugin.Plugin;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * La base des tests qui ont besoin d'un gestionnaire {@link Players} chargé sur le {@link FakeServer}, remis à zéro
+ * avant chaque test puis déchargé après. Le {@link Before} d'une sous-class est lancé après le chargement, et son
+ * {@link After} avant le déchargement.
+ */
+public abstract class PlayersTestCase
+{
+    protected FakeServer server;
+
+    protected Players<Plugin> players;
+
+    @Before
+    public final void loadPlayers()
+    {
+        this.server = FakeServer.install();
+        this.players = this.configure(Players.create(this.server.getPlugin())).load();
+    }
+
+    /**
+     * Permet de configurer le gestionnaire avant son chargement, par exemple ses models.
+     * @param players le gestionnaire.
+     * @return le gestionnaire configuré.
+     */
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players;
+    }
+
+    @After
+    public final void unloadPlayers()
+    {
+        this.players.unload();
+    }
+}
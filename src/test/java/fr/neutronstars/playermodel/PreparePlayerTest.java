@@ -0,0 +1,129 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Vérifie qu'une pré-connexion répétée ne remplace pas le joueur déjà préparé sans retirer ses models.
+ */
+public class PreparePlayerTest extends PlayersTestCase
+{
+    private static final int THREADS = 8;
+
+    private static final int PLAYERS = 100;
+
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    private static final AtomicInteger UNLOADED = new AtomicInteger();
+
+    public static class PreparedModel extends PlayerModel
+    {
+        public PreparedModel(Player player)
+        {
+            super(player);
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        protected void onUnload()
+        {
+            UNLOADED.incrementAndGet();
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(PreparedModel.class).setPreparePlayer(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CREATED.set(0);
+        UNLOADED.set(0);
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void repeatedPrepareKeepsTheFirstPlayer()
+    {
+        UUID uuid = UUID.randomUUID();
+        this.players.prepare(uuid, "first");
+        Player prepared = this.players.preparedPlayers.get(uuid).player;
+        this.players.prepare(uuid, "second");
+        assertSame(prepared, this.players.preparedPlayers.get(uuid).player);
+        assertSame(prepared, this.players.get(this.server.createPlayer(uuid, "first")).get());
+        assertEquals(CREATED.get() - 1, UNLOADED.get());
+    }
+
+    @Test
+    public void concurrentPrepareUnloadsEveryReplacedPlayer() throws Exception
+    {
+        List<UUID> uuids = new ArrayList<>(PLAYERS);
+        for (int i = 0; i < PLAYERS; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(this.executor.submit(() -> {
+                start.await();
+                for (UUID uuid : uuids) {
+                    this.players.prepare(uuid, "player");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30L, TimeUnit.SECONDS);
+        }
+        assertEquals(PLAYERS, this.players.getPreparedPlayerCount());
+        assertEquals(PLAYERS, CREATED.get() - UNLOADED.get());
+
+        for (UUID uuid : uuids) {
+            this.players.discard(uuid);
+        }
+        assertEquals(CREATED.get(), UNLOADED.get());
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.playermodel.event.RegisterPlayerEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie qu'un joueur qui se reconnecte pendant {@link Players#getReconnectGrace(TimeUnit)} récupère son instance et
+ * ses models, et qu'il est supprimé une fois le délai passé.
+ */
+public class ReconnectGraceTest extends PlayersTestCase
+{
+    private static final long GRACE = 100L;
+
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    private static final AtomicInteger UNLOADED = new AtomicInteger();
+
+    public static class GraceModel extends PlayerModel
+    {
+        public GraceModel(Player player)
+        {
+            super(player);
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        protected void onUnload()
+        {
+            UNLOADED.incrementAndGet();
+        }
+    }
+
+    public static class RegisterCounter implements Listener
+    {
+        private final AtomicInteger registered = new AtomicInteger();
+
+        @EventHandler
+        public void onRegister(RegisterPlayerEvent event)
+        {
+            this.registered.incrementAndGet();
+        }
+    }
+
+    private final RegisterCounter counter = new RegisterCounter();
+
+    private org.bukkit.entity.Player bukkitPlayer;
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.registerModel(GraceModel.class).setReconnectGrace(GRACE, TimeUnit.MILLISECONDS);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CREATED.set(0);
+        UNLOADED.set(0);
+        Bukkit.getPluginManager().registerEvents(this.counter, this.server.getPlugin());
+        this.bukkitPlayer = this.server.createPlayer(UUID.randomUUID(), "player");
+    }
+
+    private Player current()
+    {
+        return this.players.get(this.bukkitPlayer.getUniqueId()).orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    public void reconnectInsideGraceKeepsInstanceAndModels()
+    {
+        this.server.connect(this.bukkitPlayer);
+        Player player = this.current();
+        GraceModel model = player.getModelOrNull(GraceModel.class);
+
+        this.server.disconnect(this.bukkitPlayer);
+        this.players.unregisterParked();
+        assertSame(player, this.current());
+
+        this.server.connect(this.bukkitPlayer);
+        assertSame(player, this.current());
+        assertSame(model, this.current().getModelOrNull(GraceModel.class));
+        assertEquals(1, CREATED.get());
+        assertEquals(0, UNLOADED.get());
+        assertEquals(1, this.counter.registered.get());
+    }
+
+    @Test
+    public void reconnectAfterGraceCreatesNewInstance() throws InterruptedException
+    {
+        this.server.connect(this.bukkitPlayer);
+        Player player = this.current();
+
+        this.server.disconnect(this.bukkitPlayer);
+        Thread.sleep(GRACE * 2);
+        this.players.unregisterParked();
+        assertFalse(this.players.get(this.bukkitPlayer.getUniqueId()).isPresent());
+        assertEquals(1, UNLOADED.get());
+
+        this.server.connect(this.bukkitPlayer);
+        assertNotSame(player, this.current());
+        assertEquals(2, CREATED.get());
+        assertEquals(2, this.counter.registered.get());
+    }
+
+    @Test
+    public void reconnectCancelsPendingRemoval() throws InterruptedException
+    {
+        this.server.connect(this.bukkitPlayer);
+        Player player = this.current();
+
+        this.server.disconnect(this.bukkitPlayer);
+        this.server.connect(this.bukkitPlayer);
+        Thread.sleep(GRACE * 2);
+        this.players.unregisterParked();
+        assertSame(player, this.current());
+        assertTrue(player.get().isPresent());
+        assertEquals(0, UNLOADED.get());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import fr.neutronstars.api.model.ModelException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie que {@link Players#registerModelKeys(LoadPolicy, Class[])} n'ajoute aucun model tant que tous n'ont pas été
+ * instanciés, et annule tout si un constructeur échoue.
+ */
+public class RegisterModelKeysTest extends PlayersTestCase
+{
+    private static final int PLAYERS = 50;
+
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    private static final AtomicInteger UNLOADED = new AtomicInteger();
+
+    private static final AtomicInteger MISSING_DEPENDENCY = new AtomicInteger();
+
+    public static class BaseModel extends PlayerModel
+    {
+        public BaseModel(Player player)
+        {
+            super(player);
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        protected void onUnload()
+        {
+            UNLOADED.incrementAndGet();
+        }
+    }
+
+    @DependsOn(BaseModel.class)
+    public static class DependentModel extends BaseModel
+    {
+        public DependentModel(Player player)
+        {
+            super(player);
+            if (player.getModelOrNull(BaseModel.class) == null) {
+                MISSING_DEPENDENCY.incrementAndGet();
+            }
+        }
+    }
+
+    @DependsOn(DependentModel.class)
+    public static class FailingModel extends BaseModel
+    {
+        public FailingModel(Player player)
+        {
+            super(player);
+            if (player.getName().equals("player" + (PLAYERS - 1))) {
+                // Cette instance n'est jamais rendue au gestionnaire, elle ne peut pas être déchargée.
+                CREATED.decrementAndGet();
+                throw new IllegalStateException("Broken model");
+            }
+        }
+    }
+
+    private final List<Player> registered = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        CREATED.set(0);
+        UNLOADED.set(0);
+        MISSING_DEPENDENCY.set(0);
+        for (int i = 0; i < PLAYERS; i++) {
+            org.bukkit.entity.Player bukkitPlayer = this.server.createPlayer(UUID.randomUUID(), "player" + i);
+            this.registered.add(this.players.get(bukkitPlayer).orElseThrow(AssertionError::new));
+        }
+    }
+
+    @Test
+    public void failingConstructorRollsBackEveryModel()
+    {
+        try {
+            this.players.registerModelKeys(LoadPolicy.EAGER, BaseModel.class, DependentModel.class, FailingModel.class);
+            fail("The registration should have failed.");
+        } catch (ModelException exception) {
+            // Attendu.
+        }
+        assertFalse(this.players.hasModel(BaseModel.class));
+        assertFalse(this.players.hasModel(DependentModel.class));
+        assertFalse(this.players.hasModel(FailingModel.class));
+        for (Player player : this.registered) {
+            assertNull(player.getModelOrNull(BaseModel.class));
+            assertNull(player.getModelOrNull(DependentModel.class));
+            assertNull(player.getModelOrNull(FailingModel.class));
+        }
+        assertTrue(CREATED.get() > 0);
+        assertEquals("every staged model must be unloaded", CREATED.get(), UNLOADED.get());
+    }
+
+    @Test
+    public void slotsAreReusableAfterRollback() throws ModelException
+    {
+        try {
+            this.players.registerModelKeys(LoadPolicy.EAGER, BaseModel.class, FailingModel.class, DependentModel.class);
+            fail("The registration should have failed.");
+        } catch (ModelException exception) {
+            // Attendu.
+        }
+        List<ModelKey<?>> keys = this.players.registerModelKeys(LoadPolicy.EAGER, BaseModel.class, DependentModel.class);
+        assertEquals(0, keys.get(0).getSlot());
+        assertEquals(1, keys.get(1).getSlot());
+        for (Player player : this.registered) {
+            assertNotNull(player.getModelOrNull(BaseModel.class));
+            assertNotNull(player.getModelOrNull(DependentModel.class));
+        }
+    }
+
+    @Test
+    public void dependenciesAreVisibleBeforePublication() throws ModelException
+    {
+        this.players.registerModelKeys(LoadPolicy.EAGER, DependentModel.class, BaseModel.class);
+        assertEquals(0, MISSING_DEPENDENCY.get());
+        assertEquals(PLAYERS * 2, CREATED.get());
+        assertEquals(0, UNLOADED.get());
+    }
+}
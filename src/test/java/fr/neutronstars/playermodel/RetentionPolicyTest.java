@@ -0,0 +1,141 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel;
+
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que la {@link RetentionPolicy} oublie les joueurs déconnectés les moins récemment utilisés, et jamais les
+ * joueurs connectés.
+ */
+public class RetentionPolicyTest extends PlayersTestCase
+{
+    private final Map<String, RetentionPolicy.Cause> removed = new LinkedHashMap<>();
+
+    private final List<org.bukkit.entity.Player> bukkitPlayers = new ArrayList<>();
+
+    @Override
+    protected Players<Plugin> configure(Players<Plugin> players)
+    {
+        return players.setUnregisterPlayer(false);
+    }
+
+    @Before
+    public void setUp()
+    {
+        for (int i = 0; i < 6; i++) {
+            org.bukkit.entity.Player bukkitPlayer = this.server.createPlayer(UUID.randomUUID(), "player" + i);
+            this.bukkitPlayers.add(bukkitPlayer);
+            this.server.connect(bukkitPlayer);
+        }
+    }
+
+    private RetentionPolicy policy()
+    {
+        return RetentionPolicy.create().onRemoval((player, cause) -> this.removed.put(player.getName(), cause));
+    }
+
+    private void quit(int... indexes)
+    {
+        for (int index : indexes) {
+            this.server.disconnect(this.bukkitPlayers.get(index));
+        }
+    }
+
+    private boolean isRegistered(int index)
+    {
+        return this.players.get(this.bukkitPlayers.get(index).getUniqueId()).isPresent();
+    }
+
+    @Test
+    public void maxEntriesEvictsLeastRecentlyUsed()
+    {
+        this.players.setRetentionPolicy(this.policy().maxEntries(2L));
+        this.quit(0, 1, 2);
+        assertEquals(1, this.removed.size());
+        assertEquals(RetentionPolicy.Cause.SIZE, this.removed.get("player0"));
+
+        // player1 est utilisé, player2 devient le moins récemment utilisé.
+        assertTrue(this.isRegistered(1));
+        this.quit(3);
+        assertEquals(RetentionPolicy.Cause.SIZE, this.removed.get("player2"));
+        assertFalse(this.isRegistered(0));
+        assertFalse(this.isRegistered(2));
+        assertTrue(this.isRegistered(1));
+        assertTrue(this.isRegistered(3));
+        assertEquals(2, this.players.getOfflinePlayerCount());
+    }
+
+    @Test
+    public void maxWeightEvictsUntilUnderTheLimit()
+    {
+        this.players.setRetentionPolicy(this.policy().maxWeight(10L, player -> player.getName().equals("player0") ? 8L : 3L));
+        this.quit(0, 1);
+        assertEquals(RetentionPolicy.Cause.WEIGHT, this.removed.get("player0"));
+        this.quit(2, 3);
+        assertEquals(1, this.removed.size());
+        this.quit(4);
+        assertEquals(RetentionPolicy.Cause.WEIGHT, this.removed.get("player1"));
+        assertEquals(2, this.removed.size());
+        assertEquals(3, this.players.getOfflinePlayerCount());
+    }
+
+    @Test
+    public void onlinePlayersAreNeverEvicted()
+    {
+        this.players.setRetentionPolicy(this.policy().maxEntries(1L).idleTimeout(1L, TimeUnit.MILLISECONDS));
+        this.quit(0, 1);
+        for (int i = 2; i < this.bukkitPlayers.size(); i++) {
+            assertTrue(this.isRegistered(i));
+        }
+        this.server.connect(this.bukkitPlayers.get(1));
+        this.players.evictExpired();
+        assertTrue(this.isRegistered(1));
+        assertEquals(0, this.players.getOfflinePlayerCount());
+        assertEquals(this.bukkitPlayers.size() - 1, this.players.getPlayerCount());
+    }
+
+    @Test
+    public void idleTimeoutEvictsExpiredPlayers() throws InterruptedException
+    {
+        this.players.setRetentionPolicy(this.policy().idleTimeout(100L, TimeUnit.MILLISECONDS));
+        this.quit(0);
+        Thread.sleep(150L);
+        this.quit(1);
+        this.players.evictExpired();
+        assertEquals(RetentionPolicy.Cause.EXPIRED, this.removed.get("player0"));
+        assertFalse(this.isRegistered(0));
+        assertTrue(this.isRegistered(1));
+
+        Thread.sleep(150L);
+        this.players.evictExpired();
+        assertEquals(RetentionPolicy.Cause.EXPIRED, this.removed.get("player1"));
+        assertEquals(0, this.players.getOfflinePlayerCount());
+    }
+}
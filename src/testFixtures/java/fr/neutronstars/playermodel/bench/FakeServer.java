@@ -0,0 +1,478 @@
+/**
+ * Copyright 2021 NeutronStars
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.neutronstars.playermodel.bench;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Un faux serveur {@link Bukkit} pour les tests, les benchmarks et le simulateur, sans réseau ni monde.
+ *
+ * Les interfaces de Bukkit ({@link Server}, {@link PluginManager}, {@link BukkitScheduler}, {@link Plugin} et
+ * {@link Player}) sont implémentées par des {@link Proxy}. Les évènements passent par les vraies {@link HandlerList},
+ * comme avec le gestionnaire de plugins de Bukkit. Les tâches, synchrones comme asynchrones, sont exécutées dans le
+ * thread qui appelle {@link FakeServer#tick()}.
+ *
+ * {@link Bukkit#setServer(Server)} ne pouvant être appelé qu'une seule fois, le serveur est partagé et remis à zéro
+ * par {@link FakeServer#install()}.
+ */
+public final class FakeServer
+{
+    private static final Map<Class<?>, Object> DEFAULT_VALUES = new HashMap<>();
+
+    static {
+        DEFAULT_VALUES.put(boolean.class, false);
+        DEFAULT_VALUES.put(byte.class, (byte) 0);
+        DEFAULT_VALUES.put(short.class, (short) 0);
+        DEFAULT_VALUES.put(char.class, (char) 0);
+        DEFAULT_VALUES.put(int.class, 0);
+        DEFAULT_VALUES.put(long.class, 0L);
+        DEFAULT_VALUES.put(float.class, 0F);
+        DEFAULT_VALUES.put(double.class, 0D);
+    }
+
+    private static FakeServer instance;
+
+    /**
+     * Permet d'installer le faux serveur dans {@link Bukkit}, ou de remettre à zéro celui déjà installé.
+     * Le thread appelant devient le thread principal du serveur.
+     * @return le faux serveur.
+     */
+    public static synchronized FakeServer install()
+    {
+        if (instance == null) {
+            instance = new FakeServer();
+            Bukkit.setServer(instance.server);
+        }
+        instance.reset();
+        return instance;
+    }
+
+    private final Logger logger = Logger.getLogger("FakeServer");
+
+    private final Map<UUID, Player> onlinePlayers = new ConcurrentHashMap<>();
+
+    /**
+     * Les tâches planifiées, protégées par leur propre verrou.
+     */
+    private final List<Task> tasks = new ArrayList<>();
+
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+
+    private final Server server;
+
+    private final PluginManager pluginManager;
+
+    private final BukkitScheduler scheduler;
+
+    private final Plugin plugin;
+
+    private volatile Thread primaryThread;
+
+    private volatile long currentTick;
+
+    private int nextTaskId;
+
+    private FakeServer()
+    {
+        this.logger.setLevel(Level.WARNING);
+        this.server = FakeServer.proxy(Server.class, this::handleServer);
+        this.pluginManager = FakeServer.proxy(PluginManager.class, this::handlePluginManager);
+        this.scheduler = FakeServer.proxy(BukkitScheduler.class, this::handleScheduler);
+        this.plugin = FakeServer.proxy(Plugin.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getLogger":
+                    return this.logger;
+                case "getName":
+                    return "PlayerModelBench";
+                case "isEnabled":
+                    return true;
+                case "getServer":
+                    return this.server;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Permet de récupérer le faux plugin du serveur.
+     * @return le plugin.
+     */
+    public Plugin getPlugin()
+    {
+        return this.plugin;
+    }
+
+    /**
+     * Permet de récupérer le numéro du tick courant.
+     * @return le tick courant.
+     */
+    public long getCurrentTick()
+    {
+        return this.currentTick;
+    }
+
+    /**
+     * Permet de récupérer le nombre de joueurs connectés.
+     * @return le nombre de joueurs connectés.
+     */
+    public int getOnlineCount()
+    {
+        return this.onlinePlayers.size();
+    }
+
+    /**
+     * Permet de créer un joueur Bukkit qui n'est pas encore connecté.
+     * @param uuid l'identifiant du joueur.
+     * @param name le nom du joueur.
+     * @return le joueur.
+     */
+    public Player createPlayer(UUID uuid, String name)
+    {
+        return FakeServer.proxy(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "getDisplayName":
+                case "getPlayerListName":
+                    return name;
+                case "isOnline":
+                    return this.onlinePlayers.containsKey(uuid);
+                case "getServer":
+                    return this.server;
+                case "getAddress":
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Permet de connecter un joueur en lançant les mêmes évènements que Bukkit : pré-connexion, connexion puis arrivée.
+     * La pré-connexion est lancée dans le thread appelant et non dans un thread du réseau.
+     * @param player le joueur à connecter.
+     * @return si le joueur a été accepté.
+     */
+    public boolean connect(Player player)
+    {
+        AsyncPlayerPreLoginEvent preLogin = new AsyncPlayerPreLoginEvent(player.getName(), this.address, player.getUniqueId());
+        this.callEvent(preLogin);
+        if (preLogin.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return false;
+        }
+        PlayerLoginEvent login = new PlayerLoginEvent(player, "localhost", this.address);
+        this.callEvent(login);
+        if (login.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            return false;
+        }
+        this.onlinePlayers.put(player.getUniqueId(), player);
+        this.callEvent(new PlayerJoinEvent(player, null));
+        return true;
+    }
+
+    /**
+     * Permet de déconnecter un joueur. Comme avec Bukkit, le joueur est encore en ligne pendant l'évènement.
+     * @param player le joueur à déconnecter.
+     */
+    public void disconnect(Player player)
+    {
+        if (this.onlinePlayers.containsKey(player.getUniqueId())) {
+            this.callEvent(new PlayerQuitEvent(player, null));
+            this.onlinePlayers.remove(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Permet de lancer un évènement à tous ses listeners, dans l'ordre de leur priorité.
+     * @param event l'évènement.
+     */
+    public void callEvent(Event event)
+    {
+        for (RegisteredListener listener : event.getHandlers().getRegisteredListeners()) {
+            try {
+                listener.callEvent(event);
+            } catch (EventException exception) {
+                this.logger.log(Level.SEVERE, "Could not pass " + event.getEventName(), exception);
+            }
+        }
+    }
+
+    /**
+     * Permet d'avancer d'un tick et d'exécuter les tâches arrivées à échéance. Doit être appelé par un seul thread.
+     */
+    public void tick()
+    {
+        List<Task> due = new ArrayList<>();
+        synchronized (this.tasks) {
+            long tick = ++this.currentTick;
+            Iterator<Task> iterator = this.tasks.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.cancelled) {
+                    iterator.remove();
+                } else if (task.nextTick <= tick) {
+                    due.add(task);
+                    if (task.period > 0) {
+                        task.nextTick = tick + task.period;
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+        for (Task task : due) {
+            try {
+                task.runnable.run();
+            } catch (RuntimeException exception) {
+                this.logger.log(Level.SEVERE, "Task " + task.id + " failed", exception);
+            }
+        }
+    }
+
+    private void reset()
+    {
+        synchronized (this.tasks) {
+            this.tasks.clear();
+            this.currentTick = 0;
+        }
+        this.onlinePlayers.clear();
+        HandlerList.unregisterAll();
+        this.primaryThread = Thread.currentThread();
+    }
+
+    private Object handleServer(Method method, Object[] args)
+    {
+        switch (method.getName()) {
+            case "getPluginManager":
+                return this.pluginManager;
+            case "getScheduler":
+                return this.scheduler;
+            case "isPrimaryThread":
+                return Thread.currentThread() == this.primaryThread;
+            case "getPlayer":
+                if (args[0] instanceof UUID) {
+                    return this.onlinePlayers.get(args[0]);
+                }
+                for (Player player : this.onlinePlayers.values()) {
+                    if (player.getName().equalsIgnoreCase(String.valueOf(args[0]))) {
+                        return player;
+                    }
+                }
+                return null;
+            case "getOnlinePlayers":
+                return Collections.unmodifiableCollection(this.onlinePlayers.values());
+            case "getLogger":
+                return this.logger;
+            case "getName":
+                return "FakeServer";
+            case "getVersion":
+                return "bench";
+            case "getBukkitVersion":
+                return "1.12-R0.1-SNAPSHOT";
+            case "getMaxPlayers":
+                return Integer.MAX_VALUE;
+            default:
+                return null;
+        }
+    }
+
+    private Object handlePluginManager(Method method, Object[] args)
+    {
+        switch (method.getName()) {
+            case "registerEvents":
+                this.registerEvents((Listener) args[0], (Plugin) args[1]);
+                return null;
+            case "callEvent":
+                this.callEvent((Event) args[0]);
+                return null;
+            case "isPluginEnabled":
+                return true;
+            default:
+                return null;
+        }
+    }
+
+    private Object handleScheduler(Method method, Object[] args)
+    {
+        String name = method.getName();
+        if (name.startsWith("runTask") || name.startsWith("schedule")) {
+            long delay = args.length > 2 ? (Long) args[2] : 0L;
+            long period = args.length > 3 ? (Long) args[3] : -1L;
+            Task task = this.schedule((Runnable) args[1], delay, period);
+            return method.getReturnType() == int.class ? (Object) task.id : task.handle;
+        }
+        if (name.equals("cancelTask")) {
+            synchronized (this.tasks) {
+                for (Task task : this.tasks) {
+                    if (task.id == (Integer) args[0]) {
+                        task.cancelled = true;
+                    }
+                }
+            }
+        } else if (name.equals("cancelTasks")) {
+            synchronized (this.tasks) {
+                for (Task task : this.tasks) {
+                    task.cancelled = true;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Task schedule(Runnable runnable, long delay, long period)
+    {
+        synchronized (this.tasks) {
+            Task task = new Task(++this.nextTaskId, runnable, this.currentTick + Math.max(1L, delay), period);
+            this.tasks.add(task);
+            return task;
+        }
+    }
+
+    /**
+     * Enregistre les méthodes {@link EventHandler} d'un listener dans les {@link HandlerList} de leurs évènements,
+     * comme le fait le gestionnaire de plugins de Bukkit.
+     */
+    private void registerEvents(Listener listener, Plugin plugin)
+    {
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            EventHandler handler = method.getAnnotation(EventHandler.class);
+            if (handler == null || method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+            Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+            method.setAccessible(true);
+            EventExecutor executor = (target, event) -> {
+                if (!eventClass.isInstance(event)) {
+                    return;
+                }
+                try {
+                    method.invoke(target, event);
+                } catch (InvocationTargetException exception) {
+                    throw new EventException(exception.getCause());
+                } catch (IllegalAccessException exception) {
+                    throw new EventException(exception);
+                }
+            };
+            FakeServer.getHandlerList(eventClass)
+                    .register(new RegisteredListener(listener, executor, handler.priority(), plugin, handler.ignoreCancelled()));
+        }
+    }
+
+    private static HandlerList getHandlerList(Class<?> eventClass)
+    {
+        for (Class<?> type = eventClass; type != null; type = type.getSuperclass()) {
+            try {
+                Method method = type.getDeclaredMethod("getHandlerList");
+                method.setAccessible(true);
+                return (HandlerList) method.invoke(null);
+            } catch (NoSuchMethodException exception) {
+                // La liste est déclarée par une class parente.
+            } catch (ReflectiveOperationException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+        throw new IllegalArgumentException("The event " + eventClass.getName() + " has no handler list.");
+    }
+
+    static <I> I proxy(Class<I> type, Handler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(FakeServer.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    Object result = handler.handle(method, args != null ? args : new Object[0]);
+                    return result != null ? result : DEFAULT_VALUES.get(method.getReturnType());
+            }
+        }));
+    }
+
+    interface Handler
+    {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private final class Task
+    {
+        private final int id;
+        private final Runnable runnable;
+        private final long period;
+        private final BukkitTask handle;
+        private long nextTick;
+        private volatile boolean cancelled;
+
+        private Task(int id, Runnable runnable, long nextTick, long period)
+        {
+            this.id = id;
+            this.runnable = runnable;
+            this.nextTick = nextTick;
+            this.period = period;
+            this.handle = FakeServer.proxy(BukkitTask.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getTaskId":
+                        return this.id;
+                    case "getOwner":
+                        return FakeServer.this.plugin;
+                    case "isCancelled":
+                        return this.cancelled;
+                    case "cancel":
+                        this.cancelled = true;
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+}